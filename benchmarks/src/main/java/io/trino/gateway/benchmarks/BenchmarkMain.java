@@ -0,0 +1,25 @@
+package io.trino.gateway.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the gateway benchmarks with the GC profiler enabled, so every result also reports the
+ * allocation rate per operation. Accepts the regular JMH command line options, for example
+ * {@code java -jar benchmarks.jar BenchmarkRoutingManager -prof stack}.
+ */
+public class BenchmarkMain {
+  private BenchmarkMain() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    Options options = new OptionsBuilder()
+        .parent(new CommandLineOptions(args))
+        .addProfiler(GCProfiler.class)
+        .build();
+    new Runner(options).run();
+  }
+}
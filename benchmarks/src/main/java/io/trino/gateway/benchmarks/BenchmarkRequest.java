@@ -0,0 +1,78 @@
+package io.trino.gateway.benchmarks;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A minimal in-memory {@link HttpServletRequest} for benchmarks. Only the accessors used on the
+ * routing path are implemented, everything else fails.
+ */
+public class BenchmarkRequest extends HttpServletRequestWrapper {
+  private final String method;
+  private final String requestUri;
+  private final String queryString;
+  private final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+  private final Map<String, Object> attributes = new HashMap<>();
+
+  public BenchmarkRequest(String method, String requestUri, String queryString) {
+    super(unsupportedRequest());
+    this.method = method;
+    this.requestUri = requestUri;
+    this.queryString = queryString;
+  }
+
+  public BenchmarkRequest header(String name, String value) {
+    headers.put(name, value);
+    return this;
+  }
+
+  @Override
+  public String getMethod() {
+    return method;
+  }
+
+  @Override
+  public String getRequestURI() {
+    return requestUri;
+  }
+
+  @Override
+  public String getQueryString() {
+    return queryString;
+  }
+
+  @Override
+  public String getHeader(String name) {
+    return headers.get(name);
+  }
+
+  @Override
+  public Enumeration<String> getHeaderNames() {
+    return Collections.enumeration(headers.keySet());
+  }
+
+  @Override
+  public Object getAttribute(String name) {
+    return attributes.get(name);
+  }
+
+  @Override
+  public void setAttribute(String name, Object value) {
+    attributes.put(name, value);
+  }
+
+  private static HttpServletRequest unsupportedRequest() {
+    return (HttpServletRequest) Proxy.newProxyInstance(
+        BenchmarkRequest.class.getClassLoader(),
+        new Class<?>[] {HttpServletRequest.class},
+        (proxy, method, args) -> {
+          throw new UnsupportedOperationException(method.getName());
+        });
+  }
+}
@@ -0,0 +1,84 @@
+package io.trino.gateway.benchmarks;
+
+import static java.util.stream.Collectors.toList;
+
+import io.trino.gateway.ha.config.ProxyBackendConfiguration;
+import io.trino.gateway.ha.router.GatewayBackendManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * An in-memory {@link GatewayBackendManager}, so the benchmarks do not measure the database.
+ */
+public class StaticGatewayBackendManager implements GatewayBackendManager {
+  private final List<ProxyBackendConfiguration> backends = new ArrayList<>();
+
+  public StaticGatewayBackendManager(int numGroups, int backendsPerGroup) {
+    for (int group = 0; group < numGroups; group++) {
+      String routingGroup = group == 0 ? "adhoc" : "group" + group;
+      for (int i = 0; i < backendsPerGroup; i++) {
+        ProxyBackendConfiguration backend = new ProxyBackendConfiguration();
+        backend.setName(routingGroup + "-" + i);
+        backend.setRoutingGroup(routingGroup);
+        backend.setProxyTo("http://" + routingGroup + "-" + i + ".trino.example:8080");
+        backend.setActive(true);
+        backends.add(backend);
+      }
+    }
+  }
+
+  public StaticGatewayBackendManager(List<ProxyBackendConfiguration> backends) {
+    this.backends.addAll(backends);
+  }
+
+  @Override
+  public List<ProxyBackendConfiguration> getAllBackends() {
+    return new ArrayList<>(backends);
+  }
+
+  @Override
+  public List<ProxyBackendConfiguration> getAllActiveBackends() {
+    return backends.stream().filter(ProxyBackendConfiguration::isActive).collect(toList());
+  }
+
+  @Override
+  public List<ProxyBackendConfiguration> getActiveAdhocBackends() {
+    return getActiveBackends("adhoc");
+  }
+
+  @Override
+  public List<ProxyBackendConfiguration> getActiveBackends(String routingGroup) {
+    return backends.stream()
+        .filter(backend -> backend.isActive() && backend.getRoutingGroup().equals(routingGroup))
+        .collect(toList());
+  }
+
+  @Override
+  public Optional<ProxyBackendConfiguration> getBackendByName(String name) {
+    return backends.stream().filter(backend -> backend.getName().equals(name)).findAny();
+  }
+
+  @Override
+  public ProxyBackendConfiguration addBackend(ProxyBackendConfiguration backend) {
+    backends.add(backend);
+    return backend;
+  }
+
+  @Override
+  public ProxyBackendConfiguration updateBackend(ProxyBackendConfiguration backend) {
+    backends.removeIf(existing -> existing.getName().equals(backend.getName()));
+    backends.add(backend);
+    return backend;
+  }
+
+  @Override
+  public void deactivateBackend(String backendName) {
+    getBackendByName(backendName).ifPresent(backend -> backend.setActive(false));
+  }
+
+  @Override
+  public void activateBackend(String backendName) {
+    getBackendByName(backendName).ifPresent(backend -> backend.setActive(true));
+  }
+}
@@ -0,0 +1,80 @@
+package io.trino.gateway.ha.handler;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import io.trino.gateway.benchmarks.BenchmarkRequest;
+import jakarta.servlet.http.HttpServletRequest;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BenchmarkQueryIdCachingProxyHandler {
+  private QueryIdCachingProxyHandler handler;
+  private HttpServletRequest userHeaderRequest;
+  private HttpServletRequest basicAuthRequest;
+
+  @State(Scope.Thread)
+  public static class PathState {
+    @Param({
+        "/v1/statement",
+        "/v1/statement/queued/20231019_160256_03078_6b4yt/ya1b2c3/1",
+        "/v1/statement/executing/20231019_160256_03078_6b4yt/yd4e5f6/2",
+        "/v1/query/20231019_160256_03078_6b4yt",
+        "/ui/api/query/20231019_160256_03078_6b4yt",
+        "/ui/assets/trino.css"})
+    public String path;
+  }
+
+  @Setup
+  public void setup() {
+    handler = new QueryIdCachingProxyHandler(
+        null,
+        null,
+        request -> null,
+        8090,
+        new Meter(),
+        new MetricRegistry(),
+        List.of(),
+        List.of("/ui/insights/api/statement"),
+        Set.of(),
+        Set.of());
+    userHeaderRequest = new BenchmarkRequest("GET", "/v1/statement", null)
+        .header(QueryIdCachingProxyHandler.USER_HEADER, "etl_user");
+    basicAuthRequest = new BenchmarkRequest("GET", "/v1/statement", null)
+        .header(QueryIdCachingProxyHandler.AUTHORIZATION,
+            "Basic " + Base64.getEncoder().encodeToString("etl_user:secret".getBytes()));
+  }
+
+  @Benchmark
+  public String extractQueryIdIfPresent(PathState state) {
+    return handler.extractQueryIdIfPresent(state.path, null);
+  }
+
+  @Benchmark
+  public String getQueryUserFromUserHeader() {
+    return QueryIdCachingProxyHandler.getQueryUser(userHeaderRequest);
+  }
+
+  @Benchmark
+  public String getQueryUserFromBasicAuth() {
+    return QueryIdCachingProxyHandler.getQueryUser(basicAuthRequest);
+  }
+}
@@ -0,0 +1,61 @@
+package io.trino.gateway.ha.router;
+
+import io.trino.gateway.benchmarks.StaticGatewayBackendManager;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BenchmarkRoutingManager {
+  private static final int NUM_BACKENDS = 10;
+
+  @Param({"1000", "10000"})
+  public int numQueries;
+
+  private RoutingManager routingManager;
+  private String[] queryIds;
+  private String[] backends;
+  private int next;
+
+  @Setup
+  public void setup() {
+    routingManager = new RoutingManager(new StaticGatewayBackendManager(1, NUM_BACKENDS), null) {
+    };
+    backends = new String[NUM_BACKENDS];
+    for (int i = 0; i < NUM_BACKENDS; i++) {
+      backends[i] = "http://adhoc-" + i + ".trino.example:8080";
+    }
+    queryIds = new String[numQueries];
+    for (int i = 0; i < numQueries; i++) {
+      queryIds[i] = String.format("20231019_%06d_%05d_6b4yt", i / 1000, i % 1000);
+      routingManager.setBackendForQueryId(queryIds[i], backends[i % NUM_BACKENDS]);
+    }
+  }
+
+  @Benchmark
+  public String findBackendForQueryId() {
+    int i = next++ & Integer.MAX_VALUE;
+    return routingManager.findBackendForQueryId(queryIds[i % queryIds.length]);
+  }
+
+  @Benchmark
+  public int setBackendForQueryId() {
+    int i = next++ & Integer.MAX_VALUE;
+    routingManager.setBackendForQueryId(queryIds[i % queryIds.length], backends[i % NUM_BACKENDS]);
+    return i;
+  }
+}
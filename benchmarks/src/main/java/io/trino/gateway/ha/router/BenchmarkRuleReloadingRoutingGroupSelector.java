@@ -0,0 +1,102 @@
+package io.trino.gateway.ha.router;
+
+import io.trino.gateway.benchmarks.BenchmarkRequest;
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BenchmarkRuleReloadingRoutingGroupSelector {
+  private static final String SOURCE_HEADER = "X-Trino-Source";
+  private static final String CLIENT_TAGS_HEADER = "X-Trino-Client-Tags";
+
+  @Param({"10", "100", "300"})
+  public int numRules;
+
+  @Param({"false", "true"})
+  public boolean compiled;
+
+  private File rulesFile;
+  private RoutingGroupSelector selector;
+  private HttpServletRequest matchingRequest;
+  private HttpServletRequest nonMatchingRequest;
+
+  @Setup
+  public void setup() throws IOException {
+    rulesFile = File.createTempFile("benchmark_routing_rules", ".yml");
+    try (FileWriter writer = new FileWriter(rulesFile)) {
+      writer.write(generateRules(numRules));
+    }
+    selector = compiled
+        ? RoutingGroupSelector.byCompiledRoutingRules(rulesFile.getPath(), Long.MAX_VALUE)
+        : RoutingGroupSelector.byRoutingRulesEngine(rulesFile.getPath(), Long.MAX_VALUE);
+    matchingRequest = new BenchmarkRequest("POST", "/v1/statement", null)
+        .header(SOURCE_HEADER, "source" + (numRules / 2))
+        .header(CLIENT_TAGS_HEADER, "team=analytics,label=special");
+    nonMatchingRequest = new BenchmarkRequest("POST", "/v1/statement", null)
+        .header(SOURCE_HEADER, "trino-cli");
+  }
+
+  @TearDown
+  public void tearDown() {
+    rulesFile.delete();
+  }
+
+  @Benchmark
+  public String findRoutingGroupMatch() {
+    return selector.findRoutingGroup(matchingRequest);
+  }
+
+  @Benchmark
+  public String findRoutingGroupNoMatch() {
+    return selector.findRoutingGroup(nonMatchingRequest);
+  }
+
+  /**
+   * Most rules in production files compare a single header or look for a client tag, with the
+   * occasional composite condition.
+   */
+  public static String generateRules(int numRules) {
+    StringBuilder rules = new StringBuilder();
+    for (int i = 0; i < numRules; i++) {
+      String condition;
+      if (i % 10 == 9) {
+        condition = "request.getHeader(\\\"" + SOURCE_HEADER + "\\\") == \\\"source" + i
+            + "\\\" && request.getHeader(\\\"" + CLIENT_TAGS_HEADER
+            + "\\\") contains \\\"label=special\\\"";
+      } else if (i % 3 == 2) {
+        condition = "request.getHeader(\\\"" + CLIENT_TAGS_HEADER
+            + "\\\") contains \\\"team=team" + i + "\\\"";
+      } else {
+        condition = "request.getHeader(\\\"" + SOURCE_HEADER + "\\\") == \\\"source" + i + "\\\"";
+      }
+      rules.append("---\n")
+          .append("name: \"rule").append(i).append("\"\n")
+          .append("description: \"generated rule ").append(i).append("\"\n")
+          .append("priority: ").append(i).append("\n")
+          .append("condition: \"").append(condition).append("\"\n")
+          .append("actions:\n")
+          .append("  - \"result.put(\\\"routingGroup\\\", \\\"group").append(i).append("\\\")\"\n");
+    }
+    return rules.toString();
+  }
+}
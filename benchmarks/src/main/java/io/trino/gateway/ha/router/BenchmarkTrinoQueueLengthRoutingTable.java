@@ -0,0 +1,121 @@
+package io.trino.gateway.ha.router;
+
+import io.trino.gateway.benchmarks.StaticGatewayBackendManager;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BenchmarkTrinoQueueLengthRoutingTable {
+  private static final int NUM_USERS = 100;
+
+  @Param({"10", "100"})
+  public int numGroups;
+
+  @Param({"5", "50"})
+  public int backendsPerGroup;
+
+  private TrinoQueueLengthRoutingTable routingTable;
+  private Map<String, Map<String, Integer>> queueLengths;
+  private Map<String, Map<String, Integer>> runningCounts;
+  private Map<String, Map<String, Integer>> userQueueLengths;
+  private String[] groups;
+  private String[] users;
+  private int next;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(42);
+    routingTable = new TrinoQueueLengthRoutingTable(
+        new StaticGatewayBackendManager(numGroups, backendsPerGroup),
+        new NoopQueryHistoryManager(),
+        null);
+
+    queueLengths = new HashMap<>();
+    runningCounts = new HashMap<>();
+    userQueueLengths = new HashMap<>();
+    groups = new String[numGroups];
+    users = new String[NUM_USERS];
+    for (int group = 0; group < numGroups; group++) {
+      groups[group] = group == 0 ? "adhoc" : "group" + group;
+      Map<String, Integer> queued = new HashMap<>();
+      Map<String, Integer> running = new HashMap<>();
+      for (int i = 0; i < backendsPerGroup; i++) {
+        queued.put(groups[group] + "-" + i, random.nextInt(100));
+        running.put(groups[group] + "-" + i, random.nextInt(100));
+      }
+      queueLengths.put(groups[group], queued);
+      runningCounts.put(groups[group], running);
+    }
+    for (int user = 0; user < NUM_USERS; user++) {
+      users[user] = "user" + user;
+      Map<String, Integer> queued = new HashMap<>();
+      // users with an odd index have queued queries on a few clusters
+      if (user % 2 == 1) {
+        for (int group = 0; group < numGroups; group++) {
+          queued.put(groups[group] + "-" + random.nextInt(backendsPerGroup), random.nextInt(10));
+        }
+      }
+      userQueueLengths.put(users[user], queued);
+    }
+    routingTable.updateRoutingTable(queueLengths, runningCounts, userQueueLengths);
+  }
+
+  @Benchmark
+  public String getEligibleBackEnd() {
+    int i = next++ & Integer.MAX_VALUE;
+    return routingTable.getEligibleBackEnd(groups[i % groups.length], users[i % users.length]);
+  }
+
+  @Benchmark
+  public String getEligibleBackEndWithoutUser() {
+    int i = next++ & Integer.MAX_VALUE;
+    return routingTable.getEligibleBackEnd(groups[i % groups.length], null);
+  }
+
+  @Benchmark
+  public TrinoQueueLengthRoutingTable updateRoutingTable() {
+    routingTable.updateRoutingTable(queueLengths, runningCounts, userQueueLengths);
+    return routingTable;
+  }
+
+  static class NoopQueryHistoryManager implements QueryHistoryManager {
+    @Override
+    public void submitQueryDetail(QueryDetail queryDetail) {
+    }
+
+    @Override
+    public List<QueryDetail> fetchQueryHistory(Optional<String> user) {
+      return List.of();
+    }
+
+    @Override
+    public List<QueryDetail> fetchQueriesSince(long sinceMillis, int limit) {
+      return List.of();
+    }
+
+    @Override
+    public String getBackendForQueryId(String queryId) {
+      return null;
+    }
+  }
+}
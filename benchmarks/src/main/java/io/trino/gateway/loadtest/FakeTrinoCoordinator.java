@@ -0,0 +1,214 @@
+package io.trino.gateway.loadtest;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+
+/**
+ * An in-process stand-in for a Trino coordinator. It implements the parts of the client
+ * protocol the gateway cares about: submitting a query with {@code POST /v1/statement} and
+ * following {@code nextUri} until the last result page. Every response is delayed by a
+ * configurable latency without holding a server thread.
+ *
+ * <p>Query state is encoded in the {@code nextUri} itself, so the fake keeps no per query
+ * state besides the number of running queries.
+ */
+@Slf4j
+public class FakeTrinoCoordinator implements Closeable {
+  private static final String STATEMENT_PATH = "/v1/statement";
+  private static final String QUERY_PATH = "/v1/query";
+
+  private final String name;
+  // the last segment of the query ids, five base 36 characters like the ones of Trino
+  private final String queryIdSuffix;
+  private final long latencyMillis;
+  private final int pages;
+  private final String pageData;
+  private final Server server;
+  private final ScheduledExecutorService scheduler =
+      Executors.newSingleThreadScheduledExecutor();
+  private final AtomicLong queryCounter = new AtomicLong();
+  private final AtomicInteger runningQueries = new AtomicInteger();
+
+  public FakeTrinoCoordinator(String name, long latencyMillis, int pageSize, int pages) {
+    this.name = name;
+    this.queryIdSuffix = String.format("%5s",
+        Integer.toString(Math.floorMod(name.hashCode(), 36 * 36 * 36 * 36 * 36), 36))
+        .replace(' ', '0');
+    this.latencyMillis = latencyMillis;
+    this.pages = pages;
+    this.pageData = buildPageData(pageSize);
+
+    server = new Server();
+    ServerConnector connector = new ServerConnector(server);
+    connector.setHost("127.0.0.1");
+    connector.setPort(0);
+    server.addConnector(connector);
+
+    ServletContextHandler context = new ServletContextHandler();
+    context.setContextPath("/");
+    ServletHolder holder = new ServletHolder(new ProtocolServlet());
+    holder.setAsyncSupported(true);
+    context.addServlet(holder, "/*");
+    server.setHandler(context);
+  }
+
+  public void start() throws Exception {
+    server.start();
+    log.info("Fake coordinator {} listening on {}", name, getUri());
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getUri() {
+    return "http://127.0.0.1:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+  }
+
+  public int getRunningQueries() {
+    return runningQueries.get();
+  }
+
+  @Override
+  public void close() {
+    scheduler.shutdownNow();
+    try {
+      server.stop();
+    } catch (Exception e) {
+      log.warn("Could not stop fake coordinator {}", name, e);
+    }
+  }
+
+  private String nextQueryId() {
+    long id = queryCounter.incrementAndGet();
+    return String.format("20231019_%06d_%05d_%s", id / 100000, id % 100000, queryIdSuffix);
+  }
+
+  private static String buildPageData(int pageSize) {
+    StringBuilder data = new StringBuilder("[");
+    for (int i = 0; i < pageSize; i++) {
+      if (i > 0) {
+        data.append(',');
+      }
+      data.append('[').append(i).append(",\"value-").append(i).append("\"]");
+    }
+    return data.append(']').toString();
+  }
+
+  /**
+   * Trino builds nextUri from the forwarded headers when it runs behind a proxy.
+   */
+  private static String externalUri(HttpServletRequest request) {
+    String proto = request.getHeader("X-Forwarded-Proto");
+    String host = request.getHeader("X-Forwarded-Host");
+    if (host == null) {
+      host = request.getHeader("Host");
+    }
+    return (proto == null ? "http" : proto) + "://" + host;
+  }
+
+  private String statementResponse(String baseUri, String queryId, String state, String nextUri,
+                                   boolean includeData) {
+    StringBuilder json = new StringBuilder(256 + (includeData ? pageData.length() : 0))
+        .append("{\"id\":\"").append(queryId)
+        .append("\",\"infoUri\":\"").append(baseUri).append("/ui/query.html?").append(queryId)
+        .append('"');
+    if (nextUri != null) {
+      json.append(",\"nextUri\":\"").append(baseUri).append(nextUri).append('"');
+      json.append(",\"partialCancelUri\":\"").append(baseUri).append(nextUri).append('"');
+    }
+    if (includeData) {
+      json.append(",\"columns\":[{\"name\":\"id\",\"type\":\"bigint\"},")
+          .append("{\"name\":\"value\",\"type\":\"varchar\"}]")
+          .append(",\"data\":").append(pageData);
+    }
+    return json.append(",\"stats\":{\"state\":\"").append(state).append("\"}}").toString();
+  }
+
+  private class ProtocolServlet extends HttpServlet {
+    @Override
+    protected void service(HttpServletRequest request, HttpServletResponse response)
+        throws IOException {
+      String path = request.getRequestURI();
+      String method = request.getMethod();
+      String baseUri = externalUri(request);
+
+      if (path.equals(STATEMENT_PATH) && method.equals("POST")) {
+        // drain the query text
+        request.getInputStream().readAllBytes();
+        String queryId = nextQueryId();
+        runningQueries.incrementAndGet();
+        reply(request, response, 200, statementResponse(baseUri, queryId, "QUEUED",
+            STATEMENT_PATH + "/queued/" + queryId + "/y0/1", false));
+        return;
+      }
+      if (path.startsWith(STATEMENT_PATH + "/") && method.equals("GET")) {
+        // /v1/statement/{queued|executing}/{queryId}/{slug}/{token}
+        String[] tokens = path.split("/");
+        if (tokens.length < 7) {
+          reply(request, response, 404, "");
+          return;
+        }
+        String queryId = tokens[4];
+        int token = Integer.parseInt(tokens[6]);
+        String body;
+        if (tokens[3].equals("queued")) {
+          body = statementResponse(baseUri, queryId, "RUNNING",
+              STATEMENT_PATH + "/executing/" + queryId + "/y0/1", false);
+        } else if (token < pages) {
+          body = statementResponse(baseUri, queryId, "RUNNING",
+              STATEMENT_PATH + "/executing/" + queryId + "/y0/" + (token + 1), true);
+        } else {
+          runningQueries.decrementAndGet();
+          body = statementResponse(baseUri, queryId, "FINISHED", null, true);
+        }
+        reply(request, response, 200, body);
+        return;
+      }
+      if (path.startsWith(QUERY_PATH + "/") || path.startsWith("/v1/info")) {
+        reply(request, response, 200, "{}");
+        return;
+      }
+      reply(request, response, 404, "");
+    }
+
+    private void reply(HttpServletRequest request, HttpServletResponse response, int status,
+                       String body) {
+      AsyncContext async = request.startAsync();
+      async.setTimeout(0);
+      Runnable write = () -> {
+        try {
+          byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+          response.setStatus(status);
+          response.setContentType("application/json");
+          response.setContentLength(bytes.length);
+          response.getOutputStream().write(bytes);
+        } catch (IOException e) {
+          log.debug("Could not write response", e);
+        } finally {
+          async.complete();
+        }
+      };
+      if (latencyMillis > 0) {
+        scheduler.schedule(write, latencyMillis, TimeUnit.MILLISECONDS);
+      } else {
+        write.run();
+      }
+    }
+  }
+}
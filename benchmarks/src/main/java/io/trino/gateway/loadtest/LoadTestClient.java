@@ -0,0 +1,210 @@
+package io.trino.gateway.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Simulates many Trino clients on a handful of threads. Each client submits a query, follows
+ * {@code nextUri} through the gateway until the query finishes, and then starts the next one.
+ */
+@Slf4j
+public class LoadTestClient implements AutoCloseable {
+  private static final String NEXT_URI = "\"nextUri\":\"";
+  private static final Duration REQUEST_TIMEOUT = Duration.ofMinutes(1);
+
+  private final URI statementUri;
+  private final ExecutorService executor =
+      Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+  private final HttpClient httpClient;
+
+  private final Recorder submitLatency = new Recorder(2);
+  private final Recorder pollLatency = new Recorder(2);
+  private final Recorder queryLatency = new Recorder(2);
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong queries = new AtomicLong();
+  private final AtomicLong errors = new AtomicLong();
+
+  public LoadTestClient(String gatewayUri) {
+    this.statementUri = URI.create(gatewayUri + "/v1/statement");
+    this.httpClient = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofSeconds(10))
+        .executor(executor)
+        .build();
+  }
+
+  /**
+   * Runs {@code clients} concurrent clients, each executing {@code queriesPerClient} queries
+   * one after the other.
+   */
+  public Result run(int clients, int queriesPerClient) {
+    reset();
+    long start = System.nanoTime();
+    CompletableFuture<?>[] futures = new CompletableFuture<?>[clients];
+    for (int client = 0; client < clients; client++) {
+      futures[client] = runClient(client, queriesPerClient);
+    }
+    CompletableFuture.allOf(futures).join();
+    long elapsedNanos = System.nanoTime() - start;
+    return new Result(elapsedNanos, requests.get(), queries.get(), errors.get(),
+        submitLatency.getIntervalHistogram(), pollLatency.getIntervalHistogram(),
+        queryLatency.getIntervalHistogram());
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  private void reset() {
+    submitLatency.reset();
+    pollLatency.reset();
+    queryLatency.reset();
+    requests.set(0);
+    queries.set(0);
+    errors.set(0);
+  }
+
+  private CompletableFuture<Void> runClient(int client, int remaining) {
+    if (remaining == 0) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return runQuery(client)
+        .exceptionally(e -> {
+          errors.incrementAndGet();
+          log.debug("Query failed", e);
+          return null;
+        })
+        .thenCompose(ignored -> runClient(client, remaining - 1));
+  }
+
+  private CompletableFuture<Void> runQuery(int client) {
+    long queryStart = System.nanoTime();
+    HttpRequest submit = HttpRequest.newBuilder(statementUri)
+        .timeout(REQUEST_TIMEOUT)
+        .header("X-Trino-User", "user" + (client % 100))
+        .header("X-Trino-Source", "loadtest")
+        .POST(HttpRequest.BodyPublishers.ofString("SELECT * FROM loadtest_" + client))
+        .build();
+    return send(submit, submitLatency)
+        .thenCompose(this::follow)
+        .thenRun(() -> {
+          queryLatency.recordValue(micros(System.nanoTime() - queryStart));
+          queries.incrementAndGet();
+        });
+  }
+
+  private CompletableFuture<Void> follow(String body) {
+    String nextUri = extractNextUri(body);
+    if (nextUri == null) {
+      return CompletableFuture.completedFuture(null);
+    }
+    HttpRequest poll = HttpRequest.newBuilder(URI.create(nextUri))
+        .timeout(REQUEST_TIMEOUT)
+        .GET()
+        .build();
+    return send(poll, pollLatency).thenCompose(this::follow);
+  }
+
+  private CompletableFuture<String> send(HttpRequest request, Recorder latency) {
+    long start = System.nanoTime();
+    return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+        .thenApply(response -> {
+          latency.recordValue(micros(System.nanoTime() - start));
+          requests.incrementAndGet();
+          if (response.statusCode() != 200) {
+            throw new IllegalStateException(
+                "Unexpected status " + response.statusCode() + " for " + request.uri());
+          }
+          return response.body();
+        });
+  }
+
+  /**
+   * Avoids a JSON parser on purpose: the client shares the JVM with the gateway and should
+   * allocate as little as possible.
+   */
+  static String extractNextUri(String body) {
+    int start = body.indexOf(NEXT_URI);
+    if (start < 0) {
+      return null;
+    }
+    start += NEXT_URI.length();
+    return body.substring(start, body.indexOf('"', start));
+  }
+
+  private static long micros(long nanos) {
+    return TimeUnit.NANOSECONDS.toMicros(nanos);
+  }
+
+  /**
+   * Outcome of one {@link #run(int, int)}. Latencies are recorded in microseconds.
+   */
+  public static class Result {
+    private final long elapsedNanos;
+    private final long requests;
+    private final long queries;
+    private final long errors;
+    private final Histogram submitLatency;
+    private final Histogram pollLatency;
+    private final Histogram queryLatency;
+
+    Result(long elapsedNanos, long requests, long queries, long errors, Histogram submitLatency,
+           Histogram pollLatency, Histogram queryLatency) {
+      this.elapsedNanos = elapsedNanos;
+      this.requests = requests;
+      this.queries = queries;
+      this.errors = errors;
+      this.submitLatency = submitLatency;
+      this.pollLatency = pollLatency;
+      this.queryLatency = queryLatency;
+    }
+
+    public double elapsedSeconds() {
+      return elapsedNanos / 1e9;
+    }
+
+    public double requestsPerSecond() {
+      return requests / elapsedSeconds();
+    }
+
+    public double queriesPerSecond() {
+      return queries / elapsedSeconds();
+    }
+
+    public long getRequests() {
+      return requests;
+    }
+
+    public long getQueries() {
+      return queries;
+    }
+
+    public long getErrors() {
+      return errors;
+    }
+
+    public Histogram getSubmitLatency() {
+      return submitLatency;
+    }
+
+    public Histogram getPollLatency() {
+      return pollLatency;
+    }
+
+    public Histogram getQueryLatency() {
+      return queryLatency;
+    }
+  }
+}
@@ -0,0 +1,190 @@
+package io.trino.gateway.loadtest;
+
+import com.codahale.metrics.MetricRegistry;
+import io.trino.gateway.benchmarks.StaticGatewayBackendManager;
+import io.trino.gateway.ha.config.ProxyBackendConfiguration;
+import io.trino.gateway.ha.handler.QueryIdCachingProxyHandler;
+import io.trino.gateway.ha.router.BenchmarkRuleReloadingRoutingGroupSelector;
+import io.trino.gateway.ha.router.HaRoutingManager;
+import io.trino.gateway.ha.router.QueryHistoryManager;
+import io.trino.gateway.ha.router.RoutingGroupSelector;
+import io.trino.gateway.ha.router.RoutingManager;
+import io.trino.gateway.ha.router.TrinoQueueLengthRoutingTable;
+import io.trino.gateway.proxyserver.ProxyServer;
+import io.trino.gateway.proxyserver.ProxyServerConfiguration;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wires the gateway proxy the same way {@code HaGatewayProviderModule} does, but with an
+ * in-memory backend registry and query history so the database is kept out of the numbers.
+ */
+public class LoadTestGateway implements Closeable {
+  private static final String ADHOC = "adhoc";
+  private static final int RULES_COUNT = 100;
+
+  private final List<FakeTrinoCoordinator> coordinators;
+  private final MetricRegistry metricRegistry = new MetricRegistry();
+  private final ScheduledExecutorService monitor = Executors.newSingleThreadScheduledExecutor();
+  private final int port;
+  private final ProxyServer proxyServer;
+  private File rulesFile;
+
+  public LoadTestGateway(RoutingStrategy strategy, List<FakeTrinoCoordinator> coordinators)
+      throws IOException {
+    this(strategy, coordinators, false, 0);
+  }
+
+  /**
+   * With a history latency, each query submission blocks for that long, standing in for the
+   * database write of the query history.
+   */
+  public LoadTestGateway(RoutingStrategy strategy, List<FakeTrinoCoordinator> coordinators,
+                         boolean virtualThreads, long historyLatencyMillis) throws IOException {
+    this.coordinators = coordinators;
+    this.port = freePort();
+
+    List<ProxyBackendConfiguration> backends = new ArrayList<>();
+    for (FakeTrinoCoordinator coordinator : coordinators) {
+      ProxyBackendConfiguration backend = new ProxyBackendConfiguration();
+      backend.setName(coordinator.getName());
+      backend.setRoutingGroup(ADHOC);
+      backend.setProxyTo(coordinator.getUri());
+      backend.setActive(true);
+      backends.add(backend);
+    }
+    StaticGatewayBackendManager backendManager = new StaticGatewayBackendManager(backends);
+    QueryHistoryManager queryHistoryManager =
+        new InMemoryQueryHistoryManager(historyLatencyMillis);
+
+    RoutingManager routingManager;
+    if (strategy == RoutingStrategy.QUEUE_LENGTH) {
+      TrinoQueueLengthRoutingTable routingTable =
+          new TrinoQueueLengthRoutingTable(backendManager, queryHistoryManager, null);
+      // stands in for the ActiveClusterMonitor polling the coordinators
+      monitor.scheduleAtFixedRate(() -> publishQueueLengths(routingTable), 0, 1,
+          TimeUnit.SECONDS);
+      routingManager = routingTable;
+    } else {
+      routingManager = new HaRoutingManager(backendManager, queryHistoryManager, null,
+          metricRegistry);
+    }
+    for (FakeTrinoCoordinator coordinator : coordinators) {
+      routingManager.upateBackEndHealth(coordinator.getName(), true);
+    }
+
+    RoutingGroupSelector routingGroupSelector = RoutingGroupSelector.byRoutingGroupHeader();
+    if (strategy == RoutingStrategy.RULES_ENGINE) {
+      rulesFile = File.createTempFile("loadtest_routing_rules", ".yml");
+      try (FileWriter writer = new FileWriter(rulesFile)) {
+        writer.write(BenchmarkRuleReloadingRoutingGroupSelector.generateRules(RULES_COUNT));
+      }
+      routingGroupSelector = RoutingGroupSelector.byRoutingRulesEngine(rulesFile.getPath());
+    }
+
+    QueryIdCachingProxyHandler proxyHandler = new QueryIdCachingProxyHandler(
+        queryHistoryManager,
+        routingManager,
+        routingGroupSelector,
+        0,
+        metricRegistry.meter("loadtest.requests"),
+        metricRegistry,
+        Collections.emptyList(),
+        Collections.emptyList(),
+        Collections.emptySet(),
+        Collections.emptySet());
+
+    ProxyServerConfiguration config = new ProxyServerConfiguration();
+    config.setName("loadtest-" + strategy.name().toLowerCase());
+    config.setLocalPort(port);
+    config.setProxyTo("");
+    config.setPreserveHost("false");
+    config.setVirtualThreads(virtualThreads);
+    proxyServer = new ProxyServer(config, proxyHandler);
+  }
+
+  public void start() {
+    proxyServer.start();
+  }
+
+  public String getUri() {
+    return "http://127.0.0.1:" + port;
+  }
+
+  public MetricRegistry getMetricRegistry() {
+    return metricRegistry;
+  }
+
+  @Override
+  public void close() {
+    monitor.shutdownNow();
+    proxyServer.close();
+    if (rulesFile != null) {
+      rulesFile.delete();
+    }
+  }
+
+  private void publishQueueLengths(TrinoQueueLengthRoutingTable routingTable) {
+    Map<String, Integer> running = new HashMap<>();
+    for (FakeTrinoCoordinator coordinator : coordinators) {
+      running.put(coordinator.getName(), coordinator.getRunningQueries());
+    }
+    Map<String, Map<String, Integer>> lengths = Map.of(ADHOC, running);
+    routingTable.updateRoutingTable(lengths, lengths, null);
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+
+  private static class InMemoryQueryHistoryManager implements QueryHistoryManager {
+    private final Map<String, String> backends = new ConcurrentHashMap<>();
+    private final long latencyMillis;
+
+    InMemoryQueryHistoryManager(long latencyMillis) {
+      this.latencyMillis = latencyMillis;
+    }
+
+    @Override
+    public void submitQueryDetail(QueryDetail queryDetail) {
+      if (latencyMillis > 0) {
+        try {
+          Thread.sleep(latencyMillis);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      backends.put(queryDetail.getQueryId(), queryDetail.getBackendUrl());
+    }
+
+    @Override
+    public List<QueryDetail> fetchQueryHistory(Optional<String> user) {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public List<QueryDetail> fetchQueriesSince(long sinceMillis, int limit) {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public String getBackendForQueryId(String queryId) {
+      return backends.get(queryId);
+    }
+  }
+}
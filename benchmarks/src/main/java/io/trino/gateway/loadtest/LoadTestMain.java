@@ -0,0 +1,174 @@
+package io.trino.gateway.loadtest;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import org.HdrHistogram.Histogram;
+import org.slf4j.LoggerFactory;
+
+/**
+ * End-to-end load test of the gateway proxy against in-process fake Trino coordinators.
+ * Everything runs on loopback, so no network access is needed. The run is configured with
+ * system properties:
+ *
+ * <ul>
+ *   <li>{@code loadtest.coordinators}: number of fake coordinators, default 3</li>
+ *   <li>{@code loadtest.clients}: concurrent clients, default 1000</li>
+ *   <li>{@code loadtest.queriesPerClient}: queries per client, default 10</li>
+ *   <li>{@code loadtest.latencyMillis}: coordinator response latency, default 20</li>
+ *   <li>{@code loadtest.pageSize}: rows per result page, default 100</li>
+ *   <li>{@code loadtest.pages}: result pages per query, default 5</li>
+ *   <li>{@code loadtest.strategies}: comma separated {@link RoutingStrategy} names, default all</li>
+ *   <li>{@code loadtest.threadModes}: comma separated thread modes of the gateway,
+ *       {@code platform} and {@code virtual}, default both</li>
+ *   <li>{@code loadtest.historyLatencyMillis}: time each query history write blocks the
+ *       request, default 0</li>
+ *   <li>{@code loadtest.logLevel}: root log level while the test runs, default WARN</li>
+ * </ul>
+ */
+public final class LoadTestMain {
+  private LoadTestMain() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    int coordinatorCount = Integer.getInteger("loadtest.coordinators", 3);
+    int clients = Integer.getInteger("loadtest.clients", 1000);
+    int queriesPerClient = Integer.getInteger("loadtest.queriesPerClient", 10);
+    long latencyMillis = Long.getLong("loadtest.latencyMillis", 20);
+    int pageSize = Integer.getInteger("loadtest.pageSize", 100);
+    int pages = Integer.getInteger("loadtest.pages", 5);
+    List<RoutingStrategy> strategies = new ArrayList<>();
+    for (String strategy : System.getProperty("loadtest.strategies",
+        "RANDOM,QUEUE_LENGTH,RULES_ENGINE").split(",")) {
+      strategies.add(RoutingStrategy.valueOf(strategy.trim().toUpperCase()));
+    }
+    List<Boolean> threadModes = new ArrayList<>();
+    for (String threadMode : System.getProperty("loadtest.threadModes", "platform,virtual")
+        .split(",")) {
+      threadModes.add(threadMode.trim().equalsIgnoreCase("virtual"));
+    }
+    long historyLatencyMillis = Long.getLong("loadtest.historyLatencyMillis", 0);
+    ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME))
+        .setLevel(Level.toLevel(System.getProperty("loadtest.logLevel"), Level.WARN));
+
+    System.out.printf("coordinators=%d clients=%d queriesPerClient=%d latency=%dms"
+            + " pageSize=%d pages=%d historyLatency=%dms%n",
+        coordinatorCount, clients, queriesPerClient, latencyMillis, pageSize, pages,
+        historyLatencyMillis);
+
+    List<FakeTrinoCoordinator> coordinators = new ArrayList<>();
+    try {
+      for (int i = 0; i < coordinatorCount; i++) {
+        FakeTrinoCoordinator coordinator =
+            new FakeTrinoCoordinator("coordinator" + i, latencyMillis, pageSize, pages);
+        coordinator.start();
+        coordinators.add(coordinator);
+      }
+      List<String> report = new ArrayList<>();
+      for (RoutingStrategy strategy : strategies) {
+        for (boolean virtualThreads : threadModes) {
+          report.add(run(strategy, virtualThreads, historyLatencyMillis, coordinators, clients,
+              queriesPerClient));
+        }
+      }
+      System.out.println();
+      System.out.printf("%-13s %-8s %8s %8s %7s %9s %9s %17s %17s %17s %6s %8s %9s %8s%n",
+          "strategy", "threads", "queries", "errors", "time_s", "req/s", "queries/s",
+          "submit_p50/p99ms", "poll_p50/p99ms", "query_p50/p99ms",
+          "gc", "gc_ms", "peak_mb", "peak_thr");
+      report.forEach(System.out::println);
+    } finally {
+      coordinators.forEach(FakeTrinoCoordinator::close);
+    }
+  }
+
+  private static String run(RoutingStrategy strategy, boolean virtualThreads,
+                            long historyLatencyMillis, List<FakeTrinoCoordinator> coordinators,
+                            int clients, int queriesPerClient) throws Exception {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    try (LoadTestGateway gateway = new LoadTestGateway(strategy, coordinators, virtualThreads,
+        historyLatencyMillis);
+        LoadTestClient client = new LoadTestClient(gateway.getUri())) {
+      gateway.start();
+      // warm up connections, caches and the JIT before measuring
+      client.run(clients, 1);
+      System.gc();
+
+      GcSnapshot gcBefore = GcSnapshot.take();
+      resetPeakHeap();
+      // platform threads only, virtual threads are not counted
+      threads.resetPeakThreadCount();
+      LoadTestClient.Result result = client.run(clients, queriesPerClient);
+      GcSnapshot gcAfter = GcSnapshot.take();
+
+      return String.format("%-13s %-8s %8d %8d %7.1f %9.0f %9.0f %17s %17s %17s %6d %8d %9d %8d",
+          strategy.name(),
+          virtualThreads ? "virtual" : "platform",
+          result.getQueries(),
+          result.getErrors(),
+          result.elapsedSeconds(),
+          result.requestsPerSecond(),
+          result.queriesPerSecond(),
+          percentiles(result.getSubmitLatency()),
+          percentiles(result.getPollLatency()),
+          percentiles(result.getQueryLatency()),
+          gcAfter.count - gcBefore.count,
+          gcAfter.timeMillis - gcBefore.timeMillis,
+          peakHeapBytes() / (1024 * 1024),
+          threads.getPeakThreadCount());
+    }
+  }
+
+  private static String percentiles(Histogram micros) {
+    return String.format("%.1f/%.1f",
+        micros.getValueAtPercentile(50) / 1000.0,
+        micros.getValueAtPercentile(99) / 1000.0);
+  }
+
+  private static void resetPeakHeap() {
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        pool.resetPeakUsage();
+      }
+    }
+  }
+
+  /**
+   * Sum of the per-pool peaks. The pools peak at different times, so this is an upper bound.
+   */
+  private static long peakHeapBytes() {
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+    return peak;
+  }
+
+  private static class GcSnapshot {
+    private final long count;
+    private final long timeMillis;
+
+    private GcSnapshot(long count, long timeMillis) {
+      this.count = count;
+      this.timeMillis = timeMillis;
+    }
+
+    static GcSnapshot take() {
+      long count = 0;
+      long time = 0;
+      for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+        count += Math.max(gc.getCollectionCount(), 0);
+        time += Math.max(gc.getCollectionTime(), 0);
+      }
+      return new GcSnapshot(count, time);
+    }
+  }
+}
@@ -0,0 +1,13 @@
+package io.trino.gateway.loadtest;
+
+/**
+ * The gateway routing setups the load test compares.
+ */
+public enum RoutingStrategy {
+  /** Routing group header, random healthy backend. This is the default gateway setup. */
+  RANDOM,
+  /** Routing group header, backend weighted by the queue length of each coordinator. */
+  QUEUE_LENGTH,
+  /** Generated routing rules file evaluated for every submitted query, random backend. */
+  RULES_ENGINE
+}
@@ -0,0 +1,4 @@
+package io.trino.gateway.ha.handler.jmh_generated;
+public class BenchmarkQueryIdCachingProxyHandler_PathState_jmhType extends BenchmarkQueryIdCachingProxyHandler_PathState_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package io.trino.gateway.ha.handler.jmh_generated;
+public class BenchmarkQueryIdCachingProxyHandler_jmhType extends BenchmarkQueryIdCachingProxyHandler_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package io.trino.gateway.ha.router.jmh_generated;
+public class BenchmarkRoutingManager_jmhType extends BenchmarkRoutingManager_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package io.trino.gateway.ha.router.jmh_generated;
+public class BenchmarkRuleReloadingRoutingGroupSelector_jmhType extends BenchmarkRuleReloadingRoutingGroupSelector_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package io.trino.gateway.ha.router.jmh_generated;
+public class BenchmarkTrinoQueueLengthRoutingTable_jmhType extends BenchmarkTrinoQueueLengthRoutingTable_jmhType_B3 {
+}
+
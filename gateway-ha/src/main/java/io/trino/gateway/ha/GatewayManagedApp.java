@@ -2,14 +2,22 @@ package io.trino.gateway.ha;
 
 import com.google.inject.Inject;
 import io.dropwizard.lifecycle.Managed;
+import io.trino.gateway.ha.router.QueryRoutingStore;
+import io.trino.gateway.ha.router.RoutingManager;
+import io.trino.gateway.ha.router.RoutingWarmStart;
 import io.trino.gateway.proxyserver.ProxyServer;
 
 public class GatewayManagedApp implements Managed {
   @Inject private ProxyServer gateway;
+  @Inject private RoutingWarmStart routingWarmStart;
+  @Inject private QueryRoutingStore queryRoutingStore;
+  @Inject private RoutingManager routingManager;
 
   @Override
   public void start() {
     if (gateway != null) {
+      // route the polls of queries that were running before a restart without lookups
+      routingWarmStart.awaitWarmUp();
       gateway.start();
     }
   }
@@ -19,5 +27,8 @@ public class GatewayManagedApp implements Managed {
     if (gateway != null) {
       gateway.close();
     }
+    routingWarmStart.stop();
+    queryRoutingStore.close();
+    routingManager.close();
   }
 }
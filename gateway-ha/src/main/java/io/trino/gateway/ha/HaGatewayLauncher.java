@@ -1,11 +1,22 @@
 package io.trino.gateway.ha;
 
+import com.google.inject.Injector;
 import io.dropwizard.assets.AssetsBundle;
 import io.dropwizard.core.setup.Bootstrap;
+import io.dropwizard.core.setup.Environment;
 import io.dropwizard.views.common.ViewBundle;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.dropwizard.DropwizardExports;
+import io.prometheus.client.servlet.jakarta.exporter.MetricsServlet;
 import io.trino.gateway.baseapp.BaseApp;
 import io.trino.gateway.ha.config.HaGatewayConfiguration;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.VirtualThreads;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 
+@Slf4j
 public class HaGatewayLauncher extends BaseApp<HaGatewayConfiguration> {
 
   public HaGatewayLauncher(String... basePackages) {
@@ -19,6 +30,40 @@ public class HaGatewayLauncher extends BaseApp<HaGatewayConfiguration> {
     bootstrap.addBundle(new AssetsBundle("/assets", "/assets", null, "assets"));
   }
 
+  @Override
+  protected void applicationAtRun(HaGatewayConfiguration configuration,
+                                  Environment environment,
+                                  Injector injector) {
+    // Expose all metrics of the registry in Prometheus text format on the admin port
+    CollectorRegistry collectorRegistry = new CollectorRegistry();
+    collectorRegistry.register(new DropwizardExports(environment.metrics()));
+    environment.admin()
+        .addServlet("prometheus", new MetricsServlet(collectorRegistry))
+        .addMapping("/prometheus");
+
+    if (configuration.isServerVirtualThreads()) {
+      // the server is built after the application runs, and set up here before it starts
+      environment.lifecycle().addEventListener(new LifeCycle.Listener() {
+        @Override
+        public void lifeCycleStarting(LifeCycle event) {
+          if (event instanceof Server) {
+            useVirtualThreads((Server) event);
+          }
+        }
+      });
+    }
+  }
+
+  private static void useVirtualThreads(Server server) {
+    if (!VirtualThreads.areSupported()) {
+      log.warn("Virtual threads are not supported by this JDK, using platform threads");
+    } else if (server.getThreadPool() instanceof QueuedThreadPool) {
+      // requests are handled on virtual threads, the selectors stay on the pool
+      ((QueuedThreadPool) server.getThreadPool())
+          .setVirtualThreadsExecutor(VirtualThreads.getDefaultVirtualThreadsExecutor());
+    }
+  }
+
   public static void main(String[] args) throws Exception {
     /** base package is scanned for any Resource class to be loaded by default. */
     String basePackage = "io.trino";
@@ -0,0 +1,21 @@
+package io.trino.gateway.ha.config;
+
+import java.util.HashMap;
+import java.util.Map;
+import lombok.Data;
+
+@Data
+public class DirectResultsConfiguration {
+  /**
+   * How the clients of a routing group reach the backend running their query.
+   */
+  public enum Mode {
+    // the polls sent to the gateway are redirected to the backend
+    REDIRECT,
+    // the first nextUri of the query already points at the backend
+    REWRITE
+  }
+
+  // Routing groups whose clients fetch the query results from the external URL of the backend
+  private Map<String, Mode> routingGroups = new HashMap<>();
+}
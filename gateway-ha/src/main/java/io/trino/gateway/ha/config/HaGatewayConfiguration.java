@@ -16,10 +16,16 @@ import lombok.EqualsAndHashCode;
 @EqualsAndHashCode(callSuper = true)
 public class HaGatewayConfiguration extends AppConfiguration {
   private RequestRouterConfiguration requestRouter;
+  // Run the requests of the Dropwizard server, which serves the gateway API and UI, on virtual
+  // threads when the JDK supports them
+  private boolean serverVirtualThreads;
   private NotifierConfiguration notifier;
   private DataStoreConfiguration dataStore;
   private MonitorConfiguration monitor = new MonitorConfiguration();
   private RoutingRulesConfiguration routingRules = new RoutingRulesConfiguration();
+  private QueryIdRoutingConfiguration queryIdRouting = new QueryIdRoutingConfiguration();
+  private RoutingTokenConfiguration routingToken = new RoutingTokenConfiguration();
+  private DirectResultsConfiguration directResults = new DirectResultsConfiguration();
   private AuthenticationConfiguration authentication;
   private AuthorizationConfiguration authorization;
   private Map<String, UserConfiguration> presetUsers = new HashMap();
@@ -13,6 +13,12 @@ public class ProxyBackendConfiguration extends ProxyServerConfiguration {
   private String routingGroup = "adhoc";
   private String externalUrl;
 
+  // Connection pool of the backend, unset values use the requestRouter settings
+  private Integer maxConnections;
+  private Long idleTimeoutMillis;
+  private Integer maxRequestsQueued;
+  private Integer prewarmConnections;
+
   public String getExternalUrl() {
     if (externalUrl == null) {
       return getProxyTo();
@@ -0,0 +1,40 @@
+package io.trino.gateway.ha.config;
+
+import lombok.Data;
+
+@Data
+public class QueryIdRoutingConfiguration {
+  // How long to remember query ids that no backend knows, to answer them with 404 right away
+  private long unknownQueryIdTtlMillis = 15_000;
+
+  // How long a request for a query id waits for the backends to be probed, at most
+  private long probeDeadlineMillis = 5_000;
+
+  // Number of recently used query ids that are kept, at least
+  private int indexCapacity = 250_000;
+
+  // Allocate the query id index outside of the Java heap
+  private boolean indexOffHeap;
+
+  // File the query id and UI cookie routes are saved to, so a restart keeps them. Disabled if
+  // not set
+  private String snapshotPath;
+  private long snapshotPeriodMillis = 60_000;
+
+  // Queries of the query history newer than this are routed without a lookup after a restart
+  private long warmStartWindowMillis = 3_600_000;
+  private int warmStartLimit = 100_000;
+
+  // How long the proxy waits for the routes to be restored before it accepts traffic
+  private long warmStartTimeoutMillis = 30_000;
+
+  // Where query routes are shared with the other gateway instances: "local" keeps them in this
+  // instance only, "jdbc" shares them through the gateway database
+  private String store = "local";
+  private long storeFlushIntervalMillis = 50;
+  // How long the response to a submission waits for the route of the query to be written
+  private long storeWriteTimeoutMillis = 1_000;
+  private int storeBatchSize = 500;
+  private long storePollIntervalMillis = 1000;
+  private int storeRetentionHours = 24;
+}
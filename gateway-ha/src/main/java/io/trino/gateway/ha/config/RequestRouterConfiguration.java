@@ -1,5 +1,9 @@
 package io.trino.gateway.ha.config;
 
+import io.trino.gateway.proxyserver.ProxyListener;
+import io.trino.gateway.proxyserver.RequestLane;
+import java.util.ArrayList;
+import java.util.List;
 import lombok.Data;
 
 @Data
@@ -15,8 +19,21 @@ public class RequestRouterConfiguration {
   private String keystorePath;
   private String keystorePass;
 
+  // TLS sessions kept for resumption, on the listener and toward the backends
+  private int sslSessionCacheSize = 20_480;
+  private int sslSessionTimeoutSeconds = 3600;
+  // Name of the JCA provider of the TLS implementation, the JDK default when unset
+  private String sslProvider;
+
   private int historySize = 2000;
 
+  // Threads accepting connections and selecting the ready ones, -1 lets Jetty pick by cores
+  private int acceptors = -1;
+  private int selectors = -1;
+
+  // Listeners in addition to the port, such as a Unix domain socket for a sidecar
+  private List<ProxyListener> listeners = new ArrayList<>();
+
   // Use the certificate between gateway and trino?
   private boolean forwardKeystore;
 
@@ -28,4 +45,33 @@ public class RequestRouterConfiguration {
   // Set size for HttpClient
   private int requestBufferSize = 4 * 1024;
   private int responseBufferSize = 16 * 1024;
+
+  // Response content held while relaying to slow clients, in total and per request, 0 for none
+  private long relayMaxBufferedBytes;
+  private int relayMaxBufferedBytesPerRequest;
+
+  // Connection pool of each backend, backends can override these through the backend API
+  private int backendMaxConnections = 256;
+  private long backendIdleTimeoutMillis = 30_000;
+  private int backendMaxRequestsQueued = 1024;
+
+  // Serve HTTP/2, negotiated with ALPN when using SSL and as h2c otherwise
+  private boolean http2;
+  private int http2MaxConcurrentStreams = 128;
+
+  // Connect to the backends with HTTP/2, the backends must support h2c when not using SSL
+  private boolean backendHttp2;
+
+  // Relay the request and response content without blocking threads on slow clients
+  private boolean asyncProxy;
+
+  // Handle requests on virtual threads when the JDK supports them
+  private boolean virtualThreads;
+
+  // Serve the gateway API and UI in process instead of proxying them to the application port
+  private boolean localDispatch;
+
+  // Lanes of requests by path class, with a limit shared by all lanes unless zero
+  private List<RequestLane> lanes = new ArrayList<>();
+  private int lanesMaxConcurrentRequests;
 }
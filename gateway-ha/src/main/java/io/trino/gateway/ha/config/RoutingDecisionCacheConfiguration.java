@@ -0,0 +1,16 @@
+package io.trino.gateway.ha.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Data;
+
+@Data
+public class RoutingDecisionCacheConfiguration {
+  private boolean enabled;
+  private long maximumSize = 10000;
+  private List<String> headers = new ArrayList<>(List.of(
+      "X-Trino-User",
+      "X-Trino-Source",
+      "X-Trino-Client-Tags",
+      "X-Trino-Routing-Group"));
+}
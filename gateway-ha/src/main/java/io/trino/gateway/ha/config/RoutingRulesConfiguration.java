@@ -6,4 +6,9 @@ import lombok.Data;
 public class RoutingRulesConfiguration {
   private boolean rulesEngineEnabled;
   private String rulesConfigPath;
+  private long rulesRefreshPeriodMillis = 1000;
+  private boolean compiledRulesEnabled;
+  private int profilingSampleRate = 100;
+  private RoutingDecisionCacheConfiguration decisionCache =
+      new RoutingDecisionCacheConfiguration();
 }
@@ -0,0 +1,29 @@
+package io.trino.gateway.ha.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Data;
+
+@Data
+public class RoutingTokenConfiguration {
+  // Add a signed routing token to the URIs of query results, so polls are routed without a lookup
+  private boolean enabled;
+
+  // Secret the tokens are signed with, the same on all gateway instances
+  private String secret;
+
+  // Secrets used before the current one, tokens and cookies signed with them are still accepted
+  private List<String> previousSecrets = new ArrayList<>();
+
+  // Pin UI sessions with a signed cookie instead of a server side session and a database entry
+  private boolean uiCookieEnabled;
+
+  private String uiCookieName = "trino-gateway-backend";
+
+  // A negative value keeps the cookie until the browser is closed
+  private int uiCookieMaxAgeSeconds = -1;
+
+  // Set the Secure flag of the cookie, by default when the request or its X-Forwarded-Proto is
+  // https
+  private Boolean uiCookieSecure;
+}
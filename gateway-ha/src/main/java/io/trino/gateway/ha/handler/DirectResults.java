@@ -0,0 +1,67 @@
+package io.trino.gateway.ha.handler;
+
+import io.trino.gateway.ha.config.DirectResultsConfiguration.Mode;
+import io.trino.gateway.ha.config.ProxyBackendConfiguration;
+import io.trino.gateway.ha.router.GatewayBackendManager;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * External URLs of the backends of the routing groups whose clients fetch the query results from
+ * the backend instead of through the gateway. Kept up to date as backends are added, updated and
+ * activated.
+ */
+public class DirectResults {
+  private final Map<String, Mode> routingGroups;
+  private final Map<String, Target> targets = new ConcurrentHashMap<>();
+
+  public DirectResults(Map<String, Mode> routingGroups, GatewayBackendManager backendManager) {
+    this.routingGroups = routingGroups;
+    backendManager.getAllBackends().forEach(this::update);
+    backendManager.addBackendListener(this::update);
+  }
+
+  void update(ProxyBackendConfiguration backend) {
+    Mode mode = routingGroups.get(backend.getRoutingGroup());
+    if (mode == null || backend.getExternalUrl() == null) {
+      targets.remove(backend.getProxyTo());
+      return;
+    }
+    String externalUrl = backend.getExternalUrl();
+    if (externalUrl.endsWith("/")) {
+      externalUrl = externalUrl.substring(0, externalUrl.length() - 1);
+    }
+    targets.put(backend.getProxyTo(), new Target(mode, externalUrl));
+  }
+
+  /**
+   * Returns the external URL that the polls of the queries of the backend are redirected to, or
+   * null.
+   */
+  String getRedirectUrl(String backend) {
+    return getExternalUrl(backend, Mode.REDIRECT);
+  }
+
+  /**
+   * Returns the external URL that the first nextUri of the queries of the backend points at, or
+   * null.
+   */
+  String getRewriteUrl(String backend) {
+    return getExternalUrl(backend, Mode.REWRITE);
+  }
+
+  private String getExternalUrl(String backend, Mode mode) {
+    Target target = backend == null ? null : targets.get(backend);
+    return target != null && target.mode == mode ? target.externalUrl : null;
+  }
+
+  private static class Target {
+    private final Mode mode;
+    private final String externalUrl;
+
+    private Target(Mode mode, String externalUrl) {
+      this.mode = mode;
+      this.externalUrl = externalUrl;
+    }
+  }
+}
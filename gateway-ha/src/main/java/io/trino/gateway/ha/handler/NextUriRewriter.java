@@ -0,0 +1,95 @@
+package io.trino.gateway.ha.handler;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Points the {@code nextUri} of a Trino query results document at another server while it is
+ * relayed, by replacing its scheme, host and port. The document is not buffered: each chunk is
+ * copied as it arrives and the state is kept across chunks. Once {@code nextUri} is rewritten, or
+ * the {@code columns} or {@code data} of the query are reached, the rest of the document is passed
+ * through as is, so values of the query are never rewritten.
+ */
+class NextUriRewriter {
+  private static final byte[][] FIELDS = {
+      "\"nextUri\":\"".getBytes(UTF_8),
+      // the fields following nextUri, user data may contain a field name like it
+      "\"columns\":".getBytes(UTF_8),
+      "\"data\":".getBytes(UTF_8)};
+  private static final int NEXT_URI = 0;
+
+  private final byte[] baseUrl;
+  // the scheme and authority of the original URI, until the slash starting its path
+  private final ByteArrayOutputStream skipped = new ByteArrayOutputStream();
+  private final int[] matched = new int[FIELDS.length];
+  private int slashes = -1;
+  private boolean done;
+
+  NextUriRewriter(String baseUrl) {
+    this.baseUrl = baseUrl.getBytes(UTF_8);
+  }
+
+  boolean isDone() {
+    return done;
+  }
+
+  byte[] rewrite(ByteBuffer content) {
+    if (content.hasArray()) {
+      return rewrite(content.array(), content.arrayOffset() + content.position(),
+          content.remaining());
+    }
+    byte[] bytes = new byte[content.remaining()];
+    content.duplicate().get(bytes);
+    return rewrite(bytes, 0, bytes.length);
+  }
+
+  byte[] rewrite(byte[] buffer, int offset, int length) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(length + baseUrl.length);
+    for (int i = offset; i < offset + length; i++) {
+      byte b = buffer[i];
+      if (done) {
+        out.write(buffer, i, offset + length - i);
+        break;
+      }
+      if (slashes >= 0) {
+        if (b == '/') {
+          slashes++;
+        }
+        if (slashes == 3) {
+          out.write(baseUrl, 0, baseUrl.length);
+          out.write(b);
+          done = true;
+        } else if (b == '"') {
+          // not an absolute URI, left as is
+          out.write(skipped.toByteArray(), 0, skipped.size());
+          out.write(b);
+          done = true;
+        } else {
+          skipped.write(b);
+        }
+        continue;
+      }
+      out.write(b);
+      for (int f = 0; f < FIELDS.length; f++) {
+        byte[] name = FIELDS[f];
+        if (b == name[matched[f]]) {
+          matched[f]++;
+        } else {
+          // the names contain no repeated prefix other than the opening quote
+          matched[f] = b == name[0] ? 1 : 0;
+        }
+        if (matched[f] == name.length) {
+          if (f == NEXT_URI) {
+            slashes = 0;
+          } else {
+            done = true;
+          }
+          break;
+        }
+      }
+    }
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,49 @@
+package io.trino.gateway.ha.handler;
+
+import static io.trino.gateway.ha.handler.QueryIdCachingProxyHandler.OAUTH_PATH;
+import static io.trino.gateway.ha.handler.QueryIdCachingProxyHandler.TRINO_UI_PATH;
+import static io.trino.gateway.ha.handler.QueryIdCachingProxyHandler.V1_INFO_PATH;
+import static io.trino.gateway.ha.handler.QueryIdCachingProxyHandler.V1_NODE_PATH;
+import static io.trino.gateway.ha.handler.QueryIdCachingProxyHandler.V1_QUERY_PATH;
+import static io.trino.gateway.ha.handler.QueryIdCachingProxyHandler.V1_STATEMENT_PATH;
+
+import jakarta.ws.rs.HttpMethod;
+
+/**
+ * Coarse classification of the requests going through the proxy, used to label metrics.
+ */
+public enum PathClass {
+  STATEMENT_SUBMIT,
+  STATEMENT_POLL,
+  QUERY,
+  UI,
+  OAUTH,
+  INFO,
+  OTHER;
+
+  public String metricName() {
+    return name().toLowerCase();
+  }
+
+  public static PathClass of(String method, String path) {
+    if (path == null) {
+      return OTHER;
+    }
+    if (path.startsWith(V1_STATEMENT_PATH)) {
+      return HttpMethod.POST.equals(method) ? STATEMENT_SUBMIT : STATEMENT_POLL;
+    }
+    if (path.startsWith(V1_QUERY_PATH)) {
+      return QUERY;
+    }
+    if (path.startsWith(TRINO_UI_PATH)) {
+      return UI;
+    }
+    if (path.startsWith(OAUTH_PATH)) {
+      return OAUTH;
+    }
+    if (path.startsWith(V1_INFO_PATH) || path.startsWith(V1_NODE_PATH)) {
+      return INFO;
+    }
+    return OTHER;
+  }
+}
@@ -1,10 +1,14 @@
 package io.trino.gateway.ha.handler;
 
 import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
 import com.google.common.io.CharStreams;
+import io.trino.gateway.ha.metrics.GatewayMetrics;
+import io.trino.gateway.ha.router.ConnectionChecker;
 import io.trino.gateway.ha.router.QueryHistoryManager;
 import io.trino.gateway.ha.router.RoutingGroupSelector;
 import io.trino.gateway.ha.router.RoutingManager;
@@ -17,6 +21,7 @@ import jakarta.ws.rs.HttpMethod;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.HashMap;
@@ -24,12 +29,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import lombok.extern.slf4j.Slf4j;
 import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpStatus;
-import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.BufferUtil;
 
 @Slf4j
 public class QueryIdCachingProxyHandler extends ProxyHandler {
@@ -47,6 +54,12 @@ public class QueryIdCachingProxyHandler extends ProxyHandler {
   public static final String USER_HEADER = "X-Trino-User";
   public static final String SOURCE_HEADER = "X-Trino-Source";
   public static final String HOST_HEADER = "Host";
+  private static final String START_NANOS_ATTRIBUTE = "gateway.proxy.startNanos";
+  private static final String BACKEND_ATTRIBUTE = "gateway.proxy.backend";
+  private static final String NEXT_URI_REWRITER_ATTRIBUTE = "gateway.nextUriRewriter";
+  private static final String ROUTING_TOKEN_REWRITER_ATTRIBUTE =
+      "gateway.proxy.routingTokenRewriter";
+  private static final String ROUTING_COOKIE_ATTRIBUTE = "gateway.proxy.routingCookie";
   private static final int QUERY_TEXT_LENGTH_FOR_HISTORY = 200;
   private static final Pattern QUERY_ID_PATTERN = Pattern.compile(".*[/=?](\\d+_\\d+_\\d+_\\w+).*");
 
@@ -57,8 +70,15 @@ public class QueryIdCachingProxyHandler extends ProxyHandler {
   private final RoutingManager routingManager;
   private final RoutingGroupSelector routingGroupSelector;
   private final QueryHistoryManager queryHistoryManager;
+  private final ConnectionChecker connectionChecker = new ConnectionChecker();
 
   private final Meter requestMeter;
+  private final MetricRegistry metricRegistry;
+  private final Timer rewriteTargetTimer;
+  private final Timer routingRulesTimer;
+  private final Meter responseBytesMeter;
+  private final Meter directResultsRedirects;
+  private final Meter directResultsRewrites;
   private final int serverApplicationPort;
   private final List<String> extraWhitelistPaths;
   private final List<String> extraStatementPaths;
@@ -66,6 +86,9 @@ public class QueryIdCachingProxyHandler extends ProxyHandler {
   private final Map<Integer, String> requestIdBackendMap = new HashMap<>();
   private final Set<String> cookiePaths;
   private final Set<String> logoutCookiePaths;
+  private RoutingTokens routingTokens;
+  private RoutingCookie routingCookie;
+  private DirectResults directResults;
 
   public QueryIdCachingProxyHandler(
       QueryHistoryManager queryHistoryManager,
@@ -77,7 +100,36 @@ public class QueryIdCachingProxyHandler extends ProxyHandler {
       List<String> extraStatementPaths,
       Set<String> cookiePaths,
       Set<String> logoutCookiePaths) {
+    this(queryHistoryManager,
+        routingManager,
+        routingGroupSelector,
+        serverApplicationPort,
+        requestMeter,
+        new MetricRegistry(),
+        extraWhitelistPaths,
+        extraStatementPaths,
+        cookiePaths,
+        logoutCookiePaths);
+  }
+
+  public QueryIdCachingProxyHandler(
+      QueryHistoryManager queryHistoryManager,
+      RoutingManager routingManager,
+      RoutingGroupSelector routingGroupSelector,
+      int serverApplicationPort,
+      Meter requestMeter,
+      MetricRegistry metricRegistry,
+      List<String> extraWhitelistPaths,
+      List<String> extraStatementPaths,
+      Set<String> cookiePaths,
+      Set<String> logoutCookiePaths) {
     this.requestMeter = requestMeter;
+    this.metricRegistry = metricRegistry;
+    this.rewriteTargetTimer = GatewayMetrics.timer(metricRegistry, "routing", "rewriteTarget");
+    this.routingRulesTimer = GatewayMetrics.timer(metricRegistry, "routing", "rules");
+    this.responseBytesMeter = metricRegistry.meter("proxy.responseBytes");
+    this.directResultsRedirects = metricRegistry.meter("routing.directResults.redirects");
+    this.directResultsRewrites = metricRegistry.meter("routing.directResults.rewrites");
     this.routingManager = routingManager;
     this.routingGroupSelector = routingGroupSelector;
     this.queryHistoryManager = queryHistoryManager;
@@ -88,6 +140,29 @@ public class QueryIdCachingProxyHandler extends ProxyHandler {
     this.logoutCookiePaths = logoutCookiePaths;
   }
 
+  /**
+   * Lets the clients of some routing groups fetch the query results from the backends directly.
+   */
+  public void setDirectResults(DirectResults directResults) {
+    this.directResults = directResults;
+  }
+
+  /**
+   * Adds a signed routing token to the URIs of the query results, so that the following requests
+   * of a query are routed without a lookup, by any gateway instance that shares the secret.
+   */
+  public void setRoutingTokens(RoutingTokens routingTokens) {
+    this.routingTokens = routingTokens;
+  }
+
+  /**
+   * Pins UI and OAuth sessions to a backend with a signed cookie, instead of a server side
+   * session and a database entry.
+   */
+  public void setRoutingCookie(RoutingCookie routingCookie) {
+    this.routingCookie = routingCookie;
+  }
+
   protected String extractQueryIdIfPresent(String path, String queryParams) {
     if (path == null) {
       return null;
@@ -147,7 +222,14 @@ public class QueryIdCachingProxyHandler extends ProxyHandler {
   }
 
   String getBackendForRequest(HttpServletRequest request) {
-    String routingGroup = routingGroupSelector.findRoutingGroup(request);
+    String routingGroup;
+    Timer.Context rulesContext = routingRulesTimer.time();
+    try {
+      request.setAttribute(ConnectionChecker.REQUEST_ATTRIBUTE, connectionChecker);
+      routingGroup = routingGroupSelector.findRoutingGroup(request);
+    } finally {
+      rulesContext.stop();
+    }
     String user = getQueryUser(request);
     if (!Strings.isNullOrEmpty(routingGroup)) {
       // This falls back on adhoc backend if there are no cluster found for the routing group.
@@ -158,13 +240,49 @@ public class QueryIdCachingProxyHandler extends ProxyHandler {
   }
 
   private boolean doRecordQueryId(HttpServletRequest request) {
-    String requestPath = request.getRequestURI();
-    return (requestPath.startsWith(V1_STATEMENT_PATH)
-            || extraStatementPaths.stream().anyMatch(s -> requestPath.startsWith(s)))
+    return isStatementPath(request.getRequestURI())
             && request.getMethod().equals(HttpMethod.POST);
     //TODO: add queryPaths config
   }
 
+  private boolean isStatementPath(String requestPath) {
+    return requestPath.startsWith(V1_STATEMENT_PATH)
+            || extraStatementPaths.stream().anyMatch(s -> requestPath.startsWith(s));
+  }
+
+  private String getBackendFromRoutingToken(HttpServletRequest request) {
+    if (routingTokens == null || doRecordQueryId(request)) {
+      return null;
+    }
+    String token = RoutingTokens.fromQueryString(request.getQueryString());
+    if (token == null) {
+      return null;
+    }
+    String backend = routingTokens.verify(token);
+    if (backend == null) {
+      log.warn("Ignoring invalid routing token for request to {}", request.getRequestURI());
+    }
+    return backend;
+  }
+
+  private String getBackendFromRoutingCookie(HttpServletRequest request) {
+    if (routingCookie == null) {
+      return null;
+    }
+    Cookie cookie = routingCookie.find(request);
+    if (cookie == null) {
+      return null;
+    }
+    String backend = routingCookie.getBackend(cookie);
+    if (backend == null) {
+      log.warn("Ignoring invalid routing cookie for request to {}", request.getRequestURI());
+    } else if (!routingCookie.isCurrent(cookie, backend)) {
+      // signed with a previous secret, sign it again before that secret is retired
+      request.setAttribute(ROUTING_COOKIE_ATTRIBUTE, routingCookie.create(request, backend));
+    }
+    return backend;
+  }
+
   static void setForwardedHostHeaderOnProxyRequest(HttpServletRequest request,
                                                    Request proxyRequest) {
     if (request.getHeader(PROXY_TARGET_HEADER) != null) {
@@ -248,6 +366,17 @@ public class QueryIdCachingProxyHandler extends ProxyHandler {
       setForwardedHostHeaderOnProxyRequest(request, proxyRequest);
     }
 
+    if (rewritesResponseContent(request)) {
+      // the routing tokens and next URIs are rewritten in the plain response
+      proxyRequest.headers(headers -> headers.remove(HttpHeader.ACCEPT_ENCODING));
+    }
+
+  }
+
+  @Override
+  protected boolean isLocalRequest(HttpServletRequest request) {
+    // the gateway API and UI, served by the application of the gateway
+    return !isPathWhiteListed(request.getRequestURI());
   }
 
   private boolean isPathWhiteListed(String path) {
@@ -274,11 +403,21 @@ public class QueryIdCachingProxyHandler extends ProxyHandler {
     return !Strings.isNullOrEmpty(routingManager.findBackendForUiCookie(sessionId));
   }
 
+  @Override
+  public Optional<Cookie> addCookie(HttpServletRequest clientRequest) {
+    return Optional.ofNullable((Cookie) clientRequest.getAttribute(ROUTING_COOKIE_ATTRIBUTE));
+  }
+
   @Override
   public Optional<Cookie> deleteCookie(HttpServletRequest clientRequest) {
     if (!logoutCookiePaths.contains(clientRequest.getRequestURI())) {
       return Optional.empty();
     }
+    if (routingCookie != null) {
+      return routingCookie.find(clientRequest) == null
+          ? Optional.empty()
+          : Optional.of(routingCookie.expire());
+    }
     Optional<Cookie> cookie = Arrays.stream(clientRequest.getCookies()).filter(
         c -> c.getName().equalsIgnoreCase("JSESSIONID")).findAny();
     Optional<String> sessionId = cookie.map(cookie1 -> cookie1.getValue().split("\\.")[0]);
@@ -296,20 +435,44 @@ public class QueryIdCachingProxyHandler extends ProxyHandler {
 
   @Override
   public String rewriteTarget(HttpServletRequest request, int requestId) {
+    long startNanos = System.nanoTime();
+    request.setAttribute(START_NANOS_ATTRIBUTE, startNanos);
+    try {
+      return rewriteTargetInternal(request, requestId);
+    } finally {
+      rewriteTargetTimer.update(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  private String rewriteTargetInternal(HttpServletRequest request, int requestId) {
     /* Here comes the load balancer / gateway */
     String backendAddress = "http://localhost:" + serverApplicationPort;
 
     // Only load balance trino query and oauth APIs.
     if (isPathWhiteListed(request.getRequestURI())) {
-      String queryId = extractQueryIdIfPresent(request);
-
-      // Find query id and get url from cache
-      if (!Strings.isNullOrEmpty(queryId)) {
+      String tokenBackend = getBackendFromRoutingToken(request);
+      String queryId = tokenBackend == null ? extractQueryIdIfPresent(request) : null;
+      String cookieBackend = getBackendFromRoutingCookie(request);
+
+      if (tokenBackend != null) {
+        // the backend was signed into the URI by the gateway
+        backendAddress = tokenBackend;
+      } else if (!Strings.isNullOrEmpty(queryId)) {
+        // Find query id and get url from cache
         backendAddress = routingManager.findBackendForQueryId(queryId);
+        if (backendAddress == null) {
+          log.debug("No backend knows query id [{}], answering {}", queryId,
+              HttpStatus.NOT_FOUND_404);
+          reject(request, HttpStatus.NOT_FOUND_404);
+          return null;
+        }
       } else if (doRecordQueryId(request)) {
         backendAddress = getBackendForRequest(request);
         log.debug("mapping " + requestId + " to " + backendAddress);
         requestIdBackendMap.put(requestId, backendAddress);
+      } else if (cookieBackend != null) {
+        // pin browser sessions to the backend signed into the routing cookie
+        backendAddress = cookieBackend;
       } else if (!Strings.isNullOrEmpty(request.getRequestedSessionId())) {
         //pin browser sessions to the same backend based on jsessionid, but load balance queries
         backendAddress = routingManager.findBackendForUiCookie(
@@ -322,14 +485,21 @@ public class QueryIdCachingProxyHandler extends ProxyHandler {
       } else {
         backendAddress = getBackendForRequest(request);
         if (cookiePaths.contains(request.getRequestURI())) {
-          routingManager.setBackendForCookie(request.getSession().getId(), backendAddress);
-          log.debug("using session id " + request.getSession().getId());
+          if (routingCookie != null) {
+            request.setAttribute(ROUTING_COOKIE_ATTRIBUTE,
+                routingCookie.create(request, backendAddress));
+          } else {
+            routingManager.setBackendForCookie(request.getSession().getId(), backendAddress);
+            log.debug("using session id " + request.getSession().getId());
+          }
         }
       }
       // set target backend so that we could save queryId to backend mapping later.
       ((MultiReadHttpServletRequest) request).addHeader(PROXY_TARGET_HEADER, backendAddress);
     }
 
+    request.setAttribute(BACKEND_ATTRIBUTE, backendAddress);
+
     if (isAuthEnabled() && request.getHeader("Authorization") != null) {
       if (!handleAuthRequest(request)) {
         // This implies the AuthRequest was not authenticated, hence we error out from here.
@@ -338,10 +508,21 @@ public class QueryIdCachingProxyHandler extends ProxyHandler {
       }
     }
 
+    String queryString = routingTokens == null
+        ? request.getQueryString()
+        : RoutingTokens.removeFromQueryString(request.getQueryString());
+    String redirectUrl = getDirectResultsRedirectUrl(request, backendAddress);
+    if (redirectUrl != null) {
+      directResultsRedirects.mark();
+      redirect(request,
+          redirectUrl + request.getRequestURI() + (queryString != null ? "?" + queryString : ""));
+      return null;
+    }
+
     String targetLocation =
         backendAddress
             + request.getRequestURI()
-            + (request.getQueryString() != null ? "?" + request.getQueryString() : "");
+            + (queryString != null ? "?" + queryString : "");
 
     String originalLocation =
         request.getScheme()
@@ -356,24 +537,118 @@ public class QueryIdCachingProxyHandler extends ProxyHandler {
     return targetLocation;
   }
 
-  protected void postConnectionHook(
+  @Override
+  protected ByteBuffer postConnectionHook(
       HttpServletRequest request,
       HttpServletResponse response,
-      byte[] buffer,
-      int offset,
-      int length,
-      Callback callback,
+      ByteBuffer content,
       int requestId) {
     try {
       if (doRecordQueryId(request)) {
-        recordBackendForQueryId(request, response, buffer, requestId);
+        recordBackendForQueryId(request, response, BufferUtil.toArray(content), requestId);
       } else {
         log.debug("SKIPPING For {}", request.getRequestURI());
       }
     } catch (Exception e) {
       log.error("Error in proxying falling back to super call", e);
     }
-    super.postConnectionHook(request, response, buffer, offset, length, callback);
+    responseBytesMeter.mark(content.remaining());
+    NextUriRewriter nextUriRewriter = getNextUriRewriter(request, response);
+    if (nextUriRewriter != null) {
+      return nextUriRewriter.isDone()
+          ? content : ByteBuffer.wrap(nextUriRewriter.rewrite(content));
+    }
+    RoutingTokenRewriter rewriter = getRoutingTokenRewriter(request, response);
+    if (rewriter != null && !rewriter.isDone()) {
+      return ByteBuffer.wrap(rewriter.rewrite(content));
+    }
+    return content;
+  }
+
+  @Override
+  protected boolean rewritesResponseContent(HttpServletRequest request) {
+    return (routingTokens != null && isStatementPath(request.getRequestURI()))
+        || getDirectResultsRewriteUrl(request) != null;
+  }
+
+  String getDirectResultsRedirectUrl(HttpServletRequest request, String backend) {
+    String method = request.getMethod();
+    // only the polls, a query is still cancelled through the gateway
+    if (directResults == null
+        || !(method.equals(HttpMethod.GET) || method.equals(HttpMethod.HEAD))
+        || PathClass.of(method, request.getRequestURI()) != PathClass.STATEMENT_POLL) {
+      return null;
+    }
+    return directResults.getRedirectUrl(backend);
+  }
+
+  private String getDirectResultsRewriteUrl(HttpServletRequest request) {
+    if (directResults == null || !doRecordQueryId(request)) {
+      return null;
+    }
+    return directResults.getRewriteUrl((String) request.getAttribute(BACKEND_ATTRIBUTE));
+  }
+
+  /**
+   * Returns the rewriter pointing the first nextUri of the query at the backend, which then
+   * replaces the routing token rewriter.
+   */
+  private NextUriRewriter getNextUriRewriter(HttpServletRequest request,
+                                             HttpServletResponse response) {
+    Object rewriter = request.getAttribute(NEXT_URI_REWRITER_ATTRIBUTE);
+    if (rewriter == null) {
+      String rewriteUrl = getDirectResultsRewriteUrl(request);
+      if (rewriteUrl == null || isGZipEncoding(response)) {
+        return null;
+      }
+      directResultsRewrites.mark();
+      rewriter = new NextUriRewriter(rewriteUrl);
+      request.setAttribute(NEXT_URI_REWRITER_ATTRIBUTE, rewriter);
+    }
+    return (NextUriRewriter) rewriter;
+  }
+
+  private RoutingTokenRewriter getRoutingTokenRewriter(HttpServletRequest request,
+                                                       HttpServletResponse response) {
+    if (!rewritesResponseContent(request) || isGZipEncoding(response)) {
+      return null;
+    }
+    Object rewriter = request.getAttribute(ROUTING_TOKEN_REWRITER_ATTRIBUTE);
+    if (rewriter == null) {
+      String backend = (String) request.getAttribute(BACKEND_ATTRIBUTE);
+      if (backend == null) {
+        return null;
+      }
+      rewriter = new RoutingTokenRewriter(routingTokens.sign(backend));
+      request.setAttribute(ROUTING_TOKEN_REWRITER_ATTRIBUTE, rewriter);
+    }
+    return (RoutingTokenRewriter) rewriter;
+  }
+
+  @Override
+  public void close() {
+    routingGroupSelector.close();
+  }
+
+  @Override
+  protected void postResponseHook(
+      HttpServletRequest request,
+      HttpServletResponse response,
+      int requestId,
+      Throwable failure) {
+    Object startNanos = request.getAttribute(START_NANOS_ATTRIBUTE);
+    if (!(startNanos instanceof Long)) {
+      return;
+    }
+    PathClass pathClass = doRecordQueryId(request)
+        ? PathClass.STATEMENT_SUBMIT
+        : PathClass.of(request.getMethod(), request.getRequestURI());
+    String backend = GatewayMetrics.backendName((String) request.getAttribute(BACKEND_ATTRIBUTE));
+    GatewayMetrics.timer(metricRegistry, "proxy.latency", backend, pathClass.metricName())
+        .update(System.nanoTime() - (Long) startNanos, TimeUnit.NANOSECONDS);
+    if (failure != null) {
+      metricRegistry.meter(MetricRegistry.name("proxy.failures", backend)).mark();
+    }
   }
 
   void recordBackendForQueryId(
@@ -408,8 +683,7 @@ public class QueryIdCachingProxyHandler extends ProxyHandler {
       queryDetail.setQueryId(results.get("id"));
 
       if (!Strings.isNullOrEmpty(queryDetail.getQueryId())) {
-        //TODO: use the DB to back the queryId cache so it is shared across gateway instances
-        routingManager.setBackendForQueryId(
+        routingManager.recordBackendForQueryId(
                 queryDetail.getQueryId(), backendUrl);
         log.debug(
                 "QueryId [{}] mapped with proxy [{}]",
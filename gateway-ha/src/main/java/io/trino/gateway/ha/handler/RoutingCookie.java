@@ -0,0 +1,84 @@
+package io.trino.gateway.ha.handler;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import org.eclipse.jetty.http.HttpHeader;
+
+/**
+ * Cookie that pins a UI or OAuth session to a backend. The value is a routing token of the
+ * backend, so the session is routed by any gateway instance that shares the secret, without a
+ * database lookup or a server side session.
+ */
+public class RoutingCookie {
+  private final RoutingTokens routingTokens;
+  private final String name;
+  private final int maxAgeSeconds;
+  private final Boolean secure;
+
+  public RoutingCookie(RoutingTokens routingTokens, String name, int maxAgeSeconds) {
+    this(routingTokens, name, maxAgeSeconds, null);
+  }
+
+  /**
+   * Creates the cookie with the Secure flag given by {@code secure}, or if it is null, set when
+   * the client uses https, directly or through a proxy that ends TLS in front of the gateway.
+   */
+  public RoutingCookie(RoutingTokens routingTokens, String name, int maxAgeSeconds,
+                       Boolean secure) {
+    this.routingTokens = routingTokens;
+    this.name = name;
+    this.maxAgeSeconds = maxAgeSeconds;
+    this.secure = secure;
+  }
+
+  /**
+   * Returns the routing cookie of the request, or null.
+   */
+  Cookie find(HttpServletRequest request) {
+    Cookie[] cookies = request.getCookies();
+    if (cookies == null) {
+      return null;
+    }
+    for (Cookie cookie : cookies) {
+      if (name.equals(cookie.getName())) {
+        return cookie;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the backend the cookie pins the session to, or null if the cookie is not valid.
+   */
+  String getBackend(Cookie cookie) {
+    return routingTokens.verify(cookie.getValue());
+  }
+
+  /**
+   * Whether the cookie is signed with the current secret.
+   */
+  boolean isCurrent(Cookie cookie, String backend) {
+    return routingTokens.isCurrent(cookie.getValue(), backend);
+  }
+
+  Cookie create(HttpServletRequest request, String backend) {
+    Cookie cookie = new Cookie(name, routingTokens.sign(backend));
+    cookie.setPath("/");
+    cookie.setHttpOnly(true);
+    cookie.setSecure(secure != null ? secure : isSecure(request));
+    cookie.setMaxAge(maxAgeSeconds);
+    return cookie;
+  }
+
+  private static boolean isSecure(HttpServletRequest request) {
+    return request.isSecure()
+        || "https".equalsIgnoreCase(request.getHeader(HttpHeader.X_FORWARDED_PROTO.asString()));
+  }
+
+  Cookie expire() {
+    Cookie cookie = new Cookie(name, "delete");
+    cookie.setPath("/");
+    cookie.setMaxAge(0);
+    return cookie;
+  }
+}
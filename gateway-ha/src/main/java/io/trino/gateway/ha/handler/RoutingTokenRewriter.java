@@ -0,0 +1,101 @@
+package io.trino.gateway.ha.handler;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Adds the routing token parameter to the {@code infoUri}, {@code partialCancelUri} and
+ * {@code nextUri} of a Trino query results document while it is relayed. The document is not
+ * buffered: each chunk is copied as it arrives, with the parameter inserted before the closing
+ * quote of these fields, and the state is kept across chunks. Once {@code nextUri}, the last of
+ * the fields, is rewritten, or the {@code columns} or {@code data} of the query are reached, the
+ * rest of the document is passed through as is, so values of the query are never rewritten.
+ */
+class RoutingTokenRewriter {
+  private static final byte[][] FIELDS = {
+      "\"infoUri\":\"".getBytes(UTF_8),
+      "\"partialCancelUri\":\"".getBytes(UTF_8),
+      "\"nextUri\":\"".getBytes(UTF_8),
+      // the fields following the URIs, user data may contain field names like the ones above
+      "\"columns\":".getBytes(UTF_8),
+      "\"data\":".getBytes(UTF_8)};
+  private static final int NEXT_URI = 2;
+
+  private final byte[] parameter;
+  private final int[] matched = new int[FIELDS.length];
+  private int field = -1;
+  private boolean hasQuery;
+  private boolean escaped;
+  private boolean done;
+
+  RoutingTokenRewriter(String token) {
+    this.parameter = (RoutingTokens.PARAMETER + "=" + token).getBytes(UTF_8);
+  }
+
+  boolean isDone() {
+    return done;
+  }
+
+  byte[] rewrite(ByteBuffer content) {
+    if (content.hasArray()) {
+      return rewrite(content.array(), content.arrayOffset() + content.position(),
+          content.remaining());
+    }
+    byte[] bytes = new byte[content.remaining()];
+    content.duplicate().get(bytes);
+    return rewrite(bytes, 0, bytes.length);
+  }
+
+  byte[] rewrite(byte[] buffer, int offset, int length) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(length + 3 * (parameter.length + 1));
+    for (int i = offset; i < offset + length; i++) {
+      byte b = buffer[i];
+      if (done) {
+        out.write(buffer, i, offset + length - i);
+        break;
+      }
+      if (field >= 0) {
+        if (escaped) {
+          escaped = false;
+        } else if (b == '\\') {
+          escaped = true;
+        } else if (b == '?') {
+          hasQuery = true;
+        } else if (b == '"') {
+          out.write(hasQuery ? '&' : '?');
+          out.write(parameter, 0, parameter.length);
+          done = field == NEXT_URI;
+          field = -1;
+        }
+        out.write(b);
+        continue;
+      }
+      out.write(b);
+      for (int f = 0; f < FIELDS.length; f++) {
+        byte[] name = FIELDS[f];
+        if (b == name[matched[f]]) {
+          matched[f]++;
+        } else {
+          // the names contain no repeated prefix other than the opening quote
+          matched[f] = b == name[0] ? 1 : 0;
+        }
+        if (matched[f] == name.length) {
+          if (f > NEXT_URI) {
+            done = true;
+          } else {
+            field = f;
+            hasQuery = false;
+          }
+          break;
+        }
+      }
+      if (field >= 0) {
+        Arrays.fill(matched, 0);
+      }
+    }
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,144 @@
+package io.trino.gateway.ha.handler;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.Strings;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Signs backend addresses into compact tokens, so that requests carrying a token are routed
+ * without a lookup. A token is the URL-safe base64 encoded backend, a dot, and the first 16 bytes
+ * of the HMAC-SHA256 of the backend.
+ *
+ * <p>Tokens are signed with the current secret. Tokens signed with one of the previous secrets are
+ * still accepted, so that a secret can be rotated without breaking the queries and sessions in
+ * flight.
+ */
+public class RoutingTokens {
+  public static final String PARAMETER = "routingToken";
+  private static final String ALGORITHM = "HmacSHA256";
+  private static final int MAC_BYTES = 16;
+
+  private final List<SecretKeySpec> keys = new ArrayList<>();
+  // tokens signed with the current secret, by backend
+  private final Map<String, String> signed = new ConcurrentHashMap<>();
+  // backends of the valid tokens seen so far, so the MAC is computed once per backend and secret
+  private final Map<String, String> verified = new ConcurrentHashMap<>();
+
+  public RoutingTokens(String secret) {
+    this(secret, List.of());
+  }
+
+  public RoutingTokens(String secret, List<String> previousSecrets) {
+    if (Strings.isNullOrEmpty(secret)) {
+      throw new IllegalArgumentException("A secret is required to sign routing tokens");
+    }
+    keys.add(new SecretKeySpec(secret.getBytes(UTF_8), ALGORITHM));
+    for (String previousSecret : previousSecrets) {
+      if (!Strings.isNullOrEmpty(previousSecret)) {
+        keys.add(new SecretKeySpec(previousSecret.getBytes(UTF_8), ALGORITHM));
+      }
+    }
+  }
+
+  public String sign(String backend) {
+    return signed.computeIfAbsent(backend, b -> computeToken(keys.get(0), b));
+  }
+
+  /**
+   * Returns the backend of the token, or null if the token was not signed with any of the
+   * secrets.
+   */
+  public String verify(String token) {
+    if (token == null) {
+      return null;
+    }
+    String known = verified.get(token);
+    if (known != null) {
+      return known;
+    }
+    int dot = token.indexOf('.');
+    if (dot <= 0) {
+      return null;
+    }
+    String backend;
+    try {
+      backend = new String(Base64.getUrlDecoder().decode(token.substring(0, dot)), UTF_8);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+    for (SecretKeySpec key : keys) {
+      String expected = computeToken(key, backend);
+      if (MessageDigest.isEqual(expected.getBytes(UTF_8), token.getBytes(UTF_8))) {
+        // only valid tokens are kept, so there is one entry per backend and secret at most
+        verified.put(token, backend);
+        return backend;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Whether the token is signed with the current secret.
+   */
+  public boolean isCurrent(String token, String backend) {
+    return sign(backend).equals(token);
+  }
+
+  private static String computeToken(SecretKeySpec key, String backend) {
+    try {
+      Mac mac = Mac.getInstance(ALGORITHM);
+      mac.init(key);
+      byte[] signature = Arrays.copyOf(mac.doFinal(backend.getBytes(UTF_8)), MAC_BYTES);
+      Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+      return encoder.encodeToString(backend.getBytes(UTF_8)) + "."
+          + encoder.encodeToString(signature);
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("Cannot sign routing tokens", e);
+    }
+  }
+
+  /**
+   * Returns the value of the routing token parameter of the query string, or null.
+   */
+  static String fromQueryString(String queryString) {
+    if (queryString == null) {
+      return null;
+    }
+    for (String parameter : queryString.split("&")) {
+      if (parameter.startsWith(PARAMETER + "=")) {
+        return parameter.substring(PARAMETER.length() + 1);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the query string without the routing token parameter, or null if no other parameter
+   * is left.
+   */
+  static String removeFromQueryString(String queryString) {
+    if (queryString == null || !queryString.contains(PARAMETER + "=")) {
+      return queryString;
+    }
+    StringBuilder result = new StringBuilder();
+    for (String parameter : queryString.split("&")) {
+      if (!parameter.startsWith(PARAMETER + "=")) {
+        if (result.length() > 0) {
+          result.append('&');
+        }
+        result.append(parameter);
+      }
+    }
+    return result.length() == 0 ? null : result.toString();
+  }
+}
@@ -0,0 +1,50 @@
+package io.trino.gateway.ha.metrics;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import java.net.URI;
+import java.util.function.Supplier;
+
+/**
+ * Helpers to register gateway metrics in the Dropwizard {@link MetricRegistry}. Timers and
+ * histograms created here use an {@link HdrHistogramReservoir}.
+ */
+public final class GatewayMetrics {
+  private GatewayMetrics() {
+  }
+
+  public static Timer timer(MetricRegistry registry, String name, String... names) {
+    return registry.timer(MetricRegistry.name(name, names),
+        () -> new Timer(new HdrHistogramReservoir()));
+  }
+
+  public static Histogram histogram(MetricRegistry registry, String name, String... names) {
+    return registry.histogram(MetricRegistry.name(name, names),
+        () -> new Histogram(new HdrHistogramReservoir()));
+  }
+
+  public static <T> void gauge(MetricRegistry registry, String name, Supplier<T> value) {
+    registry.gauge(name, () -> (Gauge<T>) value::get);
+  }
+
+  /**
+   * Turns a backend url such as {@code http://trino-1:8080} into a metric name component
+   * such as {@code trino-1_8080}.
+   */
+  public static String backendName(String backendUrl) {
+    if (backendUrl == null) {
+      return "unknown";
+    }
+    try {
+      URI uri = URI.create(backendUrl);
+      if (uri.getHost() != null) {
+        return uri.getPort() == -1 ? uri.getHost() : uri.getHost() + "_" + uri.getPort();
+      }
+    } catch (IllegalArgumentException e) {
+      // fall through to the raw value
+    }
+    return backendUrl.replaceAll("[^A-Za-z0-9_-]", "_");
+  }
+}
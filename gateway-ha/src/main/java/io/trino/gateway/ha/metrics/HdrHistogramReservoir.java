@@ -0,0 +1,127 @@
+package io.trino.gateway.ha.metrics;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+import org.HdrHistogram.Recorder;
+
+/**
+ * A {@link Reservoir} backed by an HdrHistogram {@link Recorder}. Recording is wait-free, so it
+ * is cheap enough to sit on the per-request path. Snapshots cover the values recorded during the
+ * current and the previous window, so percentiles follow recent traffic instead of the whole
+ * process lifetime.
+ */
+public class HdrHistogramReservoir implements Reservoir {
+  private static final int SIGNIFICANT_VALUE_DIGITS = 2;
+  private static final long DEFAULT_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+  private final Recorder recorder = new Recorder(SIGNIFICANT_VALUE_DIGITS);
+  private final long windowMillis;
+
+  private Histogram intervalHistogram;
+  private Histogram currentWindow = new Histogram(SIGNIFICANT_VALUE_DIGITS);
+  private Histogram previousWindow = new Histogram(SIGNIFICANT_VALUE_DIGITS);
+  private long windowStartMillis = System.currentTimeMillis();
+
+  public HdrHistogramReservoir() {
+    this(DEFAULT_WINDOW_MILLIS);
+  }
+
+  public HdrHistogramReservoir(long windowMillis) {
+    this.windowMillis = windowMillis;
+  }
+
+  @Override
+  public int size() {
+    return getSnapshot().size();
+  }
+
+  @Override
+  public void update(long value) {
+    recorder.recordValue(Math.max(value, 0));
+  }
+
+  @Override
+  public synchronized Snapshot getSnapshot() {
+    intervalHistogram = recorder.getIntervalHistogram(intervalHistogram);
+    long now = System.currentTimeMillis();
+    if (now - windowStartMillis >= windowMillis) {
+      Histogram expired = previousWindow;
+      previousWindow = currentWindow;
+      currentWindow = expired;
+      currentWindow.reset();
+      windowStartMillis = now;
+    }
+    currentWindow.add(intervalHistogram);
+
+    Histogram merged = currentWindow.copy();
+    merged.add(previousWindow);
+    return new HdrSnapshot(merged);
+  }
+
+  static class HdrSnapshot extends Snapshot {
+    private final Histogram histogram;
+
+    HdrSnapshot(Histogram histogram) {
+      this.histogram = histogram;
+    }
+
+    @Override
+    public double getValue(double quantile) {
+      return histogram.getValueAtPercentile(quantile * 100.0);
+    }
+
+    @Override
+    public long[] getValues() {
+      long[] values = new long[size()];
+      int i = 0;
+      for (HistogramIterationValue value : histogram.recordedValues()) {
+        for (long n = 0; n < value.getCountAtValueIteratedTo() && i < values.length; n++) {
+          values[i++] = value.getValueIteratedTo();
+        }
+      }
+      return values;
+    }
+
+    @Override
+    public int size() {
+      return (int) Math.min(histogram.getTotalCount(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public long getMax() {
+      return histogram.getMaxValue();
+    }
+
+    @Override
+    public double getMean() {
+      return histogram.getMean();
+    }
+
+    @Override
+    public long getMin() {
+      return histogram.getMinValue();
+    }
+
+    @Override
+    public double getStdDev() {
+      return histogram.getStdDeviation();
+    }
+
+    @Override
+    public void dump(OutputStream output) {
+      try (PrintWriter out = new PrintWriter(new OutputStreamWriter(output, UTF_8))) {
+        for (long value : getValues()) {
+          out.printf("%d%n", value);
+        }
+      }
+    }
+  }
+}
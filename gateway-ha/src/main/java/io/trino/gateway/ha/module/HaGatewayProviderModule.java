@@ -1,6 +1,8 @@
 package io.trino.gateway.ha.module;
 
 import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
 import io.dropwizard.auth.AuthFilter;
@@ -11,23 +13,38 @@ import io.dropwizard.core.setup.Environment;
 import io.trino.gateway.baseapp.AppModule;
 import io.trino.gateway.ha.config.AuthenticationConfiguration;
 import io.trino.gateway.ha.config.AuthorizationConfiguration;
+import io.trino.gateway.ha.config.DirectResultsConfiguration;
 import io.trino.gateway.ha.config.HaGatewayConfiguration;
+import io.trino.gateway.ha.config.ProxyBackendConfiguration;
 import io.trino.gateway.ha.config.RequestRouterConfiguration;
+import io.trino.gateway.ha.config.RoutingDecisionCacheConfiguration;
 import io.trino.gateway.ha.config.RoutingRulesConfiguration;
+import io.trino.gateway.ha.config.RoutingTokenConfiguration;
 import io.trino.gateway.ha.config.UserConfiguration;
+import io.trino.gateway.ha.handler.DirectResults;
+import io.trino.gateway.ha.handler.PathClass;
 import io.trino.gateway.ha.handler.QueryIdCachingProxyHandler;
+import io.trino.gateway.ha.handler.RoutingCookie;
+import io.trino.gateway.ha.handler.RoutingTokens;
+import io.trino.gateway.ha.metrics.GatewayMetrics;
 import io.trino.gateway.ha.persistence.JdbcConnectionManager;
 import io.trino.gateway.ha.router.BackendStateManager;
+import io.trino.gateway.ha.router.CachingRoutingGroupSelector;
 import io.trino.gateway.ha.router.CookieCacheManager;
 import io.trino.gateway.ha.router.GatewayBackendManager;
 import io.trino.gateway.ha.router.HaGatewayManager;
 import io.trino.gateway.ha.router.HaQueryHistoryManager;
 import io.trino.gateway.ha.router.HaResourceGroupsManager;
 import io.trino.gateway.ha.router.HaRoutingManager;
+import io.trino.gateway.ha.router.JdbcQueryRoutingStore;
+import io.trino.gateway.ha.router.LocalQueryRoutingStore;
 import io.trino.gateway.ha.router.QueryHistoryManager;
+import io.trino.gateway.ha.router.QueryRoutingStore;
 import io.trino.gateway.ha.router.ResourceGroupsManager;
 import io.trino.gateway.ha.router.RoutingGroupSelector;
 import io.trino.gateway.ha.router.RoutingManager;
+import io.trino.gateway.ha.router.RoutingRulesProfiler;
+import io.trino.gateway.ha.router.RoutingWarmStart;
 import io.trino.gateway.ha.security.ApiAuthenticator;
 import io.trino.gateway.ha.security.AuthorizationManager;
 import io.trino.gateway.ha.security.FormAuthenticator;
@@ -41,13 +58,19 @@ import io.trino.gateway.ha.security.LbUnauthorizedHandler;
 import io.trino.gateway.ha.security.NoopAuthenticator;
 import io.trino.gateway.ha.security.NoopAuthorizer;
 import io.trino.gateway.ha.security.NoopFilter;
+import io.trino.gateway.proxyserver.BackendConnectionSettings;
 import io.trino.gateway.proxyserver.ProxyHandler;
 import io.trino.gateway.proxyserver.ProxyServer;
 import io.trino.gateway.proxyserver.ProxyServerConfiguration;
+import io.trino.gateway.proxyserver.RequestLane;
+import io.trino.gateway.proxyserver.RequestLaneListener;
+import io.trino.gateway.proxyserver.TlsHandshakeListener;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 public class HaGatewayProviderModule extends AppModule<HaGatewayConfiguration, Environment> {
 
@@ -55,6 +78,7 @@ public class HaGatewayProviderModule extends AppModule<HaGatewayConfiguration, E
   private final GatewayBackendManager gatewayBackendManager;
   private final QueryHistoryManager queryHistoryManager;
   private final RoutingManager routingManager;
+  private final QueryRoutingStore queryRoutingStore;
   private final JdbcConnectionManager connectionManager;
   private final LbOAuthManager oauthManager;
   private final LbFormAuthManager formAuthManager;
@@ -66,18 +90,29 @@ public class HaGatewayProviderModule extends AppModule<HaGatewayConfiguration, E
   private final AuthFilter authenticationFilter;
   private final List<String> extraWhitelistPaths;
   private final List<String> extraStatementPaths;
+  private final RoutingRulesProfiler routingRulesProfiler;
+  private final RoutingWarmStart routingWarmStart;
 
   public HaGatewayProviderModule(HaGatewayConfiguration configuration, Environment environment) {
     super(configuration, environment);
+    MetricRegistry metricRegistry = environment.metrics();
     connectionManager = new JdbcConnectionManager(configuration.getDataStore());
     resourceGroupsManager = new HaResourceGroupsManager(connectionManager);
-    gatewayBackendManager = new HaGatewayManager(connectionManager);
-    queryHistoryManager = new HaQueryHistoryManager(connectionManager);
-    cacheManager = new CookieCacheManager(connectionManager);
+    gatewayBackendManager = new HaGatewayManager(connectionManager, metricRegistry);
+    queryHistoryManager = new HaQueryHistoryManager(connectionManager, metricRegistry);
+    cacheManager = new CookieCacheManager(connectionManager, metricRegistry);
+    queryRoutingStore = buildQueryRoutingStore(configuration, metricRegistry);
     routingManager =
             new HaRoutingManager(gatewayBackendManager,
                     queryHistoryManager,
-                    cacheManager);
+                    cacheManager,
+                    metricRegistry,
+                    configuration.getQueryIdRouting(),
+                    queryRoutingStore);
+    // restore the query routes while the rest of the application starts
+    routingWarmStart = new RoutingWarmStart(routingManager, queryHistoryManager,
+        configuration.getQueryIdRouting(), metricRegistry);
+    routingWarmStart.start();
 
     Map<String, UserConfiguration> presetUsers = configuration.getPresetUsers();
     AuthenticationConfiguration authenticationConfiguration = configuration.getAuthentication();
@@ -89,12 +124,27 @@ public class HaGatewayProviderModule extends AppModule<HaGatewayConfiguration, E
         presetUsers);
     authenticationFilter = getAuthFilter(configuration);
     backendStateConnectionManager = new BackendStateManager(configuration.getBackendState());
+    routingRulesProfiler =
+        new RoutingRulesProfiler(configuration.getRoutingRules().getProfilingSampleRate());
     extraWhitelistPaths = configuration.getExtraWhitelistPaths();
     extraStatementPaths = configuration.getExtraStatementPaths();
     cookiePaths = configuration.getCookiePaths();
     logoutCookiePaths = configuration.getLogoutCookiePaths();
   }
 
+  private QueryRoutingStore buildQueryRoutingStore(HaGatewayConfiguration configuration,
+                                                   MetricRegistry metricRegistry) {
+    String store = configuration.getQueryIdRouting().getStore();
+    if (store == null || store.equalsIgnoreCase("local")) {
+      return new LocalQueryRoutingStore();
+    }
+    if (store.equalsIgnoreCase("jdbc")) {
+      return new JdbcQueryRoutingStore(connectionManager, configuration.getQueryIdRouting(),
+          metricRegistry);
+    }
+    throw new IllegalArgumentException("Unknown query routing store: " + store);
+  }
+
   private LbOAuthManager getOAuthManager(HaGatewayConfiguration configuration) {
     AuthenticationConfiguration authenticationConfiguration = configuration.getAuthentication();
     if (authenticationConfiguration != null
@@ -161,20 +211,47 @@ public class HaGatewayProviderModule extends AppModule<HaGatewayConfiguration, E
     // Use rules engine if enabled
     RoutingRulesConfiguration routingRulesConfig = getConfiguration().getRoutingRules();
     if (routingRulesConfig.isRulesEngineEnabled()) {
-      String rulesConfigPath = routingRulesConfig.getRulesConfigPath();
-      routingGroupSelector = RoutingGroupSelector.byRoutingRulesEngine(rulesConfigPath);
+      routingGroupSelector =
+          RoutingGroupSelector.byRoutingRules(routingRulesConfig, routingRulesProfiler);
+    }
+    RoutingDecisionCacheConfiguration decisionCacheConfig = routingRulesConfig.getDecisionCache();
+    if (decisionCacheConfig.isEnabled()) {
+      routingGroupSelector = new CachingRoutingGroupSelector(routingGroupSelector,
+          decisionCacheConfig.getHeaders(),
+          decisionCacheConfig.getMaximumSize(),
+          getEnvironment().metrics());
     }
 
-    return new QueryIdCachingProxyHandler(
+    QueryIdCachingProxyHandler proxyHandler = new QueryIdCachingProxyHandler(
         getQueryHistoryManager(),
         getRoutingManager(),
         routingGroupSelector,
         getApplicationPort(),
         requestMeter,
+        getEnvironment().metrics(),
         extraWhitelistPaths,
         extraStatementPaths,
         cookiePaths,
         logoutCookiePaths);
+    RoutingTokenConfiguration routingTokenConfig = getConfiguration().getRoutingToken();
+    if (routingTokenConfig.isEnabled() || routingTokenConfig.isUiCookieEnabled()) {
+      RoutingTokens routingTokens = new RoutingTokens(
+          routingTokenConfig.getSecret(), routingTokenConfig.getPreviousSecrets());
+      if (routingTokenConfig.isEnabled()) {
+        proxyHandler.setRoutingTokens(routingTokens);
+      }
+      if (routingTokenConfig.isUiCookieEnabled()) {
+        proxyHandler.setRoutingCookie(new RoutingCookie(routingTokens,
+            routingTokenConfig.getUiCookieName(), routingTokenConfig.getUiCookieMaxAgeSeconds(),
+            routingTokenConfig.getUiCookieSecure()));
+      }
+    }
+    DirectResultsConfiguration directResultsConfig = getConfiguration().getDirectResults();
+    if (!directResultsConfig.getRoutingGroups().isEmpty()) {
+      proxyHandler.setDirectResults(
+          new DirectResults(directResultsConfig.getRoutingGroups(), gatewayBackendManager));
+    }
+    return proxyHandler;
   }
 
   protected AuthFilter getAuthFilter(HaGatewayConfiguration configuration) {
@@ -211,19 +288,138 @@ public class HaGatewayProviderModule extends AppModule<HaGatewayConfiguration, E
       routerProxyConfig.setSsl(routerConfiguration.isSsl());
       routerProxyConfig.setKeystorePath(routerConfiguration.getKeystorePath());
       routerProxyConfig.setKeystorePass(routerConfiguration.getKeystorePass());
+      routerProxyConfig.setSslSessionCacheSize(routerConfiguration.getSslSessionCacheSize());
+      routerProxyConfig.setSslSessionTimeoutSeconds(
+          routerConfiguration.getSslSessionTimeoutSeconds());
+      routerProxyConfig.setSslProvider(routerConfiguration.getSslProvider());
       routerProxyConfig.setForwardKeystore(routerConfiguration.isForwardKeystore());
       routerProxyConfig.setPreserveHost("false");
       routerProxyConfig.setOutputBufferSize(routerConfiguration.getOutputBufferSize());
       routerProxyConfig.setRequestHeaderSize(routerConfiguration.getRequestHeaderSize());
       routerProxyConfig.setResponseHeaderSize(routerConfiguration.getResponseHeaderSize());
       routerProxyConfig.setRequestBufferSize(routerConfiguration.getRequestBufferSize());
-      routerProxyConfig.setResponseHeaderSize(routerConfiguration.getResponseBufferSize());
+      routerProxyConfig.setResponseBufferSize(routerConfiguration.getResponseBufferSize());
+      routerProxyConfig.setRelayMaxBufferedBytes(routerConfiguration.getRelayMaxBufferedBytes());
+      routerProxyConfig.setRelayMaxBufferedBytesPerRequest(
+          routerConfiguration.getRelayMaxBufferedBytesPerRequest());
+      routerProxyConfig.setBackendMaxConnections(routerConfiguration.getBackendMaxConnections());
+      routerProxyConfig.setBackendIdleTimeoutMillis(
+          routerConfiguration.getBackendIdleTimeoutMillis());
+      routerProxyConfig.setBackendMaxRequestsQueued(
+          routerConfiguration.getBackendMaxRequestsQueued());
+      routerProxyConfig.setHttp2(routerConfiguration.isHttp2());
+      routerProxyConfig.setHttp2MaxConcurrentStreams(
+          routerConfiguration.getHttp2MaxConcurrentStreams());
+      routerProxyConfig.setBackendHttp2(routerConfiguration.isBackendHttp2());
+      routerProxyConfig.setAsyncProxy(routerConfiguration.isAsyncProxy());
+      routerProxyConfig.setVirtualThreads(routerConfiguration.isVirtualThreads());
+      routerProxyConfig.setAcceptors(routerConfiguration.getAcceptors());
+      routerProxyConfig.setSelectors(routerConfiguration.getSelectors());
+      routerProxyConfig.setListeners(routerConfiguration.getListeners());
+      routerProxyConfig.setRequestLanes(routerConfiguration.getLanes());
+      routerProxyConfig.setRequestLanesMaxConcurrentRequests(
+          routerConfiguration.getLanesMaxConcurrentRequests());
       ProxyHandler proxyHandler = getProxyHandler();
       gateway = new ProxyServer(routerProxyConfig, proxyHandler);
+      configureBackendConnections(gateway);
+      registerTlsHandshakeMetrics(gateway);
+      registerRelayMetrics(gateway);
+      configureRequestLanes(gateway, routerConfiguration.getLanes());
+      if (routerConfiguration.isLocalDispatch()) {
+        gateway.setLocalHandler(getEnvironment().getApplicationContext());
+      }
     }
     return gateway;
   }
 
+  /**
+   * Applies the connection settings of the backends to the gateway as they are added, updated or
+   * activated, and registers the connection pool metrics of each backend.
+   */
+  private void configureBackendConnections(ProxyServer gateway) {
+    MetricRegistry metricRegistry = getEnvironment().metrics();
+    // named by proxyTo like the pool metrics, which may differ from the origin in its port
+    gateway.setBackendConnectListener((url, nanos) ->
+        GatewayMetrics.timer(metricRegistry, "proxy.connect", GatewayMetrics.backendName(url))
+            .update(nanos, TimeUnit.NANOSECONDS));
+    Consumer<ProxyBackendConfiguration> configure = backend -> {
+      BackendConnectionSettings settings = new BackendConnectionSettings();
+      settings.setMaxConnections(backend.getMaxConnections());
+      settings.setIdleTimeoutMillis(backend.getIdleTimeoutMillis());
+      settings.setMaxRequestsQueued(backend.getMaxRequestsQueued());
+      settings.setPrewarmConnections(backend.getPrewarmConnections());
+      String proxyTo = backend.getProxyTo();
+      gateway.configureBackend(proxyTo, settings);
+
+      String name = GatewayMetrics.backendName(proxyTo);
+      GatewayMetrics.gauge(metricRegistry, MetricRegistry.name("proxy.connections", name, "active"),
+          () -> gateway.getBackendConnectionStats(proxyTo).getActiveConnections());
+      GatewayMetrics.gauge(metricRegistry, MetricRegistry.name("proxy.connections", name, "idle"),
+          () -> gateway.getBackendConnectionStats(proxyTo).getIdleConnections());
+      GatewayMetrics.gauge(metricRegistry, MetricRegistry.name("proxy.queued", name),
+          () -> gateway.getBackendConnectionStats(proxyTo).getQueuedRequests());
+    };
+    gatewayBackendManager.getAllBackends().forEach(configure);
+    gatewayBackendManager.addBackendListener(configure);
+  }
+
+  /**
+   * Puts the requests in the lane of their path class, and registers the metrics of the lanes.
+   */
+  private void configureRequestLanes(ProxyServer gateway, List<RequestLane> lanes) {
+    MetricRegistry metricRegistry = getEnvironment().metrics();
+    gateway.setRequestClassifier(request ->
+        PathClass.of(request.getMethod(), request.getRequestURI()).metricName());
+    gateway.setRequestLaneListener(new RequestLaneListener() {
+      @Override
+      public void requestWaited(String lane, long nanos) {
+        GatewayMetrics.timer(metricRegistry, "lanes", lane, "wait")
+            .update(nanos, TimeUnit.NANOSECONDS);
+      }
+
+      @Override
+      public void requestRejected(String lane) {
+        metricRegistry.meter(MetricRegistry.name("lanes", lane, "rejected")).mark();
+      }
+    });
+    for (RequestLane lane : lanes) {
+      String name = lane.getName();
+      GatewayMetrics.gauge(metricRegistry, MetricRegistry.name("lanes", name, "active"),
+          () -> gateway.getRequestLaneStats(name).getActiveRequests());
+      GatewayMetrics.gauge(metricRegistry, MetricRegistry.name("lanes", name, "queued"),
+          () -> gateway.getRequestLaneStats(name).getQueuedRequests());
+    }
+  }
+
+  private void registerRelayMetrics(ProxyServer gateway) {
+    MetricRegistry metricRegistry = getEnvironment().metrics();
+    GatewayMetrics.gauge(metricRegistry, "proxy.relay.buffered",
+        () -> gateway.getRelayStats().getBufferedBytes());
+    GatewayMetrics.gauge(metricRegistry, "proxy.relay.stalled",
+        () -> gateway.getRelayStats().getStalledChunks());
+    Timer stalls = GatewayMetrics.timer(metricRegistry, "proxy.relay.stalls");
+    gateway.setRelayStallListener(nanos -> stalls.update(nanos, TimeUnit.NANOSECONDS));
+  }
+
+  private void registerTlsHandshakeMetrics(ProxyServer gateway) {
+    MetricRegistry metricRegistry = getEnvironment().metrics();
+    gateway.setTlsHandshakeListener(new TlsHandshakeListener() {
+      @Override
+      public void handshakeSucceeded(String side, long nanos, boolean resumed) {
+        GatewayMetrics.timer(metricRegistry, "tls.handshake", side)
+            .update(nanos, TimeUnit.NANOSECONDS);
+        if (resumed) {
+          metricRegistry.meter(MetricRegistry.name("tls.handshake", side, "resumed")).mark();
+        }
+      }
+
+      @Override
+      public void handshakeFailed(String side) {
+        metricRegistry.meter(MetricRegistry.name("tls.handshake", side, "failures")).mark();
+      }
+    });
+  }
+
   @Provides
   @Singleton
   public ResourceGroupsManager getResourceGroupsManager() {
@@ -283,4 +479,22 @@ public class HaGatewayProviderModule extends AppModule<HaGatewayConfiguration, E
   public BackendStateManager getBackendStateConnectionManager() {
     return this.backendStateConnectionManager;
   }
+
+  @Provides
+  @Singleton
+  public RoutingRulesProfiler getRoutingRulesProfiler() {
+    return this.routingRulesProfiler;
+  }
+
+  @Provides
+  @Singleton
+  public RoutingWarmStart getRoutingWarmStart() {
+    return this.routingWarmStart;
+  }
+
+  @Provides
+  @Singleton
+  public QueryRoutingStore getQueryRoutingStore() {
+    return this.queryRoutingStore;
+  }
 }
@@ -21,6 +21,10 @@ public class GatewayBackend extends Model {
   private static final String backendUrl = "backend_url";
   private static final String externalUrl = "external_url";
   private static final String active = "active";
+  private static final String maxConnections = "max_connections";
+  private static final String idleTimeoutMillis = "idle_timeout_millis";
+  private static final String maxRequestsQueued = "max_requests_queued";
+  private static final String prewarmConnections = "prewarm_connections";
 
   public static List<ProxyBackendConfiguration> upcast(List<GatewayBackend> gatewayBackendList) {
     List<ProxyBackendConfiguration> proxyBackendConfigurations = new ArrayList<>();
@@ -31,6 +35,10 @@ public class GatewayBackend extends Model {
       backendConfig.setProxyTo(model.getString(backendUrl));
       backendConfig.setExternalUrl(model.getString(externalUrl));
       backendConfig.setName(model.getString(name));
+      backendConfig.setMaxConnections(model.getInteger(maxConnections));
+      backendConfig.setIdleTimeoutMillis(model.getLong(idleTimeoutMillis));
+      backendConfig.setMaxRequestsQueued(model.getInteger(maxRequestsQueued));
+      backendConfig.setPrewarmConnections(model.getInteger(prewarmConnections));
       proxyBackendConfigurations.add(backendConfig);
     }
     return proxyBackendConfigurations;
@@ -43,6 +51,10 @@ public class GatewayBackend extends Model {
         .set(backendUrl, backend.getProxyTo())
         .set(externalUrl, backend.getExternalUrl())
         .set(active, backend.isActive())
+        .set(maxConnections, backend.getMaxConnections())
+        .set(idleTimeoutMillis, backend.getIdleTimeoutMillis())
+        .set(maxRequestsQueued, backend.getMaxRequestsQueued())
+        .set(prewarmConnections, backend.getPrewarmConnections())
         .saveIt();
   }
 
@@ -58,7 +70,15 @@ public class GatewayBackend extends Model {
             externalUrl,
             backend.getExternalUrl(),
             active,
-            backend.isActive())
+            backend.isActive(),
+            maxConnections,
+            backend.getMaxConnections(),
+            idleTimeoutMillis,
+            backend.getIdleTimeoutMillis(),
+            maxRequestsQueued,
+            backend.getMaxRequestsQueued(),
+            prewarmConnections,
+            backend.getPrewarmConnections())
         .insert();
   }
 }
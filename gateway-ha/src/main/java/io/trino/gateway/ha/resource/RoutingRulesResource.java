@@ -0,0 +1,30 @@
+package io.trino.gateway.ha.resource;
+
+import com.google.inject.Inject;
+import io.trino.gateway.ha.router.RoutingRulesProfiler;
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RolesAllowed({"ADMIN"})
+@Path("/routingRules")
+@Produces(MediaType.APPLICATION_JSON)
+public class RoutingRulesResource {
+
+  @Inject
+  private RoutingRulesProfiler routingRulesProfiler;
+
+  @GET
+  @Path("/profile")
+  public Response getProfile() {
+    Map<String, Object> profile = new LinkedHashMap<>();
+    profile.put("sinceMillis", routingRulesProfiler.getSinceMillis());
+    profile.put("rules", routingRulesProfiler.getProfile());
+    return Response.ok(profile).build();
+  }
+}
@@ -0,0 +1,76 @@
+package io.trino.gateway.ha.router;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.trino.gateway.ha.metrics.GatewayMetrics;
+import jakarta.servlet.http.HttpServletRequest;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Caches the routing group chosen by another {@link RoutingGroupSelector}, keyed by the values
+ * of a fixed list of request headers. This is only correct when the rules of the wrapped
+ * selector look at nothing but those headers. Decisions made with older rules are discarded
+ * when {@link RoutingGroupSelector#rulesVersion()} changes.
+ */
+public class CachingRoutingGroupSelector implements RoutingGroupSelector {
+  private final RoutingGroupSelector delegate;
+  private final String[] headers;
+  private final Cache<List<String>, Decision> decisions;
+  private final Meter hits;
+  private final Meter misses;
+
+  public CachingRoutingGroupSelector(RoutingGroupSelector delegate, List<String> headers,
+                                     long maximumSize, MetricRegistry metricRegistry) {
+    this.delegate = delegate;
+    this.headers = headers.toArray(new String[0]);
+    this.decisions = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+    this.hits = metricRegistry.meter("routing.decisionCache.hits");
+    this.misses = metricRegistry.meter("routing.decisionCache.misses");
+    GatewayMetrics.gauge(metricRegistry, "routing.decisionCache.size", decisions::size);
+  }
+
+  @Override
+  public String findRoutingGroup(HttpServletRequest request) {
+    String[] values = new String[headers.length];
+    for (int i = 0; i < headers.length; i++) {
+      values[i] = request.getHeader(headers[i]);
+    }
+    List<String> key = Arrays.asList(values);
+
+    // read the version first, so a reload during evaluation leaves a stale entry behind
+    // rather than serving it
+    long version = delegate.rulesVersion();
+    Decision decision = decisions.getIfPresent(key);
+    if (decision != null && decision.version == version) {
+      hits.mark();
+      return decision.routingGroup;
+    }
+    misses.mark();
+    String routingGroup = delegate.findRoutingGroup(request);
+    decisions.put(key, new Decision(routingGroup, version));
+    return routingGroup;
+  }
+
+  @Override
+  public long rulesVersion() {
+    return delegate.rulesVersion();
+  }
+
+  @Override
+  public void close() {
+    delegate.close();
+  }
+
+  private static class Decision {
+    private final String routingGroup;
+    private final long version;
+
+    Decision(String routingGroup, long version) {
+      this.routingGroup = routingGroup;
+      this.version = version;
+    }
+  }
+}
@@ -0,0 +1,22 @@
+package io.trino.gateway.ha.router;
+
+/**
+ * A {@link RuleReloadingRoutingGroupSelector} that evaluates the rules through
+ * {@link CompiledRoutingRules} instead of the easy-rules engine. The routing groups it selects
+ * are the same, it only skips the rules that cannot match the request.
+ */
+public class CompiledRoutingGroupSelector extends RuleReloadingRoutingGroupSelector {
+  CompiledRoutingGroupSelector(String rulesConfigPath, long refreshPeriodMillis) {
+    this(rulesConfigPath, refreshPeriodMillis, new RoutingRulesProfiler());
+  }
+
+  CompiledRoutingGroupSelector(String rulesConfigPath, long refreshPeriodMillis,
+                               RoutingRulesProfiler profiler) {
+    super(rulesConfigPath, refreshPeriodMillis, profiler);
+  }
+
+  @Override
+  RoutingRules parse(String content) throws Exception {
+    return CompiledRoutingRules.compile(content, getProfiler());
+  }
+}
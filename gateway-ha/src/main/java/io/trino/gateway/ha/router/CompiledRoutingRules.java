@@ -0,0 +1,251 @@
+package io.trino.gateway.ha.router;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import lombok.extern.slf4j.Slf4j;
+import org.jeasy.rules.api.Facts;
+import org.jeasy.rules.api.Rule;
+import org.jeasy.rules.api.Rules;
+import org.jeasy.rules.mvel.MVELRuleFactory;
+import org.jeasy.rules.support.RuleDefinition;
+import org.jeasy.rules.support.reader.YamlRuleDefinitionReader;
+
+/**
+ * Routing rules compiled for evaluation cost proportional to the rules that can match a request
+ * rather than to all rules in the file.
+ *
+ * <p>Conditions that are a conjunction containing {@code request.getHeader("h") == "v"} or
+ * {@code request.getHeader("h") contains "v"} are indexed on that term: a hash index for
+ * equality and a substring automaton for {@code contains}. A rule is only evaluated if its
+ * indexed term holds for the request. When the condition is nothing but the indexed term, the
+ * index lookup is the whole evaluation. Every other rule, including composite rules, is
+ * evaluated for every request through its precompiled MVEL expression.
+ *
+ * <p>Candidate rules fire in the same order as in the easy-rules {@code DefaultRulesEngine}, so
+ * priorities and the "last action wins" behaviour are unchanged.
+ */
+@Slf4j
+final class CompiledRoutingRules implements RoutingRules {
+  private static final Pattern HEADER_TERM = Pattern.compile(
+      "request\\s*\\.\\s*getHeader\\s*\\(\\s*\"([^\"\\\\]*)\"\\s*\\)"
+          + "\\s*(==|contains)\\s*\"([^\"\\\\]*)\"");
+
+  private final CompiledRule[] rules;
+  private final BitSet unindexed;
+  private final Map<String, Map<String, int[]>> equalsIndex;
+  private final Map<String, SubstringMatcher> containsIndex;
+  private final RoutingRulesProfiler profiler;
+
+  private CompiledRoutingRules(CompiledRule[] rules, BitSet unindexed,
+                               Map<String, Map<String, int[]>> equalsIndex,
+                               Map<String, SubstringMatcher> containsIndex,
+                               RoutingRulesProfiler profiler) {
+    this.rules = rules;
+    this.unindexed = unindexed;
+    this.equalsIndex = equalsIndex;
+    this.containsIndex = containsIndex;
+    this.profiler = profiler;
+  }
+
+  static CompiledRoutingRules compile(String content) throws Exception {
+    return compile(content, new RoutingRulesProfiler());
+  }
+
+  static CompiledRoutingRules compile(String content, RoutingRulesProfiler profiler)
+      throws Exception {
+    // the rules as easy-rules would build them, already in firing order
+    Rules parsed = new MVELRuleFactory(new YamlRuleDefinitionReader())
+        .createRules(new StringReader(content));
+    Map<String, String> conditions = new HashMap<>();
+    for (RuleDefinition definition :
+        new YamlRuleDefinitionReader().read(new StringReader(content))) {
+      if (!definition.isCompositeRule()) {
+        // Rules keeps the first of several rules with the same name and priority
+        conditions.putIfAbsent(key(definition.getName(), definition.getPriority()),
+            definition.getCondition());
+      }
+    }
+
+    List<CompiledRule> compiled = new ArrayList<>();
+    BitSet unindexed = new BitSet();
+    Map<String, Map<String, List<Integer>>> equalsTerms = new HashMap<>();
+    Map<String, SubstringMatcher.Builder> containsTerms = new HashMap<>();
+    for (Rule rule : parsed) {
+      int ordinal = compiled.size();
+      String condition = conditions.get(key(rule.getName(), rule.getPriority()));
+      List<String> conjuncts = condition == null ? null : conjuncts(condition);
+      Matcher term = null;
+      if (conjuncts != null) {
+        for (String conjunct : conjuncts) {
+          Matcher matcher = HEADER_TERM.matcher(conjunct);
+          if (matcher.matches()) {
+            term = matcher;
+            break;
+          }
+        }
+      }
+      if (term == null) {
+        unindexed.set(ordinal);
+        compiled.add(new CompiledRule(rule, true));
+        continue;
+      }
+      String header = term.group(1);
+      String value = term.group(3);
+      if (term.group(2).equals("==")) {
+        equalsTerms.computeIfAbsent(header, h -> new HashMap<>())
+            .computeIfAbsent(value, v -> new ArrayList<>())
+            .add(ordinal);
+      } else {
+        containsTerms.computeIfAbsent(header, h -> new SubstringMatcher.Builder())
+            .add(value, ordinal);
+      }
+      compiled.add(new CompiledRule(rule, conjuncts.size() > 1));
+    }
+
+    Map<String, Map<String, int[]>> equalsIndex = new HashMap<>();
+    equalsTerms.forEach((header, values) -> {
+      Map<String, int[]> ordinals = new HashMap<>();
+      values.forEach((value, list) ->
+          ordinals.put(value, list.stream().mapToInt(Integer::intValue).toArray()));
+      equalsIndex.put(header, ordinals);
+    });
+    Map<String, SubstringMatcher> containsIndex = new HashMap<>();
+    containsTerms.forEach((header, builder) -> containsIndex.put(header, builder.build()));
+
+    log.info("Compiled {} routing rules, {} of them are evaluated for every request",
+        compiled.size(), unindexed.cardinality());
+    return new CompiledRoutingRules(compiled.toArray(new CompiledRule[0]), unindexed,
+        equalsIndex, containsIndex, profiler);
+  }
+
+  @Override
+  public void fire(Facts facts) {
+    HttpServletRequest request = facts.get("request");
+    BitSet candidates = (BitSet) unindexed.clone();
+    for (Map.Entry<String, Map<String, int[]>> entry : equalsIndex.entrySet()) {
+      String value = request.getHeader(entry.getKey());
+      if (value != null) {
+        int[] ordinals = entry.getValue().get(value);
+        if (ordinals != null) {
+          for (int ordinal : ordinals) {
+            candidates.set(ordinal);
+          }
+        }
+      }
+    }
+    for (Map.Entry<String, SubstringMatcher> entry : containsIndex.entrySet()) {
+      String value = request.getHeader(entry.getKey());
+      if (value != null) {
+        entry.getValue().match(value, candidates);
+      }
+    }
+
+    for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+      CompiledRule candidate = rules[i];
+      if (candidate.checkCondition) {
+        long start = profiler.sample() ? System.nanoTime() : -1;
+        boolean matched = evaluate(candidate.rule, facts);
+        profiler.record(candidate.rule.getName(), matched,
+            start < 0 ? -1 : System.nanoTime() - start);
+        if (!matched) {
+          continue;
+        }
+      } else {
+        // the index lookup was the evaluation
+        profiler.record(candidate.rule.getName(), true, -1);
+      }
+      try {
+        candidate.rule.execute(facts);
+      } catch (Exception e) {
+        log.error("Rule '" + candidate.rule.getName() + "' performed with error", e);
+      }
+    }
+  }
+
+  private static boolean evaluate(Rule rule, Facts facts) {
+    try {
+      return rule.evaluate(facts);
+    } catch (RuntimeException e) {
+      log.error("Rule '" + rule.getName() + "' evaluated with error", e);
+      return false;
+    }
+  }
+
+  private static String key(String name, int priority) {
+    return priority + ":" + name;
+  }
+
+  /**
+   * Splits a condition on the top level {@code &&} operators, outside of parentheses and string
+   * literals. Returns null if the condition is not a plain conjunction, that is if it has a top
+   * level {@code ||}, {@code or}, ternary, assignment or statement separator.
+   */
+  static List<String> conjuncts(String condition) {
+    List<String> conjuncts = new ArrayList<>();
+    int depth = 0;
+    char quote = 0;
+    int start = 0;
+    for (int i = 0; i < condition.length(); i++) {
+      char c = condition.charAt(i);
+      if (quote != 0) {
+        if (c == '\\') {
+          i++;
+        } else if (c == quote) {
+          quote = 0;
+        }
+      } else if (c == '"' || c == '\'') {
+        quote = c;
+      } else if (depth == 0 && (c == '?' || c == ';' || isAssignment(condition, i)
+          || isOrKeyword(condition, i))) {
+        return null;
+      } else if (c == '(' || c == '[' || c == '{') {
+        depth++;
+      } else if (c == ')' || c == ']' || c == '}') {
+        depth--;
+      } else if (depth == 0 && i + 1 < condition.length()
+          && condition.charAt(i + 1) == c && (c == '&' || c == '|')) {
+        if (c == '|') {
+          return null;
+        }
+        conjuncts.add(condition.substring(start, i).trim());
+        start = i + 2;
+        i++;
+      }
+    }
+    conjuncts.add(condition.substring(start).trim());
+    return conjuncts;
+  }
+
+  private static boolean isAssignment(String condition, int i) {
+    if (condition.charAt(i) != '=') {
+      return false;
+    }
+    char previous = i > 0 ? condition.charAt(i - 1) : ' ';
+    char next = i + 1 < condition.length() ? condition.charAt(i + 1) : ' ';
+    return next != '=' && "=!<>".indexOf(previous) < 0;
+  }
+
+  private static boolean isOrKeyword(String condition, int i) {
+    return condition.startsWith("or", i)
+        && (i == 0 || !Character.isJavaIdentifierPart(condition.charAt(i - 1)))
+        && (i + 2 == condition.length()
+            || !Character.isJavaIdentifierPart(condition.charAt(i + 2)));
+  }
+
+  private static class CompiledRule {
+    private final Rule rule;
+    private final boolean checkCondition;
+
+    CompiledRule(Rule rule, boolean checkCondition) {
+      this.rule = rule;
+      this.checkCondition = checkCondition;
+    }
+  }
+}
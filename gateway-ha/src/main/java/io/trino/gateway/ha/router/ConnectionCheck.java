@@ -1,29 +1,41 @@
 package io.trino.gateway.ha.router;
 
-import java.io.IOException;
-import java.net.Socket;
-import java.net.UnknownHostException;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * The state of one TCP check. {@link #runCheck()} is called periodically by the
+ * {@link ConnectionChecker} scheduler and probes the server when the check interval has passed
+ * and the check is not disabled. The outcome is published in a volatile field, so reading it
+ * from a routing rule never blocks.
+ */
 @Slf4j
 class ConnectionCheck {
   static final int NO_CHECK_YET = -100;
   static final int TCP_CHECK_FAILURE = -1;
   static final int TCP_CHECK_SUCCESS = 0;
 
+  private final TcpProber prober;
+  private final String server;
+  private final int port;
+  private final int checkInterval;
+  private final int failCount;
+  private final int disableDuration;
+  private final long connectTimeout;
+  private final CompletableFuture<Void> firstResult = new CompletableFuture<>();
+
+  private volatile int checkCode;
   private Instant lastCheckTime;
-  private int checkCode;
-  private String server;
-  private int port;
-  private int checkInterval;
-  private int failCount;
   private int failCounter;
-  private int disableDuration;
+  private boolean probing;
 
   ConnectionCheck(String host, int serverPort, int checkInterval,
-                  int failCount, int disableDuration) {
+                  int failCount, int disableDuration, long connectTimeout, TcpProber prober) {
     this.lastCheckTime = Instant.EPOCH;
     this.checkCode = NO_CHECK_YET;
     this.server = host;
@@ -32,35 +44,56 @@ class ConnectionCheck {
     this.failCount = failCount;
     this.failCounter = 0;
     this.disableDuration = disableDuration;
+    this.connectTimeout = connectTimeout;
+    this.prober = prober;
+  }
+
+  /**
+   * The result of the latest completed probe, {@link #NO_CHECK_YET} before the first one.
+   */
+  int getCheckCode() {
+    return checkCode;
   }
 
-  boolean isCheckNeeded() {
+  /**
+   * The result of the latest completed probe, waiting for the first one for up to the connect
+   * timeout. {@link #NO_CHECK_YET} if it did not complete in time.
+   */
+  int awaitCheckCode() {
+    if (checkCode == NO_CHECK_YET) {
+      try {
+        firstResult.get(connectTimeout, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (ExecutionException | TimeoutException e) {
+        log.debug("No tcp check result for {}:{} yet", server, port);
+      }
+    }
+    return checkCode;
+  }
+
+  synchronized boolean isCheckNeeded() {
     try {
       Instant now = Instant.now();
-      log.info("time now is {}", now);
-      log.info("last check was at {}", lastCheckTime);
-      log.info("check interval is {}", checkInterval);
       long diff = Duration.between(lastCheckTime, now).toMillis();
-      lastCheckTime = now;
-      return diff > checkInterval;
+      if (diff > checkInterval) {
+        lastCheckTime = now;
+        return true;
+      }
+      return false;
     } catch (ArithmeticException ex) {
       log.error("Error {}", ex);
     }
     return true;
   }
 
-  boolean isCheckDisabled() {
+  synchronized boolean isCheckDisabled() {
     if (failCounter < failCount) {
-      log.info("fail count is NOT reached");
       return false;
     }
 
-    log.info("fail count is reached");
     try {
       Instant now = Instant.now();
-      log.info("time now is {}", now);
-      log.info("last check was at {}", lastCheckTime);
-      log.info("disabled duration is {}", disableDuration);
       long diff = Duration.between(lastCheckTime, now).toSeconds();
       return diff < disableDuration;
     } catch (ArithmeticException ex) {
@@ -69,32 +102,39 @@ class ConnectionCheck {
     return true;
   }
 
-  Socket makeSocket(String server, int port) throws UnknownHostException, IOException {
-    return new Socket(server, port);
+  CompletableFuture<Boolean> connect() {
+    return prober.connect(server, port, connectTimeout);
   }
 
-  int tcpCheck() {
-    log.debug("trying the tcp check for {}:{}", server, port);
-
-    if (isCheckDisabled()) {
-      return checkCode;
-    }
-
-    if (!isCheckNeeded()) {
-      return checkCode;
+  /**
+   * Starts a probe if one is due, without waiting for it.
+   */
+  void runCheck() {
+    synchronized (this) {
+      if (probing || isCheckDisabled() || !isCheckNeeded()) {
+        return;
+      }
+      probing = true;
     }
+    log.debug("trying the tcp check for {}:{}", server, port);
+    connect().whenComplete((connected, e) -> recordResult(e == null && connected));
+  }
 
-    try (Socket socket = makeSocket(server, port)) {
-      checkCode = TCP_CHECK_SUCCESS;
-      log.info("able to connect to {}:{}", server, port);
+  private synchronized void recordResult(boolean connected) {
+    probing = false;
+    if (connected) {
+      if (checkCode != TCP_CHECK_SUCCESS) {
+        log.info("able to connect to {}:{}", server, port);
+      }
       failCounter = 0;
-    } catch (Exception ex) {
-      log.error("Error while connecting to {}:{}", server, port, ex);
-      log.error("FailCounter {}", failCounter);
-      checkCode = TCP_CHECK_FAILURE;
+      checkCode = TCP_CHECK_SUCCESS;
+    } else {
       ++failCounter;
+      if (checkCode != TCP_CHECK_FAILURE) {
+        log.warn("Error while connecting to {}:{}, fail counter {}", server, port, failCounter);
+      }
+      checkCode = TCP_CHECK_FAILURE;
     }
-
-    return checkCode;
+    firstResult.complete(null);
   }
 }
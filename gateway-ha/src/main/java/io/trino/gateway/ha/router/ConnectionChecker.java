@@ -1,36 +1,79 @@
 package io.trino.gateway.ha.router;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import lombok.extern.slf4j.Slf4j;
 
-
+/**
+ * TCP connectivity checks for routing rules, available to rule conditions as the
+ * {@code connectionChecker} request attribute. The first call for a server registers a check
+ * that is then probed in the background, and every call returns the latest published result
+ * without touching the network. Until the first probe of a check completes, calls wait for it,
+ * for up to the connect timeout.
+ */
 @Slf4j
 public class ConnectionChecker {
+  public static final String REQUEST_ATTRIBUTE = "connectionChecker";
+  static final long DEFAULT_CONNECT_TIMEOUT_MILLIS = 1000;
+  private static final long MIN_SCHEDULE_MILLIS = 10;
+
+  private final Map<String, ConnectionCheck> connectionChecks = new ConcurrentHashMap<>();
+  private final long connectTimeout;
+  private ScheduledExecutorService scheduler;
+  private TcpProber prober;
 
-  private HashMap<String, ConnectionCheck> connectionChecks;
+  public ConnectionChecker() {
+    this(DEFAULT_CONNECT_TIMEOUT_MILLIS);
+  }
 
-  ConnectionChecker() {
-    connectionChecks = new HashMap<String, ConnectionCheck>();
+  public ConnectionChecker(long connectTimeout) {
+    this.connectTimeout = connectTimeout;
   }
 
   ConnectionCheck getChecker(String server, int port, int interval,
                              int failcount, int disableDuration) {
     String key = String.format("%s-%d-%d-%d-%d",
         server, port, interval, failcount, disableDuration);
-    log.info("key is {}", key);
     ConnectionCheck obj = connectionChecks.get(key);
-
     if (obj == null) {
-      log.info("didn't find key {}", key);
-      obj = new ConnectionCheck(server, port, interval, failcount, disableDuration);
-      connectionChecks.put(key, obj);
+      obj = connectionChecks.computeIfAbsent(key, k -> register(server, port, interval,
+          failcount, disableDuration));
     }
-
     return obj;
   }
 
+  private synchronized ConnectionCheck register(String server, int port, int interval,
+                                                int failcount, int disableDuration) {
+    if (scheduler == null) {
+      try {
+        prober = new TcpProber();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "connection-checker");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    log.info("Registering tcp check for {}:{}", server, port);
+    ConnectionCheck check = new ConnectionCheck(server, port, interval, failcount,
+        disableDuration, Math.min(connectTimeout, Math.max(interval, 1)), prober);
+    // run twice per interval, so a check is never more than half an interval late
+    long period = Math.max(interval / 2, MIN_SCHEDULE_MILLIS);
+    scheduler.scheduleWithFixedDelay(check::runCheck, 0, period, TimeUnit.MILLISECONDS);
+    return check;
+  }
+
   /**
-   * Check the tcp connectivity to be used in the routing rules.
+   * Check the tcp connectivity to be used in the routing rules. Returns the result of the
+   * latest background probe. The first call waits for the first probe, and returns false only
+   * if it did not connect within the connect timeout.
    *
    * @param server          server to connect for the check
    * @param port            port to connect for the check
@@ -43,6 +86,6 @@ public class ConnectionChecker {
   public boolean tcpCheck(String server, int port,
                           int interval, int failCount, int disableDuration) {
     ConnectionCheck checker = getChecker(server, port, interval, failCount, disableDuration);
-    return checker.tcpCheck() == ConnectionCheck.TCP_CHECK_SUCCESS;
+    return checker.awaitCheckCode() == ConnectionCheck.TCP_CHECK_SUCCESS;
   }
-}
\ No newline at end of file
+}
@@ -1,5 +1,8 @@
 package io.trino.gateway.ha.router;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import io.trino.gateway.ha.metrics.GatewayMetrics;
 import io.trino.gateway.ha.persistence.JdbcConnectionManager;
 import io.trino.gateway.ha.persistence.dao.CookieBackend;
 import lombok.extern.slf4j.Slf4j;
@@ -9,12 +12,19 @@ import java.util.Optional;
 @Slf4j
 public class CookieCacheManager {
   private JdbcConnectionManager connectionManager;
+  private final Timer dbTimer;
   
   public CookieCacheManager(JdbcConnectionManager connectionManager) {
+    this(connectionManager, new MetricRegistry());
+  }
+
+  public CookieCacheManager(JdbcConnectionManager connectionManager, MetricRegistry metricRegistry) {
     this.connectionManager = connectionManager;
+    this.dbTimer = GatewayMetrics.timer(metricRegistry, "db", "cookie_backend_lookup");
   }
   
   public void submitCookieBackend(String cookie, String backend) {
+    Timer.Context dbContext = dbTimer.time();
     try {
       connectionManager.open();
       CookieBackend dao = new CookieBackend();
@@ -24,10 +34,12 @@ public class CookieCacheManager {
       log.warn(String.format("Error saving cookie %s for backend %s: %s", cookie, backend, e));
     } finally {
       connectionManager.close();
+      dbContext.stop();
     }
   }
   
   public Optional<String> getBackendForCookie(String cookie) {
+    Timer.Context dbContext = dbTimer.time();
     try {
       connectionManager.open();
       CookieBackend cookieBackend = CookieBackend.findById(cookie);
@@ -37,16 +49,19 @@ public class CookieCacheManager {
       return Optional.empty();
     } finally {
       connectionManager.close();
+      dbContext.stop();
     }
   }
   
   public boolean removeCookie(String cookie) {
+    Timer.Context dbContext = dbTimer.time();
     try {
       connectionManager.open();
       CookieBackend cookieBackend = CookieBackend.findById(cookie);
       return cookieBackend.delete();
     } finally {
       connectionManager.close();
+      dbContext.stop();
     }
   }
 }
\ No newline at end of file
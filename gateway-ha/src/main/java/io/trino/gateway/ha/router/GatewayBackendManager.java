@@ -4,6 +4,7 @@ import io.trino.gateway.ha.config.ProxyBackendConfiguration;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface GatewayBackendManager {
   List<ProxyBackendConfiguration> getAllBackends();
@@ -23,4 +24,10 @@ public interface GatewayBackendManager {
   void deactivateBackend(String backendName);
 
   void activateBackend(String backendName);
+
+  /**
+   * Registers a listener called with a backend after it is added, updated or activated.
+   */
+  default void addBackendListener(Consumer<ProxyBackendConfiguration> listener) {
+  }
 }
@@ -1,47 +1,80 @@
 package io.trino.gateway.ha.router;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.google.common.collect.ImmutableList;
 import io.trino.gateway.ha.config.ProxyBackendConfiguration;
+import io.trino.gateway.ha.metrics.GatewayMetrics;
 import io.trino.gateway.ha.persistence.JdbcConnectionManager;
 import io.trino.gateway.ha.persistence.dao.GatewayBackend;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 public class HaGatewayManager implements GatewayBackendManager {
   private JdbcConnectionManager connectionManager;
+  private final Timer dbTimer;
+  private final List<Consumer<ProxyBackendConfiguration>> backendListeners =
+      new CopyOnWriteArrayList<>();
 
   public HaGatewayManager(JdbcConnectionManager connectionManager) {
+    this(connectionManager, new MetricRegistry());
+  }
+
+  public HaGatewayManager(JdbcConnectionManager connectionManager, MetricRegistry metricRegistry) {
     this.connectionManager = connectionManager;
+    this.dbTimer = GatewayMetrics.timer(metricRegistry, "db", "gateway_backend");
+  }
+
+  @Override
+  public void addBackendListener(Consumer<ProxyBackendConfiguration> listener) {
+    backendListeners.add(listener);
+  }
+
+  private void notifyBackendListeners(ProxyBackendConfiguration backend) {
+    for (Consumer<ProxyBackendConfiguration> listener : backendListeners) {
+      try {
+        listener.accept(backend);
+      } catch (RuntimeException e) {
+        log.warn("Backend listener failed for {}", backend.getName(), e);
+      }
+    }
   }
 
   @Override
   public List<ProxyBackendConfiguration> getAllBackends() {
+    Timer.Context dbContext = dbTimer.time();
     try {
       connectionManager.open();
       List<GatewayBackend> proxyBackendList = GatewayBackend.findAll();
       return GatewayBackend.upcast(proxyBackendList);
     } finally {
       connectionManager.close();
+      dbContext.stop();
     }
   }
 
   @Override
   public List<ProxyBackendConfiguration> getAllActiveBackends() {
+    Timer.Context dbContext = dbTimer.time();
     try {
       connectionManager.open();
       List<GatewayBackend> proxyBackendList = GatewayBackend.where("active = ?", true);
       return GatewayBackend.upcast(proxyBackendList);
     } finally {
       connectionManager.close();
+      dbContext.stop();
     }
   }
 
   @Override
   public List<ProxyBackendConfiguration> getActiveAdhocBackends() {
+    Timer.Context dbContext = dbTimer.time();
     try {
       connectionManager.open();
       List<GatewayBackend> proxyBackendList =
@@ -51,12 +84,14 @@ public class HaGatewayManager implements GatewayBackendManager {
       log.info("Error fetching all backends", e.getLocalizedMessage());
     } finally {
       connectionManager.close();
+      dbContext.stop();
     }
     return ImmutableList.of();
   }
 
   @Override
   public List<ProxyBackendConfiguration> getActiveBackends(String routingGroup) {
+    Timer.Context dbContext = dbTimer.time();
     try {
       connectionManager.open();
       List<GatewayBackend> proxyBackendList =
@@ -64,11 +99,13 @@ public class HaGatewayManager implements GatewayBackendManager {
       return GatewayBackend.upcast(proxyBackendList);
     } finally {
       connectionManager.close();
+      dbContext.stop();
     }
   }
 
   @Override
   public Optional<ProxyBackendConfiguration> getBackendByName(String name) {
+    Timer.Context dbContext = dbTimer.time();
     try {
       connectionManager.open();
       List<GatewayBackend> proxyBackendList =
@@ -76,40 +113,53 @@ public class HaGatewayManager implements GatewayBackendManager {
       return GatewayBackend.upcast(proxyBackendList).stream().findAny();
     } finally {
       connectionManager.close();
+      dbContext.stop();
     }
   }
 
   @Override
   public void deactivateBackend(String backendName) {
+    Timer.Context dbContext = dbTimer.time();
     try {
       connectionManager.open();
       GatewayBackend.findFirst("name = ?", backendName).set("active", false).saveIt();
     } finally {
       connectionManager.close();
+      dbContext.stop();
     }
   }
 
   @Override
   public void activateBackend(String backendName) {
+    Timer.Context dbContext = dbTimer.time();
+    List<ProxyBackendConfiguration> activated;
     try {
       connectionManager.open();
-      GatewayBackend.findFirst("name = ?", backendName).set("active", true).saveIt();
+      GatewayBackend model = GatewayBackend.findFirst("name = ?", backendName);
+      model.set("active", true).saveIt();
+      activated = GatewayBackend.upcast(List.of(model));
     } finally {
       connectionManager.close();
+      dbContext.stop();
     }
+    activated.forEach(this::notifyBackendListeners);
   }
 
   public ProxyBackendConfiguration addBackend(ProxyBackendConfiguration backend) {
+    Timer.Context dbContext = dbTimer.time();
     try {
       connectionManager.open();
       GatewayBackend.create(new GatewayBackend(), backend);
     } finally {
       connectionManager.close();
+      dbContext.stop();
     }
+    notifyBackendListeners(backend);
     return backend;
   }
 
   public ProxyBackendConfiguration updateBackend(ProxyBackendConfiguration backend) {
+    Timer.Context dbContext = dbTimer.time();
     try {
       connectionManager.open();
       GatewayBackend model = GatewayBackend.findFirst("name = ?", backend.getName());
@@ -120,16 +170,20 @@ public class HaGatewayManager implements GatewayBackendManager {
       }
     } finally {
       connectionManager.close();
+      dbContext.stop();
     }
+    notifyBackendListeners(backend);
     return backend;
   }
 
   public void deleteBackend(String name) {
+    Timer.Context dbContext = dbTimer.time();
     try {
       connectionManager.open();
       GatewayBackend.delete("name = ?", name);
     } finally {
       connectionManager.close();
+      dbContext.stop();
     }
   }
 }
@@ -1,5 +1,8 @@
 package io.trino.gateway.ha.router;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import io.trino.gateway.ha.metrics.GatewayMetrics;
 import io.trino.gateway.ha.persistence.JdbcConnectionManager;
 import io.trino.gateway.ha.persistence.dao.QueryHistory;
 import java.util.List;
@@ -9,24 +12,33 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class HaQueryHistoryManager implements QueryHistoryManager {
   private JdbcConnectionManager connectionManager;
+  private final Timer dbTimer;
 
   public HaQueryHistoryManager(JdbcConnectionManager connectionManager) {
+    this(connectionManager, new MetricRegistry());
+  }
+
+  public HaQueryHistoryManager(JdbcConnectionManager connectionManager, MetricRegistry metricRegistry) {
     this.connectionManager = connectionManager;
+    this.dbTimer = GatewayMetrics.timer(metricRegistry, "db", "query_history");
   }
 
   @Override
   public void submitQueryDetail(QueryDetail queryDetail) {
+    Timer.Context dbContext = dbTimer.time();
     try {
       connectionManager.open();
       QueryHistory dao = new QueryHistory();
       QueryHistory.create(dao, queryDetail);
     } finally {
       connectionManager.close();
+      dbContext.stop();
     }
   }
 
   @Override
   public List<QueryDetail> fetchQueryHistory(Optional<String> user) {
+    Timer.Context dbContext = dbTimer.time();
     try {
       connectionManager.open();
       String sql = "select * from query_history";
@@ -39,12 +51,29 @@ public class HaQueryHistoryManager implements QueryHistoryManager {
           "limit 2000")));
     } finally {
       connectionManager.close();
+      dbContext.stop();
+    }
+  }
+
+  @Override
+  public List<QueryDetail> fetchQueriesSince(long sinceMillis, int limit) {
+    Timer.Context dbContext = dbTimer.time();
+    try {
+      connectionManager.open();
+      return QueryHistory.upcast(QueryHistory.findBySQL(
+          "select query_id, backend_url, created from query_history"
+              + " where created >= ? order by created desc limit ?",
+          sinceMillis, limit));
+    } finally {
+      connectionManager.close();
+      dbContext.stop();
     }
   }
 
   @Override
   public String getBackendForQueryId(String queryId) {
     String backend = null;
+    Timer.Context dbContext = dbTimer.time();
     try {
       connectionManager.open();
       QueryHistory queryHistory = QueryHistory.findById(queryId);
@@ -53,6 +82,7 @@ public class HaQueryHistoryManager implements QueryHistoryManager {
       }
     } finally {
       connectionManager.close();
+      dbContext.stop();
     }
     return backend;
   }
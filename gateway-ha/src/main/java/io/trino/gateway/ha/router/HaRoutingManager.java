@@ -1,6 +1,8 @@
 package io.trino.gateway.ha.router;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Strings;
+import io.trino.gateway.ha.config.QueryIdRoutingConfiguration;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -11,7 +13,36 @@ public class HaRoutingManager extends RoutingManager {
           GatewayBackendManager gatewayBackendManager,
           QueryHistoryManager queryHistoryManager,
           CookieCacheManager cacheManager) {
-    super(gatewayBackendManager, cacheManager);
+    this(gatewayBackendManager, queryHistoryManager, cacheManager, new MetricRegistry());
+  }
+
+  public HaRoutingManager(
+          GatewayBackendManager gatewayBackendManager,
+          QueryHistoryManager queryHistoryManager,
+          CookieCacheManager cacheManager,
+          MetricRegistry metricRegistry) {
+    this(gatewayBackendManager, queryHistoryManager, cacheManager, metricRegistry,
+        new QueryIdRoutingConfiguration());
+  }
+
+  public HaRoutingManager(
+          GatewayBackendManager gatewayBackendManager,
+          QueryHistoryManager queryHistoryManager,
+          CookieCacheManager cacheManager,
+          MetricRegistry metricRegistry,
+          QueryIdRoutingConfiguration configuration) {
+    this(gatewayBackendManager, queryHistoryManager, cacheManager, metricRegistry, configuration,
+        new LocalQueryRoutingStore());
+  }
+
+  public HaRoutingManager(
+          GatewayBackendManager gatewayBackendManager,
+          QueryHistoryManager queryHistoryManager,
+          CookieCacheManager cacheManager,
+          MetricRegistry metricRegistry,
+          QueryIdRoutingConfiguration configuration,
+          QueryRoutingStore queryRoutingStore) {
+    super(gatewayBackendManager, cacheManager, metricRegistry, configuration, queryRoutingStore);
     this.queryHistoryManager = queryHistoryManager;
   }
 
@@ -0,0 +1,288 @@
+package io.trino.gateway.ha.router;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import io.trino.gateway.ha.config.QueryIdRoutingConfiguration;
+import io.trino.gateway.ha.metrics.GatewayMetrics;
+import io.trino.gateway.ha.persistence.JdbcConnectionManager;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import lombok.extern.slf4j.Slf4j;
+import org.javalite.activejdbc.Base;
+
+/**
+ * Shares query routes between gateway instances through the gateway database.
+ *
+ * <p>Routes are written in batches: a route is written right away together with the routes
+ * recorded meanwhile, and {@link #putBackend} returns once it is written, so the first poll of a
+ * query finds it on any instance. Every batch gets the next value of a version
+ * counter kept in the {@code query_routing_version} table, and each instance polls the counter to
+ * learn about the batches written by the others, reading only the routes of the new versions. A
+ * route that is not known locally yet costs one primary key lookup.
+ */
+@Slf4j
+public class JdbcQueryRoutingStore implements QueryRoutingStore {
+  private static final int MAX_PENDING = 100_000;
+  private static final long CLEANUP_PERIOD_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+  private final JdbcConnectionManager connectionManager;
+  private final QueryIdRoutingConfiguration configuration;
+  private final BlockingQueue<PendingRoute> pending = new LinkedBlockingQueue<>(MAX_PENDING);
+  private final AtomicBoolean flushRequested = new AtomicBoolean();
+  private final List<BiConsumer<String, String>> listeners = new CopyOnWriteArrayList<>();
+  // versions of the batches written by this instance that were not polled yet, guarded by this
+  private final Set<Long> ownVersions = new HashSet<>();
+  private final ScheduledExecutorService executor =
+      Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "query-routing-store");
+        thread.setDaemon(true);
+        return thread;
+      });
+  private final Timer readTimer;
+  private final Timer writeTimer;
+  private final Meter hits;
+  private final Meter misses;
+  private final Meter written;
+  private final Meter received;
+  private final Meter dropped;
+  private final Meter writeTimeouts;
+  private volatile long version = -1;
+  private long lastCleanup;
+
+  public JdbcQueryRoutingStore(JdbcConnectionManager connectionManager,
+                               QueryIdRoutingConfiguration configuration,
+                               MetricRegistry metricRegistry) {
+    this.connectionManager = connectionManager;
+    this.configuration = configuration;
+    this.readTimer = GatewayMetrics.timer(metricRegistry, "db", "query_routing_lookup");
+    this.writeTimer = GatewayMetrics.timer(metricRegistry, "db", "query_routing_write");
+    this.hits = metricRegistry.meter("routing.store.hits");
+    this.misses = metricRegistry.meter("routing.store.misses");
+    this.written = metricRegistry.meter("routing.store.written");
+    this.received = metricRegistry.meter("routing.store.received");
+    this.dropped = metricRegistry.meter("routing.store.dropped");
+    this.writeTimeouts = metricRegistry.meter("routing.store.writeTimeouts");
+    GatewayMetrics.gauge(metricRegistry, "routing.store.pending", pending::size);
+    GatewayMetrics.gauge(metricRegistry, "routing.store.version", () -> version);
+
+    executor.scheduleWithFixedDelay(this::poll, 0, configuration.getStorePollIntervalMillis(),
+        TimeUnit.MILLISECONDS);
+    executor.scheduleWithFixedDelay(this::flush, configuration.getStoreFlushIntervalMillis(),
+        configuration.getStoreFlushIntervalMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public String getBackend(String queryId) {
+    Timer.Context context = readTimer.time();
+    try {
+      connectionManager.open();
+      Object backend =
+          Base.firstCell("select backend_url from query_routing where query_id = ?", queryId);
+      if (backend == null) {
+        misses.mark();
+        return null;
+      }
+      hits.mark();
+      return backend.toString();
+    } catch (Exception e) {
+      log.warn("Could not look up the backend of query [{}]: {}", queryId, e.getMessage());
+      return null;
+    } finally {
+      connectionManager.close();
+      context.stop();
+    }
+  }
+
+  @Override
+  public void putBackend(String queryId, String backend) {
+    PendingRoute route = new PendingRoute(queryId, backend);
+    if (!pending.offer(route)) {
+      dropped.mark();
+      return;
+    }
+    if (flushRequested.compareAndSet(false, true)) {
+      try {
+        executor.execute(this::flush);
+      } catch (RejectedExecutionException e) {
+        // closing, the route is written by close()
+        return;
+      }
+    }
+    try {
+      route.written.get(configuration.getStoreWriteTimeoutMillis(), TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException | TimeoutException e) {
+      // still queued, it is written by a later flush
+      writeTimeouts.mark();
+    }
+  }
+
+  @Override
+  public void addListener(BiConsumer<String, String> listener) {
+    listeners.add(listener);
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+    try {
+      executor.awaitTermination(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    flush();
+  }
+
+  /**
+   * Writes the queued routes, in batches of at most the configured size.
+   */
+  synchronized void flush() {
+    // the routes queued from now on get a flush of their own
+    flushRequested.set(false);
+    List<PendingRoute> batch = new ArrayList<>();
+    while (pending.drainTo(batch, configuration.getStoreBatchSize()) > 0) {
+      if (!write(batch)) {
+        // keep them for the next attempt
+        for (PendingRoute route : batch) {
+          if (!pending.offer(route)) {
+            dropped.mark();
+          }
+        }
+        return;
+      }
+      batch.forEach(route -> route.written.complete(null));
+      batch.clear();
+    }
+  }
+
+  private boolean write(List<PendingRoute> batch) {
+    Map<String, String> routes = new LinkedHashMap<>();
+    for (PendingRoute route : batch) {
+      routes.put(route.queryId, route.backend);
+    }
+    Timer.Context context = writeTimer.time();
+    try {
+      connectionManager.open();
+      Base.openTransaction();
+      try {
+        long batchVersion = nextVersion();
+        // a query recorded again replaces its previous route
+        Base.exec("delete from query_routing where query_id in ("
+            + String.join(",", Collections.nCopies(routes.size(), "?")) + ")",
+            routes.keySet().toArray());
+        PreparedStatement statement = Base.startBatch(
+            "insert into query_routing (query_id, backend_url, version, created) "
+                + "values (?, ?, ?, ?)");
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, String> route : routes.entrySet()) {
+          Base.addBatch(statement, route.getKey(), route.getValue(), batchVersion, now);
+        }
+        Base.executeBatch(statement);
+        Base.closePreparedStatement(statement);
+        Base.commitTransaction();
+        ownVersions.add(batchVersion);
+      } catch (RuntimeException e) {
+        Base.rollbackTransaction();
+        throw e;
+      }
+      written.mark(routes.size());
+      return true;
+    } catch (Exception e) {
+      log.warn("Could not write {} query routes: {}", routes.size(), e.getMessage());
+      return false;
+    } finally {
+      connectionManager.close();
+      context.stop();
+    }
+  }
+
+  /**
+   * Increments the version counter. The row stays locked until the transaction ends, so batches
+   * become visible in the order of their versions.
+   */
+  private static long nextVersion() {
+    if (Base.exec("update query_routing_version set version = version + 1 where id = 1") == 0) {
+      Base.exec("insert into query_routing_version (id, version) values (1, 1)");
+    }
+    return currentVersion();
+  }
+
+  private static long currentVersion() {
+    Object version = Base.firstCell("select version from query_routing_version where id = 1");
+    return version == null ? 0 : ((Number) version).longValue();
+  }
+
+  /**
+   * Passes the routes written by other instances since the last poll to the listeners, and
+   * removes expired routes from time to time.
+   */
+  synchronized void poll() {
+    try {
+      connectionManager.open();
+      long current = currentVersion();
+      if (version < 0) {
+        // older routes are looked up when they are needed
+        version = current;
+      } else if (current > version) {
+        List<Map> routes = Base.findAll(
+            "select query_id, backend_url, version from query_routing "
+                + "where version > ? and version <= ?", version, current);
+        for (Map route : routes) {
+          long routeVersion = ((Number) route.get("version")).longValue();
+          if (!ownVersions.contains(routeVersion)) {
+            for (BiConsumer<String, String> listener : listeners) {
+              listener.accept((String) route.get("query_id"), (String) route.get("backend_url"));
+            }
+            received.mark();
+          }
+        }
+        long polled = version;
+        ownVersions.removeIf(ownVersion -> ownVersion > polled && ownVersion <= current);
+        version = current;
+      }
+
+      long now = System.currentTimeMillis();
+      if (now - lastCleanup > CLEANUP_PERIOD_MILLIS) {
+        lastCleanup = now;
+        Base.exec("delete from query_routing where created < ?",
+            now - TimeUnit.HOURS.toMillis(configuration.getStoreRetentionHours()));
+      }
+    } catch (Exception e) {
+      log.warn("Could not read the query routes of other gateway instances: {}",
+          e.getMessage());
+    } finally {
+      connectionManager.close();
+    }
+  }
+
+  private static class PendingRoute {
+    private final String queryId;
+    private final String backend;
+    private final CompletableFuture<Void> written = new CompletableFuture<>();
+
+    PendingRoute(String queryId, String backend) {
+      this.queryId = queryId;
+      this.backend = backend;
+    }
+  }
+}
@@ -0,0 +1,21 @@
+package io.trino.gateway.ha.router;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Keeps query routes in the index of this gateway instance only.
+ */
+public class LocalQueryRoutingStore implements QueryRoutingStore {
+  @Override
+  public String getBackend(String queryId) {
+    return null;
+  }
+
+  @Override
+  public void putBackend(String queryId, String backend) {
+  }
+
+  @Override
+  public void addListener(BiConsumer<String, String> listener) {
+  }
+}
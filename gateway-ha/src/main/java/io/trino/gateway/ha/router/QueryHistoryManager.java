@@ -12,6 +12,12 @@ public interface QueryHistoryManager {
 
   String getBackendForQueryId(String queryId);
 
+  /**
+   * Returns up to {@code limit} of the queries captured at or after {@code sinceMillis}, newest
+   * first. Only the query id, backend and capture time are filled in.
+   */
+  List<QueryDetail> fetchQueriesSince(long sinceMillis, int limit);
+
   @Data
   @ToString
   class QueryDetail implements Comparable<QueryDetail> {
@@ -0,0 +1,379 @@
+package io.trino.gateway.ha.router;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Query id to backend mapping for millions of queries with next to no garbage collection cost.
+ *
+ * <p>A Trino query id such as {@code 20231019_123456_00042_abcde} is encoded into two longs: the
+ * date and time digits in one, the sequence number and the coordinator id in the other. The
+ * backend is stored as a small index into the table of known backends, packed into the first
+ * long. Entries live in open-addressing tables split into segments, each guarded by a
+ * {@link StampedLock} so that lookups are usually lock-free optimistic reads. The tables can be
+ * allocated off-heap.
+ *
+ * <p>Every segment keeps two generations. When the current generation is full, the previous one
+ * is dropped and the current one takes its place. A lookup that hits the previous generation
+ * copies the entry into the current one, so queries that are still polled are kept, and the
+ * index forgets queries that have not been seen for two generations.
+ *
+ * <p>Query ids of another shape are kept in a small cache with the same limits as before.
+ */
+class QueryIdIndex {
+  static final int DEFAULT_CAPACITY = 250_000;
+  private static final int SEGMENTS = 16;
+  private static final int QUERY_ID_LENGTH = 27;
+  private static final int MAX_BACKENDS = (1 << 16) - 1;
+  private static final int BACKEND_SHIFT = 47;
+  private static final long TIMESTAMP_MASK = (1L << BACKEND_SHIFT) - 1;
+
+  private final Segment[] segments = new Segment[SEGMENTS];
+  private final Map<String, Integer> backendIndexes = new ConcurrentHashMap<>();
+  private volatile String[] backends = new String[0];
+  private final Cache<String, String> otherQueryIds = CacheBuilder.newBuilder()
+      .maximumSize(10000)
+      .expireAfterAccess(30, TimeUnit.MINUTES)
+      .build();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final int maxEntries;
+
+  QueryIdIndex() {
+    this(DEFAULT_CAPACITY, false);
+  }
+
+  /**
+   * Creates an index that keeps at least {@code capacity} of the most recently used entries.
+   */
+  QueryIdIndex(int capacity, boolean offHeap) {
+    int segmentCapacity = Math.max(capacity / SEGMENTS, 16);
+    // at most half full, so probe sequences stay short
+    int slots = Integer.highestOneBit(segmentCapacity * 2 - 1) << 1;
+    maxEntries = SEGMENTS * 2 * segmentCapacity;
+    for (int i = 0; i < SEGMENTS; i++) {
+      segments[i] = new Segment(slots, segmentCapacity, offHeap);
+    }
+  }
+
+  /**
+   * Returns the backend of the query, or null if it is not known.
+   */
+  String get(String queryId) {
+    long high = encodeTimestamp(queryId);
+    if (high < 0) {
+      return count(otherQueryIds.getIfPresent(queryId));
+    }
+    long low = encodeSequence(queryId);
+    int hash = hash(high, low);
+    int backend = segments[hash >>> 28].get(high, low, hash);
+    return count(backend < 0 ? null : backends[backend]);
+  }
+
+  void put(String queryId, String backend) {
+    long high = encodeTimestamp(queryId);
+    int backendIndex = high < 0 ? -1 : backendIndex(backend);
+    if (backendIndex < 0) {
+      otherQueryIds.put(queryId, backend);
+      return;
+    }
+    long low = encodeSequence(queryId);
+    int hash = hash(high, low);
+    segments[hash >>> 28].put(high, low, hash, backendIndex);
+  }
+
+  /**
+   * Adds an entry given in the encoding of {@link #encodeTimestamp(String)} and
+   * {@link #encodeSequence(String)}.
+   */
+  void putEncoded(long high, long low, String backend) {
+    if (high < 0 || high > TIMESTAMP_MASK) {
+      throw new IllegalArgumentException("Invalid encoded query id: " + high);
+    }
+    int backendIndex = backendIndex(backend);
+    if (backendIndex >= 0) {
+      int hash = hash(high, low);
+      segments[hash >>> 28].put(high, low, hash, backendIndex);
+    }
+  }
+
+  /**
+   * Returns the backends that the backend indexes passed to {@link #forEach(EntryConsumer)}
+   * refer to. Backends added later have higher indexes.
+   */
+  String[] backends() {
+    return backends;
+  }
+
+  /**
+   * Calls the consumer for every entry of a standard query id, older generations first. Entries
+   * added while this runs may or may not be included.
+   */
+  void forEach(EntryConsumer consumer) {
+    for (Segment segment : segments) {
+      segment.forEach(consumer);
+    }
+  }
+
+  /**
+   * The most entries of standard query ids that the index can hold.
+   */
+  int maxEntries() {
+    return maxEntries;
+  }
+
+  long size() {
+    long size = otherQueryIds.size();
+    for (Segment segment : segments) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  long hitCount() {
+    return hits.sum();
+  }
+
+  long missCount() {
+    return misses.sum();
+  }
+
+  private String count(String backend) {
+    if (backend == null) {
+      misses.increment();
+    } else {
+      hits.increment();
+    }
+    return backend;
+  }
+
+  private int backendIndex(String backend) {
+    Integer index = backendIndexes.get(backend);
+    if (index != null) {
+      return index;
+    }
+    synchronized (backendIndexes) {
+      index = backendIndexes.get(backend);
+      if (index != null) {
+        return index;
+      }
+      if (backends.length == MAX_BACKENDS) {
+        return -1;
+      }
+      String[] extended = Arrays.copyOf(backends, backends.length + 1);
+      extended[backends.length] = backend;
+      // publish the name before the index, so readers never see an index without its name
+      backends = extended;
+      backendIndexes.put(backend, backends.length - 1);
+      return backends.length - 1;
+    }
+  }
+
+  /**
+   * Encodes the date and time of a query id of the standard shape as a number, or returns -1 if
+   * the query id has another shape.
+   */
+  static long encodeTimestamp(String queryId) {
+    if (queryId == null || queryId.length() != QUERY_ID_LENGTH
+        || queryId.charAt(8) != '_' || queryId.charAt(15) != '_' || queryId.charAt(21) != '_') {
+      return -1;
+    }
+    long value = 0;
+    for (int i = 0; i < 15; i++) {
+      if (i == 8) {
+        continue;
+      }
+      int digit = queryId.charAt(i) - '0';
+      if (digit < 0 || digit > 9) {
+        return -1;
+      }
+      value = value * 10 + digit;
+    }
+    for (int i = 16; i < 21; i++) {
+      char c = queryId.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+    }
+    for (int i = 22; i < QUERY_ID_LENGTH; i++) {
+      char c = queryId.charAt(i);
+      if (c >= 128 || !Character.isLetterOrDigit(c)) {
+        return -1;
+      }
+    }
+    return value;
+  }
+
+  /**
+   * Encodes the sequence number and coordinator id of a query id that
+   * {@link #encodeTimestamp(String)} accepted.
+   */
+  static long encodeSequence(String queryId) {
+    long value = 0;
+    for (int i = 16; i < 21; i++) {
+      value = value * 10 + (queryId.charAt(i) - '0');
+    }
+    for (int i = 22; i < QUERY_ID_LENGTH; i++) {
+      value = (value << 8) | queryId.charAt(i);
+    }
+    return value;
+  }
+
+  private static int hash(long high, long low) {
+    long h = high * 0x9E3779B97F4A7C15L + low;
+    h ^= h >>> 33;
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= h >>> 33;
+    h *= 0xC4CEB9FE1A85EC53L;
+    h ^= h >>> 33;
+    return (int) h;
+  }
+
+  interface EntryConsumer {
+    void accept(long high, long low, int backend);
+  }
+
+  /**
+   * Two generations of open-addressing tables with linear probing. A slot is two longs, the
+   * first holding the backend index plus one above the encoded timestamp, so an empty slot is
+   * all zeros.
+   */
+  private static class Segment {
+    private final StampedLock lock = new StampedLock();
+    private final int mask;
+    private final int capacity;
+    private LongBuffer current;
+    private LongBuffer previous;
+    private int currentSize;
+    private int previousSize;
+
+    Segment(int slots, int capacity, boolean offHeap) {
+      this.mask = slots - 1;
+      this.capacity = capacity;
+      this.current = allocate(slots * 2, offHeap);
+      this.previous = allocate(slots * 2, offHeap);
+    }
+
+    private static LongBuffer allocate(int longs, boolean offHeap) {
+      if (offHeap) {
+        return ByteBuffer.allocateDirect(longs * Long.BYTES).asLongBuffer();
+      }
+      return LongBuffer.allocate(longs);
+    }
+
+    int get(long high, long low, int hash) {
+      long stamp = lock.tryOptimisticRead();
+      int backend = -1;
+      boolean inPrevious = false;
+      if (stamp != 0) {
+        backend = find(current, high, low, hash);
+        if (backend < 0) {
+          backend = find(previous, high, low, hash);
+          inPrevious = backend >= 0;
+        }
+      }
+      if (stamp == 0 || !lock.validate(stamp)) {
+        stamp = lock.readLock();
+        try {
+          backend = find(current, high, low, hash);
+          inPrevious = false;
+          if (backend < 0) {
+            backend = find(previous, high, low, hash);
+            inPrevious = backend >= 0;
+          }
+        } finally {
+          lock.unlockRead(stamp);
+        }
+      }
+      if (inPrevious) {
+        // still in use, keep it when the previous generation is dropped
+        put(high, low, hash, backend);
+      }
+      return backend;
+    }
+
+    void put(long high, long low, int hash, int backend) {
+      long stamp = lock.writeLock();
+      try {
+        int slot = slot(current, high, low, hash);
+        long first = current.get(slot);
+        current.put(slot, ((long) (backend + 1) << BACKEND_SHIFT) | high);
+        current.put(slot + 1, low);
+        if (first == 0 && ++currentSize >= capacity) {
+          rotate();
+        }
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+
+    void forEach(EntryConsumer consumer) {
+      long stamp = lock.readLock();
+      try {
+        forEach(previous, consumer);
+        forEach(current, consumer);
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+
+    private static void forEach(LongBuffer table, EntryConsumer consumer) {
+      for (int slot = 0; slot < table.capacity(); slot += 2) {
+        long first = table.get(slot);
+        if (first != 0) {
+          consumer.accept(first & TIMESTAMP_MASK, table.get(slot + 1),
+              (int) (first >>> BACKEND_SHIFT) - 1);
+        }
+      }
+    }
+
+    int size() {
+      long stamp = lock.readLock();
+      try {
+        return currentSize + previousSize;
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+
+    private void rotate() {
+      LongBuffer dropped = previous;
+      for (int i = 0; i < dropped.capacity(); i++) {
+        dropped.put(i, 0);
+      }
+      previous = current;
+      previousSize = currentSize;
+      current = dropped;
+      currentSize = 0;
+    }
+
+    private int find(LongBuffer table, long high, long low, int hash) {
+      long first = table.get(slot(table, high, low, hash));
+      return first == 0 ? -1 : (int) (first >>> BACKEND_SHIFT) - 1;
+    }
+
+    /**
+     * Returns the index of the slot that holds the key, or of the empty slot where it belongs.
+     * Tables are never more than half full, so an empty slot always exists.
+     */
+    private int slot(LongBuffer table, long high, long low, int hash) {
+      int index = hash & mask;
+      while (true) {
+        int slot = index * 2;
+        long first = table.get(slot);
+        if (first == 0 || ((first & TIMESTAMP_MASK) == high && table.get(slot + 1) == low)) {
+          return slot;
+        }
+        index = (index + 1) & mask;
+      }
+    }
+  }
+}
@@ -0,0 +1,162 @@
+package io.trino.gateway.ha.router;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import java.io.Closeable;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Finds the backend that knows a query id by sending {@code HEAD /v1/query/<id>} to all backends
+ * in parallel on a shared non-blocking HTTP client. The probe completes with the first backend
+ * that answers 200, or with empty once every backend has answered otherwise, which confirms that
+ * no backend knows the query. It completes exceptionally if no backend answered 200 and a request
+ * failed, or if the overall deadline passes first. Concurrent probes for the same query id share
+ * one set of requests, and the requests still in flight are cancelled once the probe completes.
+ */
+@Slf4j
+class QueryIdProber implements Closeable {
+  private static final int THREADS = 4;
+
+  private final ExecutorService executor;
+  private final HttpClient httpClient;
+  private final Duration deadline;
+  private final Map<String, CompletableFuture<Optional<String>>> inFlight =
+      new ConcurrentHashMap<>();
+  private final Meter attempts;
+  private final Meter errors;
+  private final Meter timeouts;
+  private final Meter coalesced;
+
+  QueryIdProber(MetricRegistry metricRegistry, Duration deadline) {
+    this.deadline = deadline;
+    // only completes the requests, the connections are handled by the selector of the client
+    this.executor = Executors.newFixedThreadPool(THREADS, runnable -> {
+      Thread thread = new Thread(runnable, "query-id-prober");
+      thread.setDaemon(true);
+      return thread;
+    });
+    // no request or connect timeout, the requests are cancelled at the deadline
+    this.httpClient = HttpClient.newBuilder()
+        // HTTP/2 would add h2c upgrade headers to every plain probe
+        .version(HttpClient.Version.HTTP_1_1)
+        .followRedirects(HttpClient.Redirect.NEVER)
+        .executor(executor)
+        .build();
+    attempts = metricRegistry.meter("routing.queryIdProbe.attempts");
+    errors = metricRegistry.meter("routing.queryIdProbe.errors");
+    timeouts = metricRegistry.meter("routing.queryIdProbe.timeouts");
+    coalesced = metricRegistry.meter("routing.queryIdProbe.coalesced");
+  }
+
+  /**
+   * Probes {@code backends}, given as their proxy addresses, for {@code queryId}. Joins the
+   * probe already in flight for the same query id, if any.
+   */
+  CompletableFuture<Optional<String>> probe(String queryId, List<String> backends) {
+    CompletableFuture<Optional<String>> probe = inFlight.get(queryId);
+    if (probe != null) {
+      coalesced.mark();
+      return probe;
+    }
+    CompletableFuture<Optional<String>> created = new CompletableFuture<>();
+    probe = inFlight.putIfAbsent(queryId, created);
+    if (probe != null) {
+      coalesced.mark();
+      return probe;
+    }
+    // deregister before any waiter sees the result, so a later lookup starts a fresh probe
+    CompletableFuture<Optional<String>> result = created.whenComplete(
+        (backend, e) -> inFlight.remove(queryId, created));
+    start(queryId, backends, created);
+    return result;
+  }
+
+  private void start(String queryId, List<String> backends,
+                     CompletableFuture<Optional<String>> result) {
+    if (backends.isEmpty()) {
+      result.complete(Optional.empty());
+      return;
+    }
+    AtomicInteger remaining = new AtomicInteger(backends.size());
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    List<CompletableFuture<HttpResponse<Void>>> requests = new ArrayList<>();
+    for (String backend : backends) {
+      HttpRequest request;
+      try {
+        request = HttpRequest.newBuilder(URI.create(backend + "/v1/query/" + queryId))
+            .method("HEAD", HttpRequest.BodyPublishers.noBody())
+            .build();
+      } catch (IllegalArgumentException e) {
+        log.warn("Cannot probe backend [{}] for query [{}]: {}", backend, queryId,
+            e.getMessage());
+        errors.mark();
+        failure.compareAndSet(null, e);
+        complete(result, remaining, failure);
+        continue;
+      }
+      attempts.mark();
+      CompletableFuture<HttpResponse<Void>> sent =
+          httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+      requests.add(sent);
+      sent.whenComplete((response, e) -> {
+        if (e != null) {
+          if (result.isDone()) {
+            // cancelled once the probe completed
+            return;
+          }
+          errors.mark();
+          failure.compareAndSet(null, e);
+          log.debug("Probing backend [{}] for query [{}] failed", backend, queryId, e);
+        } else if (response.statusCode() == 200) {
+          result.complete(Optional.of(backend));
+        }
+        complete(result, remaining, failure);
+      });
+    }
+    CompletableFuture.delayedExecutor(deadline.toMillis(), TimeUnit.MILLISECONDS)
+        .execute(() -> {
+          if (result.isDone()) {
+            return;
+          }
+          // counted before the waiters resume
+          timeouts.mark();
+          result.completeExceptionally(new TimeoutException(
+              "No backend answered for query " + queryId + " within " + deadline));
+        });
+    result.whenComplete((backend, e) -> requests.forEach(request -> request.cancel(true)));
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  private static void complete(CompletableFuture<Optional<String>> result,
+                               AtomicInteger remaining, AtomicReference<Throwable> failure) {
+    if (remaining.decrementAndGet() > 0) {
+      return;
+    }
+    if (failure.get() == null) {
+      result.complete(Optional.empty());
+    } else {
+      result.completeExceptionally(failure.get());
+    }
+  }
+}
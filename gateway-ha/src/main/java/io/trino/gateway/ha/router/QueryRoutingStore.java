@@ -0,0 +1,35 @@
+package io.trino.gateway.ha.router;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Tier behind the query id index of a {@link RoutingManager} that the query routes of all gateway
+ * instances are kept in, so that a poll reaching another instance than the one that submitted the
+ * query is still routed without probing the backends.
+ */
+public interface QueryRoutingStore {
+  /**
+   * Returns the backend of the query, or null if it is not known. Called on a miss of the local
+   * index, so it must not be more expensive than a single point lookup.
+   */
+  String getBackend(String queryId);
+
+  /**
+   * Records the backend of a query submitted through this instance. Called before the response to
+   * the submission is relayed, so a shared store should return once the route is visible to the
+   * other instances. The route may be written together with other routes.
+   */
+  void putBackend(String queryId, String backend);
+
+  /**
+   * Registers a listener that is called with the routes recorded by other instances, as they
+   * become known to this one.
+   */
+  void addListener(BiConsumer<String, String> listener);
+
+  /**
+   * Writes the routes that are not written yet and releases the resources of the store.
+   */
+  default void close() {
+  }
+}
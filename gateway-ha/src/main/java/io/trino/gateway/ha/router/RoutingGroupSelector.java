@@ -1,12 +1,14 @@
 package io.trino.gateway.ha.router;
 
+import io.trino.gateway.ha.config.RoutingRulesConfiguration;
 import jakarta.servlet.http.HttpServletRequest;
+import java.io.Closeable;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * RoutingGroupSelector provides a way to match an HTTP request to a Gateway routing group.
  */
-public interface RoutingGroupSelector {
+public interface RoutingGroupSelector extends Closeable {
   String ROUTING_GROUP_HEADER = "X-Trino-Routing-Group";
 
   /**
@@ -22,7 +24,39 @@ public interface RoutingGroupSelector {
    * to determine the right routing group.
    */
   static RoutingGroupSelector byRoutingRulesEngine(String rulesConfigPath) {
-    return new RuleReloadingRoutingGroupSelector(rulesConfigPath);
+    return new RuleReloadingRoutingGroupSelector(rulesConfigPath).start();
+  }
+
+  /**
+   * Routing group selector that uses routing engine rules, checking the rules file for
+   * changes every {@code refreshPeriodMillis}.
+   */
+  static RoutingGroupSelector byRoutingRulesEngine(String rulesConfigPath,
+                                                   long refreshPeriodMillis) {
+    return new RuleReloadingRoutingGroupSelector(rulesConfigPath, refreshPeriodMillis).start();
+  }
+
+  /**
+   * Routing group selector that compiles the routing engine rules into header indexes, so only
+   * the rules that can match a request are evaluated.
+   */
+  static RoutingGroupSelector byCompiledRoutingRules(String rulesConfigPath,
+                                                     long refreshPeriodMillis) {
+    return new CompiledRoutingGroupSelector(rulesConfigPath, refreshPeriodMillis).start();
+  }
+
+  /**
+   * Routing group selector for the rules engine settings in {@code config}, recording the rule
+   * evaluations in {@code profiler}.
+   */
+  static RoutingGroupSelector byRoutingRules(RoutingRulesConfiguration config,
+                                             RoutingRulesProfiler profiler) {
+    RuleReloadingRoutingGroupSelector selector = config.isCompiledRulesEnabled()
+        ? new CompiledRoutingGroupSelector(config.getRulesConfigPath(),
+            config.getRulesRefreshPeriodMillis(), profiler)
+        : new RuleReloadingRoutingGroupSelector(config.getRulesConfigPath(),
+            config.getRulesRefreshPeriodMillis(), profiler);
+    return selector.start();
   }
 
   /**
@@ -31,6 +65,21 @@ public interface RoutingGroupSelector {
    */
   String findRoutingGroup(HttpServletRequest request);
 
+  /**
+   * A number that changes whenever the rules behind this selector change, so routing decisions
+   * cached by {@link CachingRoutingGroupSelector} can be discarded.
+   */
+  default long rulesVersion() {
+    return 0;
+  }
+
+  /**
+   * Stops the background work of the selector, such as polling the rules file.
+   */
+  @Override
+  default void close() {
+  }
+
   @Slf4j
   final class Logger {
   }
@@ -1,26 +1,26 @@
 package io.trino.gateway.ha.router;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import io.trino.gateway.ha.clustermonitor.ClusterStats;
 import io.trino.gateway.ha.config.ProxyBackendConfiguration;
-import io.trino.gateway.proxyserver.ProxyServerConfiguration;
-import jakarta.ws.rs.HttpMethod;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.util.HashMap;
+import io.trino.gateway.ha.config.QueryIdRoutingConfiguration;
+import io.trino.gateway.ha.metrics.GatewayMetrics;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -30,29 +30,56 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public abstract class RoutingManager {
   private static final Random RANDOM = new Random();
-  private final LoadingCache<String, String> queryIdBackendCache;
+  private final QueryIdIndex queryIdIndex;
+  private final Cache<String, Boolean> unknownQueryIds;
   private final LoadingCache<String, String> uiCookieBackendCache;
-  private ExecutorService executorService = Executors.newFixedThreadPool(5);
   private GatewayBackendManager gatewayBackendManager;
   private ConcurrentHashMap<String, Boolean> backendToHealth;
+  private final Timer queryIdProbeTimer;
+  private final Meter queryIdProbeFound;
+  private final Meter queryIdProbeNotFound;
+  private final Meter unknownQueryIdHits;
+  private final QueryIdProber queryIdProber;
+  private final QueryRoutingStore queryRoutingStore;
   CookieCacheManager cacheManager;
 
   public RoutingManager(
           GatewayBackendManager gatewayBackendManager,
           CookieCacheManager cacheManager) {
+    this(gatewayBackendManager, cacheManager, new MetricRegistry());
+  }
+
+  public RoutingManager(
+          GatewayBackendManager gatewayBackendManager,
+          CookieCacheManager cacheManager,
+          MetricRegistry metricRegistry) {
+    this(gatewayBackendManager, cacheManager, metricRegistry, new QueryIdRoutingConfiguration());
+  }
+
+  public RoutingManager(
+          GatewayBackendManager gatewayBackendManager,
+          CookieCacheManager cacheManager,
+          MetricRegistry metricRegistry,
+          QueryIdRoutingConfiguration configuration) {
+    this(gatewayBackendManager, cacheManager, metricRegistry, configuration,
+        new LocalQueryRoutingStore());
+  }
+
+  public RoutingManager(
+          GatewayBackendManager gatewayBackendManager,
+          CookieCacheManager cacheManager,
+          MetricRegistry metricRegistry,
+          QueryIdRoutingConfiguration configuration,
+          QueryRoutingStore queryRoutingStore) {
     this.gatewayBackendManager = gatewayBackendManager;
     this.cacheManager = cacheManager;
-    queryIdBackendCache =
+    queryIdIndex = new QueryIdIndex(configuration.getIndexCapacity(),
+        configuration.isIndexOffHeap());
+    unknownQueryIds =
         CacheBuilder.newBuilder()
             .maximumSize(10000)
-            .expireAfterAccess(30, TimeUnit.MINUTES)
-            .build(
-                new CacheLoader<String, String>() {
-                  @Override
-                  public String load(String queryId) {
-                    return findBackendForUnknownQueryId(queryId);
-                  }
-                });
+            .expireAfterWrite(configuration.getUnknownQueryIdTtlMillis(), TimeUnit.MILLISECONDS)
+            .build();
     uiCookieBackendCache =
             CacheBuilder.newBuilder()
                     .maximumSize(10000)
@@ -65,6 +92,28 @@ public abstract class RoutingManager {
                             }
                           });
     this.backendToHealth = new ConcurrentHashMap<String, Boolean>();
+
+    GatewayMetrics.gauge(metricRegistry, "routing.queryIdCache.hits", queryIdIndex::hitCount);
+    GatewayMetrics.gauge(metricRegistry, "routing.queryIdCache.misses", queryIdIndex::missCount);
+    GatewayMetrics.gauge(metricRegistry, "routing.queryIdCache.size", queryIdIndex::size);
+    queryIdProbeTimer = GatewayMetrics.timer(metricRegistry, "routing", "queryIdProbe");
+    queryIdProbeFound = metricRegistry.meter("routing.queryIdProbe.found");
+    queryIdProbeNotFound = metricRegistry.meter("routing.queryIdProbe.notFound");
+    unknownQueryIdHits = metricRegistry.meter("routing.unknownQueryIdCache.hits");
+    GatewayMetrics.gauge(metricRegistry, "routing.unknownQueryIdCache.size",
+        unknownQueryIds::size);
+    queryIdProber = new QueryIdProber(metricRegistry,
+        Duration.ofMillis(configuration.getProbeDeadlineMillis()));
+    this.queryRoutingStore = queryRoutingStore;
+    // routes recorded by other gateway instances
+    queryRoutingStore.addListener(this::setBackendForQueryId);
+  }
+
+  /**
+   * Stops the threads that probe the backends for unknown query ids.
+   */
+  public void close() {
+    queryIdProber.close();
   }
 
   protected GatewayBackendManager getGatewayBackendManager() {
@@ -72,7 +121,32 @@ public abstract class RoutingManager {
   }
 
   public void setBackendForQueryId(String queryId, String backend) {
-    queryIdBackendCache.put(queryId, backend);
+    unknownQueryIds.invalidate(queryId);
+    queryIdIndex.put(queryId, backend);
+  }
+
+  /**
+   * Records the backend of a query submitted through this gateway, so that the other gateway
+   * instances can route it too.
+   */
+  public void recordBackendForQueryId(String queryId, String backend) {
+    setBackendForQueryId(queryId, backend);
+    queryRoutingStore.putBackend(queryId, backend);
+  }
+
+  QueryIdIndex getQueryIdIndex() {
+    return queryIdIndex;
+  }
+
+  /**
+   * The UI cookies whose backend is cached, as a live view.
+   */
+  Map<String, String> getUiCookieBackends() {
+    return uiCookieBackendCache.asMap();
+  }
+
+  void restoreBackendForUiCookie(String uiCookie, String backend) {
+    uiCookieBackendCache.put(uiCookie, backend);
   }
 
   public void setBackendForCookie(String uiCookie, String backend) {
@@ -119,18 +193,33 @@ public abstract class RoutingManager {
   }
 
   /**
-   * Performs cache look up, if a backend not found, it checks with all backends and tries to find
-   * out which backend has info about given query id.
+   * Performs cache look up, if a backend not found, it checks the query routing store shared with
+   * the other gateway instances and then all backends, and tries to find out which backend has
+   * info about given query id. Returns null if no backend knows the query id. Such ids are
+   * remembered for a short time, so repeated requests for them are answered without another
+   * lookup.
    *
    * @param queryId
    * @return
    */
   public String findBackendForQueryId(String queryId) {
-    String backendAddress = null;
-    try {
-      backendAddress = queryIdBackendCache.get(queryId);
-    } catch (ExecutionException e) {
-      log.error("Exception while loading queryId from cache {}", e.getLocalizedMessage());
+    if (unknownQueryIds.getIfPresent(queryId) != null) {
+      unknownQueryIdHits.mark();
+      return null;
+    }
+    String backendAddress = queryIdIndex.get(queryId);
+    if (backendAddress != null) {
+      return backendAddress;
+    }
+    backendAddress = queryRoutingStore.getBackend(queryId);
+    if (backendAddress == null) {
+      backendAddress = findBackendForUnknownQueryId(queryId);
+    }
+    if (backendAddress == null) {
+      log.debug("Query id [{}] is unknown", queryId);
+    } else {
+      // the following polls of the query are routed by the index
+      setBackendForQueryId(queryId, backendAddress);
     }
     return backendAddress;
   }
@@ -162,45 +251,38 @@ public abstract class RoutingManager {
 
 
   /**
-   * This tries to find out which backend may have info about given query id. If not found returns
-   * the first healthy backend.
+   * This tries to find out which backend may have info about given query id. All backends are
+   * probed in parallel and the first one that knows the query wins. Returns null, and remembers
+   * the query id as unknown, if every backend answered that it does not know the query. If the
+   * probe is inconclusive, returns the first active adhoc backend.
    *
    * @param queryId
    * @return
    */
   protected String findBackendForUnknownQueryId(String queryId) {
-    List<ProxyBackendConfiguration> backends = gatewayBackendManager.getAllBackends();
+    List<String> backends = gatewayBackendManager.getAllBackends().stream()
+        .map(ProxyBackendConfiguration::getProxyTo)
+        .collect(Collectors.toList());
 
-    Map<String, Future<Integer>> responseCodes = new HashMap<>();
+    Timer.Context probeContext = queryIdProbeTimer.time();
     try {
-      for (ProxyServerConfiguration backend : backends) {
-        String target = backend.getProxyTo() + "/v1/query/" + queryId;
-
-        Future<Integer> call =
-            executorService.submit(
-                () -> {
-                  URL url = new URL(target);
-                  HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-                  conn.setConnectTimeout((int) TimeUnit.SECONDS.toMillis(5));
-                  conn.setReadTimeout((int) TimeUnit.SECONDS.toMillis(5));
-                  conn.setRequestMethod(HttpMethod.HEAD);
-                  return conn.getResponseCode();
-                });
-        responseCodes.put(backend.getProxyTo(), call);
-      }
-      for (Map.Entry<String, Future<Integer>> entry : responseCodes.entrySet()) {
-        if (entry.getValue().isDone()) {
-          int responseCode = entry.getValue().get();
-          if (responseCode == 200) {
-            log.info("Found query [{}] on backend [{}]", queryId, entry.getKey());
-            setBackendForQueryId(queryId, entry.getKey());
-            return entry.getKey();
-          }
-        }
+      Optional<String> backend = queryIdProber.probe(queryId, backends).join();
+      if (backend.isPresent()) {
+        log.info("Found query [{}] on backend [{}]", queryId, backend.get());
+        queryIdProbeFound.mark();
+        return backend.get();
       }
+      log.info("Query id [{}] is not known to any backend", queryId);
+      queryIdProbeNotFound.mark();
+      unknownQueryIds.put(queryId, Boolean.TRUE);
+      return null;
     } catch (Exception e) {
-      log.warn("Query id [{}] not found", queryId);
+      log.warn("Query id [{}] not found, the backend probe was inconclusive: {}", queryId,
+          e.getMessage());
+    } finally {
+      probeContext.stop();
     }
+    queryIdProbeNotFound.mark();
     // Fallback on first active backend if queryId mapping not found.
     return gatewayBackendManager.getActiveAdhocBackends().get(0).getProxyTo();
   }
@@ -0,0 +1,15 @@
+package io.trino.gateway.ha.router;
+
+import org.jeasy.rules.api.Facts;
+
+/**
+ * A parsed routing rules file. Implementations are immutable, so a single instance is shared by
+ * all request threads until the file is reloaded.
+ */
+interface RoutingRules {
+  /**
+   * Fires the rules whose condition holds for the {@code request} fact, in priority order,
+   * with the same semantics as the easy-rules {@code DefaultRulesEngine}.
+   */
+  void fire(Facts facts);
+}
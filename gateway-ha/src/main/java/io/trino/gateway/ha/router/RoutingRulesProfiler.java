@@ -0,0 +1,139 @@
+package io.trino.gateway.ha.router;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Data;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.jeasy.rules.api.Facts;
+import org.jeasy.rules.api.Rule;
+import org.jeasy.rules.api.RuleListener;
+
+/**
+ * Counts how often each routing rule is evaluated and matches, and times a sample of the
+ * evaluations. Counting uses striped counters and only one in {@code sampleRate} evaluations is
+ * timed, so the profiler is cheap enough to stay on in production. The profile is reset
+ * whenever the rules are reloaded.
+ */
+public class RoutingRulesProfiler {
+  public static final int DEFAULT_SAMPLE_RATE = 100;
+
+  private final int sampleRate;
+  private final Map<String, RuleStats> stats = new ConcurrentHashMap<>();
+  private final ThreadLocal<long[]> evaluationStart = ThreadLocal.withInitial(() -> new long[1]);
+  private volatile long sinceMillis = System.currentTimeMillis();
+
+  public RoutingRulesProfiler() {
+    this(DEFAULT_SAMPLE_RATE);
+  }
+
+  public RoutingRulesProfiler(int sampleRate) {
+    this.sampleRate = Math.max(sampleRate, 1);
+  }
+
+  /**
+   * Whether the next evaluation on this thread should be timed.
+   */
+  boolean sample() {
+    return sampleRate == 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0;
+  }
+
+  /**
+   * Records one evaluation of {@code rule}. {@code nanos} is negative if it was not timed.
+   */
+  void record(String rule, boolean matched, long nanos) {
+    RuleStats ruleStats = stats.get(rule);
+    if (ruleStats == null) {
+      ruleStats = stats.computeIfAbsent(rule, name -> new RuleStats());
+    }
+    ruleStats.evaluations.increment();
+    if (matched) {
+      ruleStats.matches.increment();
+    }
+    if (nanos >= 0) {
+      ruleStats.timings.recordValue(nanos);
+    }
+  }
+
+  /**
+   * A listener for the easy-rules engine that records every evaluation.
+   */
+  RuleListener listener() {
+    return new RuleListener() {
+      @Override
+      public boolean beforeEvaluate(Rule rule, Facts facts) {
+        evaluationStart.get()[0] = sample() ? System.nanoTime() : -1;
+        return true;
+      }
+
+      @Override
+      public void afterEvaluate(Rule rule, Facts facts, boolean evaluationResult) {
+        long start = evaluationStart.get()[0];
+        record(rule.getName(), evaluationResult, start < 0 ? -1 : System.nanoTime() - start);
+      }
+    };
+  }
+
+  void reset() {
+    stats.clear();
+    sinceMillis = System.currentTimeMillis();
+  }
+
+  public long getSinceMillis() {
+    return sinceMillis;
+  }
+
+  /**
+   * The profile of every rule evaluated since the last reset, most expensive first.
+   */
+  public List<RuleProfile> getProfile() {
+    List<RuleProfile> profile = new ArrayList<>();
+    stats.forEach((name, ruleStats) -> profile.add(ruleStats.toProfile(name)));
+    profile.sort(Comparator.comparingDouble(RuleProfile::getEstimatedTotalMillis).reversed()
+        .thenComparing(RuleProfile::getName));
+    return profile;
+  }
+
+  private static class RuleStats {
+    private final LongAdder evaluations = new LongAdder();
+    private final LongAdder matches = new LongAdder();
+    private final ConcurrentHistogram timings = new ConcurrentHistogram(2);
+
+    RuleProfile toProfile(String name) {
+      Histogram histogram = timings.copy();
+      RuleProfile profile = new RuleProfile();
+      profile.setName(name);
+      profile.setEvaluations(evaluations.sum());
+      profile.setMatches(matches.sum());
+      profile.setTimedEvaluations(histogram.getTotalCount());
+      if (histogram.getTotalCount() > 0) {
+        profile.setMeanMicros(histogram.getMean() / 1000.0);
+        profile.setP50Micros(histogram.getValueAtPercentile(50) / 1000.0);
+        profile.setP99Micros(histogram.getValueAtPercentile(99) / 1000.0);
+        profile.setMaxMicros(histogram.getMaxValue() / 1000.0);
+        profile.setEstimatedTotalMillis(histogram.getMean() * profile.getEvaluations()
+            / TimeUnit.MILLISECONDS.toNanos(1));
+      }
+      return profile;
+    }
+  }
+
+  @Data
+  public static class RuleProfile {
+    private String name;
+    private long evaluations;
+    private long matches;
+    private long timedEvaluations;
+    private double meanMicros;
+    private double p50Micros;
+    private double p99Micros;
+    private double maxMicros;
+    private double estimatedTotalMillis;
+  }
+}
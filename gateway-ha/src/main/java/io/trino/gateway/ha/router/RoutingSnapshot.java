@@ -0,0 +1,153 @@
+package io.trino.gateway.ha.router;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * Reads and writes the routing state of a {@link RoutingManager} as a memory-mapped file: the
+ * query id index in its encoded form and the cached UI cookie backends.
+ *
+ * <p>The layout is a header with a magic number, the format version and the creation time, the
+ * backend names, the cookies, and the number of query id entries followed by the entries as
+ * fixed-size records. A snapshot is written to a temporary file that then replaces the previous
+ * snapshot, so a reader never sees a partial file.
+ */
+final class RoutingSnapshot {
+  private static final int MAGIC = 0x54475149;
+  private static final int VERSION = 1;
+  private static final int ENTRY_BYTES = 2 * Long.BYTES + Integer.BYTES;
+
+  private RoutingSnapshot() {
+  }
+
+  /**
+   * Writes the snapshot and returns the number of query id entries written.
+   */
+  static long write(Path path, QueryIdIndex index, Map<String, String> uiCookies)
+      throws IOException {
+    String[] backends = index.backends();
+    ByteArrayOutputStream header = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(header);
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeLong(System.currentTimeMillis());
+    out.writeInt(backends.length);
+    for (String backend : backends) {
+      writeString(out, backend);
+    }
+    ByteArrayOutputStream cookies = new ByteArrayOutputStream();
+    DataOutputStream cookiesOut = new DataOutputStream(cookies);
+    int cookieCount = 0;
+    for (Map.Entry<String, String> cookie : uiCookies.entrySet()) {
+      if (isWritable(cookie.getKey()) && isWritable(cookie.getValue())) {
+        writeString(cookiesOut, cookie.getKey());
+        writeString(cookiesOut, cookie.getValue());
+        cookieCount++;
+      }
+    }
+    out.writeInt(cookieCount);
+    cookies.writeTo(out);
+    out.flush();
+
+    Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+    long size = header.size() + Long.BYTES + (long) index.maxEntries() * ENTRY_BYTES;
+    if (size > Integer.MAX_VALUE) {
+      throw new IOException("Query id index too large for a routing snapshot: " + size);
+    }
+    long entries;
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+        StandardOpenOption.WRITE)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      buffer.put(header.toByteArray());
+      int countPosition = buffer.position();
+      buffer.putLong(0);
+      long[] count = new long[1];
+      index.forEach((high, low, backend) -> {
+        // skip backends added after the names were taken, and anything beyond the reserved
+        // space, which only entries added while writing can take
+        if (backend < backends.length && buffer.remaining() >= ENTRY_BYTES) {
+          buffer.putLong(high);
+          buffer.putLong(low);
+          buffer.putInt(backend);
+          count[0]++;
+        }
+      });
+      buffer.putLong(countPosition, count[0]);
+      buffer.force();
+      entries = count[0];
+    }
+    Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+    return entries;
+  }
+
+  /**
+   * Loads a snapshot into the given routing manager and returns the number of query id entries
+   * read. Throws {@link IOException} if the file is not a complete snapshot.
+   */
+  static long read(Path path, RoutingManager routingManager) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.getInt() != MAGIC) {
+        throw new IOException("Not a routing snapshot: " + path);
+      }
+      int version = buffer.getInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported routing snapshot version " + version + ": " + path);
+      }
+      buffer.getLong();
+      String[] backends = new String[buffer.getInt()];
+      for (int i = 0; i < backends.length; i++) {
+        backends[i] = readString(buffer);
+      }
+      int cookies = buffer.getInt();
+      for (int i = 0; i < cookies; i++) {
+        routingManager.restoreBackendForUiCookie(readString(buffer), readString(buffer));
+      }
+      long entries = buffer.getLong();
+      if (entries < 0 || entries * ENTRY_BYTES > buffer.remaining()) {
+        throw new IOException("Truncated routing snapshot: " + path);
+      }
+      QueryIdIndex index = routingManager.getQueryIdIndex();
+      for (long i = 0; i < entries; i++) {
+        long high = buffer.getLong();
+        long low = buffer.getLong();
+        int backend = buffer.getInt();
+        if (backend < 0 || backend >= backends.length) {
+          throw new IOException("Corrupt routing snapshot: " + path);
+        }
+        index.putEncoded(high, low, backends[backend]);
+      }
+      return entries;
+    } catch (RuntimeException e) {
+      throw new IOException("Corrupt routing snapshot: " + path, e);
+    }
+  }
+
+  private static boolean isWritable(String value) {
+    return value != null && value.getBytes(StandardCharsets.UTF_8).length <= Short.MAX_VALUE;
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeShort(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getShort()];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
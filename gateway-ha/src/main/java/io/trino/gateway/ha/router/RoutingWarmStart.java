@@ -0,0 +1,151 @@
+package io.trino.gateway.ha.router;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.base.Strings;
+import io.trino.gateway.ha.config.QueryIdRoutingConfiguration;
+import io.trino.gateway.ha.metrics.GatewayMetrics;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Restores the query id and UI cookie routes of a {@link RoutingManager} after a restart, so the
+ * polls of running queries do not all turn into database lookups and backend probes.
+ *
+ * <p>{@link #start()} loads the latest snapshot file in the background and then adds the
+ * queries of the recent query history with one range read. The proxy waits for this through
+ * {@link #awaitWarmUp()} before it accepts traffic. Once warmed up, the routes are written to the
+ * snapshot file periodically and on {@link #stop()}.
+ */
+@Slf4j
+public class RoutingWarmStart {
+  private final RoutingManager routingManager;
+  private final QueryHistoryManager queryHistoryManager;
+  private final QueryIdRoutingConfiguration configuration;
+  private final Path snapshotPath;
+  private final Timer snapshotTimer;
+  private final CompletableFuture<Void> warmUp = new CompletableFuture<>();
+  private final ScheduledExecutorService executor =
+      Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "routing-warm-start");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  public RoutingWarmStart(RoutingManager routingManager,
+                          QueryHistoryManager queryHistoryManager,
+                          QueryIdRoutingConfiguration configuration,
+                          MetricRegistry metricRegistry) {
+    this.routingManager = routingManager;
+    this.queryHistoryManager = queryHistoryManager;
+    this.configuration = configuration;
+    this.snapshotPath = Strings.isNullOrEmpty(configuration.getSnapshotPath())
+        ? null
+        : Path.of(configuration.getSnapshotPath());
+    this.snapshotTimer = GatewayMetrics.timer(metricRegistry, "routing", "snapshot");
+  }
+
+  public void start() {
+    executor.execute(() -> {
+      try {
+        warmUp();
+      } finally {
+        warmUp.complete(null);
+      }
+      if (snapshotPath != null) {
+        executor.scheduleWithFixedDelay(this::snapshot, configuration.getSnapshotPeriodMillis(),
+            configuration.getSnapshotPeriodMillis(), TimeUnit.MILLISECONDS);
+      }
+    });
+  }
+
+  /**
+   * Waits until the routes are restored, at most for the configured warm start timeout.
+   */
+  public void awaitWarmUp() {
+    try {
+      warmUp.get(configuration.getWarmStartTimeoutMillis(), TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      log.warn("Routing warm start did not finish within {} ms, continuing in the background",
+          configuration.getWarmStartTimeoutMillis());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (Exception e) {
+      log.error("Routing warm start failed", e);
+    }
+  }
+
+  public void stop() {
+    executor.shutdownNow();
+    try {
+      executor.awaitTermination(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (warmUp.isDone()) {
+      snapshot();
+    }
+  }
+
+  void warmUp() {
+    long start = System.currentTimeMillis();
+    long since = start - configuration.getWarmStartWindowMillis();
+    long restored = 0;
+    if (snapshotPath != null && Files.exists(snapshotPath)) {
+      try {
+        if (Files.getLastModifiedTime(snapshotPath).toMillis() < since) {
+          log.info("Ignoring routing snapshot {}, it is older than the warm start window",
+              snapshotPath);
+        } else {
+          restored = RoutingSnapshot.read(snapshotPath, routingManager);
+        }
+      } catch (Exception e) {
+        log.warn("Could not restore routes from snapshot {}", snapshotPath, e);
+      }
+    }
+
+    long fromHistory = 0;
+    if (configuration.getWarmStartWindowMillis() > 0 && configuration.getWarmStartLimit() > 0) {
+      try {
+        List<QueryHistoryManager.QueryDetail> queries =
+            queryHistoryManager.fetchQueriesSince(since, configuration.getWarmStartLimit());
+        // oldest first, so the most recent queries are the last to be evicted
+        for (int i = queries.size() - 1; i >= 0; i--) {
+          QueryHistoryManager.QueryDetail query = queries.get(i);
+          if (!Strings.isNullOrEmpty(query.getQueryId())
+              && !Strings.isNullOrEmpty(query.getBackendUrl())) {
+            routingManager.setBackendForQueryId(query.getQueryId(), query.getBackendUrl());
+            fromHistory++;
+          }
+        }
+      } catch (Exception e) {
+        log.warn("Could not restore routes from the query history", e);
+      }
+    }
+    log.info("Restored {} query routes from the snapshot and {} from the query history in {} ms",
+        restored, fromHistory, System.currentTimeMillis() - start);
+  }
+
+  void snapshot() {
+    if (snapshotPath == null) {
+      return;
+    }
+    Timer.Context context = snapshotTimer.time();
+    try {
+      long entries = RoutingSnapshot.write(snapshotPath, routingManager.getQueryIdIndex(),
+          routingManager.getUiCookieBackends());
+      log.debug("Wrote {} query routes to {}", entries, snapshotPath);
+    } catch (Exception e) {
+      log.warn("Could not write routing snapshot {}", snapshotPath, e);
+    } finally {
+      context.stop();
+    }
+  }
+}
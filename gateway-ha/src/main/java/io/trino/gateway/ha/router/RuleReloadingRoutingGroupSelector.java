@@ -1,90 +1,178 @@
 package io.trino.gateway.ha.router;
 
 import jakarta.servlet.http.HttpServletRequest;
-import java.io.FileReader;
+import java.io.StringReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
 import java.util.HashMap;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import lombok.extern.slf4j.Slf4j;
 import org.jeasy.rules.api.Facts;
 import org.jeasy.rules.api.Rules;
-import org.jeasy.rules.api.RulesEngine;
 import org.jeasy.rules.core.DefaultRulesEngine;
 import org.jeasy.rules.mvel.MVELRuleFactory;
 import org.jeasy.rules.support.reader.YamlRuleDefinitionReader;
 
+/**
+ * Evaluates the routing rules file for every request. A background task polls the file and
+ * swaps in a freshly parsed rule set when it changes, so the request path never touches the
+ * filesystem or takes a lock. If a changed file cannot be parsed, the previous rules stay in
+ * effect. The file is polled once {@link #start()} is called, until the selector is closed.
+ */
 @Slf4j
 public class RuleReloadingRoutingGroupSelector
     implements RoutingGroupSelector  {
+  static final long DEFAULT_REFRESH_PERIOD_MILLIS = 1000;
 
-  private RulesEngine rulesEngine = new DefaultRulesEngine();
-  private MVELRuleFactory ruleFactory = new MVELRuleFactory(new YamlRuleDefinitionReader());
-  private String rulesConfigPath;
-  private volatile Rules rules = new Rules();
-  private volatile long lastUpdatedTime;
-  private ReadWriteLock readWriteLock = new ReentrantReadWriteLock(true);
+  private static final ScheduledExecutorService RELOADER =
+      Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "routing-rules-reloader");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  private final DefaultRulesEngine rulesEngine = new DefaultRulesEngine();
+  private final MVELRuleFactory ruleFactory =
+      new MVELRuleFactory(new YamlRuleDefinitionReader());
+  private final String rulesConfigPath;
+  private final long refreshPeriodMillis;
+  private final RoutingRulesProfiler profiler;
+  private volatile RuleSet ruleSet = RuleSet.EMPTY;
+  private ScheduledFuture<?> reloadTask;
 
   RuleReloadingRoutingGroupSelector(String rulesConfigPath) {
+    this(rulesConfigPath, DEFAULT_REFRESH_PERIOD_MILLIS);
+  }
+
+  RuleReloadingRoutingGroupSelector(String rulesConfigPath, long refreshPeriodMillis) {
+    this(rulesConfigPath, refreshPeriodMillis, new RoutingRulesProfiler());
+  }
+
+  RuleReloadingRoutingGroupSelector(String rulesConfigPath, long refreshPeriodMillis,
+                                    RoutingRulesProfiler profiler) {
     this.rulesConfigPath = rulesConfigPath;
-    try {
-      rules = ruleFactory.createRules(
-              new FileReader(rulesConfigPath));
-      BasicFileAttributes attr = Files.readAttributes(Path.of(rulesConfigPath),
-              BasicFileAttributes.class);
-      lastUpdatedTime = attr.lastModifiedTime().toMillis();
+    this.refreshPeriodMillis = refreshPeriodMillis;
+    this.profiler = profiler;
+    rulesEngine.registerRuleListener(profiler.listener());
+  }
 
-    } catch (Exception e) {
-      log.error("Error opening rules configuration file, using "
-              + "routing group header as default.", e);
+  /**
+   * Loads the rules and starts polling the file for changes.
+   */
+  synchronized RuleReloadingRoutingGroupSelector start() {
+    if (reloadTask == null) {
+      reload();
+      reloadTask = RELOADER.scheduleWithFixedDelay(this::reload, refreshPeriodMillis,
+          refreshPeriodMillis, TimeUnit.MILLISECONDS);
+    }
+    return this;
+  }
+
+  @Override
+  public synchronized void close() {
+    if (reloadTask != null) {
+      reloadTask.cancel(false);
     }
   }
 
   @Override
   public String findRoutingGroup(HttpServletRequest request) {
+    RuleSet current = ruleSet;
+    if (current.rules == null) {
+      return request.getHeader(ROUTING_GROUP_HEADER);
+    }
     try {
-      BasicFileAttributes attr = Files.readAttributes(Path.of(rulesConfigPath),
-              BasicFileAttributes.class);
-      log.debug("File modified time: " + attr.lastModifiedTime() + ". lastUpdatedTime: " + lastUpdatedTime);
-      if (attr.lastModifiedTime().toMillis() > lastUpdatedTime) {
-        Lock writeLock = readWriteLock.writeLock();
-        writeLock.lock();
-        try {
-          if (attr.lastModifiedTime().toMillis() > lastUpdatedTime) {
-            // This check is performed again to prevent parsing the rules twice in case another
-            // thread finds the condition true and acquires the lock before this one
-            log.info(String.format("Updating rules to file modified at %s",
-                    attr.lastModifiedTime()));
-            rules = ruleFactory.createRules(
-                    new FileReader(rulesConfigPath));
-            lastUpdatedTime = attr.lastModifiedTime().toMillis();
-          }
-        } finally {
-          writeLock.unlock();
-        }
-      }
       Facts facts = new Facts();
       HashMap<String, String> result = new HashMap<String, String>();
       facts.put("request", request);
       facts.put("result", result);
-      Lock readLock = readWriteLock.readLock();
-      readLock.lock();
-      try {
-        rulesEngine.fire(rules, facts);
-      } finally {
-        readLock.unlock();
-      }
+      current.rules.fire(facts);
       return result.get("routingGroup");
-
     } catch (Exception e) {
-      log.error("Error opening rules configuration file, using "
+      log.error("Error evaluating routing rules, using "
               + "routing group header as default.", e);
-      // Invalid rules could lead to perf problems as every thread goes into the writeLock
-      // block until the issue is resolved
     }
     return request.getHeader(ROUTING_GROUP_HEADER);
   }
+
+  @Override
+  public long rulesVersion() {
+    return ruleSet.version;
+  }
+
+  /**
+   * Parses the rules file if its modification time or size changed since the last attempt.
+   * Runs on the reloader thread only, apart from the initial load.
+   */
+  void reload() {
+    RuleSet current = ruleSet;
+    long lastModified;
+    long size;
+    try {
+      BasicFileAttributes attr = Files.readAttributes(Path.of(rulesConfigPath),
+              BasicFileAttributes.class);
+      lastModified = attr.lastModifiedTime().toMillis();
+      size = attr.size();
+    } catch (Exception e) {
+      if (current == RuleSet.EMPTY) {
+        log.error("Error opening rules configuration file, using "
+                + "routing group header as default.", e);
+      }
+      return;
+    }
+    if (lastModified == current.lastModified && size == current.size) {
+      return;
+    }
+
+    try {
+      RoutingRules rules = parse(Files.readString(Path.of(rulesConfigPath)));
+      if (current != RuleSet.EMPTY) {
+        log.info(String.format("Updating rules to file modified at %s",
+            Instant.ofEpochMilli(lastModified)));
+      }
+      ruleSet = new RuleSet(rules, lastModified, size, current.version + 1);
+      profiler.reset();
+    } catch (Exception e) {
+      log.error("Error loading rules configuration file, keeping the previous rules.", e);
+      // remember the attempt so a broken file is not parsed again until it changes
+      ruleSet = new RuleSet(current.rules, lastModified, size, current.version);
+    }
+  }
+
+  RoutingRulesProfiler getProfiler() {
+    return profiler;
+  }
+
+  /**
+   * Parses the content of the rules file. Called on the reloader thread.
+   */
+  RoutingRules parse(String content) throws Exception {
+    Rules rules = ruleFactory.createRules(new StringReader(content));
+    return facts -> rulesEngine.fire(rules, facts);
+  }
+
+  /**
+   * Parsed rules together with the file state they were read from. Never modified after
+   * publication.
+   */
+  private static class RuleSet {
+    static final RuleSet EMPTY = new RuleSet(null, -1, -1, 0);
+
+    final RoutingRules rules;
+    final long lastModified;
+    final long size;
+    final long version;
+
+    RuleSet(RoutingRules rules, long lastModified, long size, long version) {
+      this.rules = rules;
+      this.lastModified = lastModified;
+      this.size = size;
+      this.version = version;
+    }
+  }
 }
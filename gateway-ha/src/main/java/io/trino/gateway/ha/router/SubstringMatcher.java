@@ -0,0 +1,93 @@
+package io.trino.gateway.ha.router;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Finds which of a fixed set of needles occur in a string in a single pass over the string,
+ * using an Aho-Corasick automaton. Every needle carries the ordinals of the rules that test
+ * for it, and matching sets those ordinals in a {@link BitSet}.
+ */
+final class SubstringMatcher {
+  private static final int[] NONE = new int[0];
+
+  private final Node root;
+
+  private SubstringMatcher(Node root) {
+    this.root = root;
+  }
+
+  void match(String text, BitSet ordinals) {
+    Node node = root;
+    set(node.outputs, ordinals);
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      while (node != root && !node.children.containsKey(c)) {
+        node = node.fail;
+      }
+      Node next = node.children.get(c);
+      node = next == null ? root : next;
+      set(node.outputs, ordinals);
+    }
+  }
+
+  private static void set(int[] outputs, BitSet ordinals) {
+    for (int ordinal : outputs) {
+      ordinals.set(ordinal);
+    }
+  }
+
+  static class Builder {
+    private final Node root = new Node();
+
+    Builder add(String needle, int ordinal) {
+      Node node = root;
+      for (int i = 0; i < needle.length(); i++) {
+        node = node.children.computeIfAbsent(needle.charAt(i), c -> new Node());
+      }
+      node.outputs = append(node.outputs, new int[] {ordinal});
+      return this;
+    }
+
+    SubstringMatcher build() {
+      root.fail = root;
+      Queue<Node> queue = new ArrayDeque<>();
+      queue.add(root);
+      while (!queue.isEmpty()) {
+        Node node = queue.remove();
+        for (Map.Entry<Character, Node> entry : node.children.entrySet()) {
+          Node child = entry.getValue();
+          Node fail = node.fail;
+          while (fail != root && !fail.children.containsKey(entry.getKey())) {
+            fail = fail.fail;
+          }
+          Node target = node == root ? root : fail.children.getOrDefault(entry.getKey(), root);
+          child.fail = target;
+          // a match ending here also ends every needle that is a suffix of it
+          child.outputs = append(child.outputs, target.outputs);
+          queue.add(child);
+        }
+      }
+      return new SubstringMatcher(root);
+    }
+
+    private static int[] append(int[] first, int[] second) {
+      if (second.length == 0) {
+        return first;
+      }
+      int[] result = Arrays.copyOf(first, first.length + second.length);
+      System.arraycopy(second, 0, result, first.length, second.length);
+      return result;
+    }
+  }
+
+  private static class Node {
+    private final Map<Character, Node> children = new HashMap<>();
+    private Node fail;
+    private int[] outputs = NONE;
+  }
+}
@@ -0,0 +1,152 @@
+package io.trino.gateway.ha.router;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Opens TCP connections with non-blocking connects on a single selector thread, so any number
+ * of probes can be in flight without a thread each. A probe succeeds once the connection is
+ * established and fails on a connect error or after its timeout.
+ */
+@Slf4j
+class TcpProber implements Closeable {
+  private static final long SELECT_TIMEOUT_MILLIS = 50;
+
+  private final Selector selector;
+  private final Queue<Probe> pending = new ConcurrentLinkedQueue<>();
+  private final Set<Probe> inFlight = new HashSet<>();
+  private final Thread thread;
+  private volatile boolean running = true;
+
+  TcpProber() throws IOException {
+    selector = Selector.open();
+    thread = new Thread(this::run, "tcp-prober");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Starts connecting to {@code host:port}. The future completes with whether the connection
+   * could be established within {@code timeoutMillis}, and never completes exceptionally.
+   */
+  CompletableFuture<Boolean> connect(String host, int port, long timeoutMillis) {
+    CompletableFuture<Boolean> result = new CompletableFuture<>();
+    SocketChannel channel = null;
+    try {
+      InetSocketAddress address = new InetSocketAddress(host, port);
+      if (address.isUnresolved()) {
+        result.complete(false);
+        return result;
+      }
+      channel = SocketChannel.open();
+      channel.configureBlocking(false);
+      if (channel.connect(address)) {
+        channel.close();
+        result.complete(true);
+        return result;
+      }
+      pending.add(new Probe(channel, result,
+          System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis)));
+      selector.wakeup();
+    } catch (IOException | RuntimeException e) {
+      log.debug("Could not connect to {}:{}", host, port, e);
+      closeQuietly(channel);
+      result.complete(false);
+    }
+    return result;
+  }
+
+  @Override
+  public void close() {
+    running = false;
+    selector.wakeup();
+  }
+
+  private void run() {
+    while (running) {
+      try {
+        selector.select(SELECT_TIMEOUT_MILLIS);
+      } catch (IOException e) {
+        log.warn("Selector failed", e);
+      }
+      Probe probe;
+      while ((probe = pending.poll()) != null) {
+        try {
+          probe.channel.register(selector, SelectionKey.OP_CONNECT, probe);
+          inFlight.add(probe);
+        } catch (ClosedChannelException e) {
+          probe.finish(false);
+        }
+      }
+
+      Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+      while (keys.hasNext()) {
+        SelectionKey key = keys.next();
+        keys.remove();
+        Probe connecting = (Probe) key.attachment();
+        boolean connected;
+        try {
+          connected = connecting.channel.finishConnect();
+        } catch (IOException e) {
+          connected = false;
+        }
+        inFlight.remove(connecting);
+        connecting.finish(connected);
+      }
+
+      long now = System.nanoTime();
+      inFlight.removeIf(timedOut -> {
+        if (now - timedOut.deadlineNanos < 0) {
+          return false;
+        }
+        timedOut.finish(false);
+        return true;
+      });
+    }
+    pending.forEach(probe -> probe.finish(false));
+    inFlight.forEach(probe -> probe.finish(false));
+    closeQuietly(selector);
+  }
+
+  private static void closeQuietly(Closeable closeable) {
+    if (closeable == null) {
+      return;
+    }
+    try {
+      closeable.close();
+    } catch (IOException e) {
+      log.debug("Error closing {}", closeable, e);
+    }
+  }
+
+  private static class Probe {
+    private final SocketChannel channel;
+    private final CompletableFuture<Boolean> result;
+    private final long deadlineNanos;
+
+    Probe(SocketChannel channel, CompletableFuture<Boolean> result, long deadlineNanos) {
+      this.channel = channel;
+      this.result = result;
+      this.deadlineNanos = deadlineNanos;
+    }
+
+    void finish(boolean connected) {
+      // closing the channel also cancels its selection key
+      closeQuietly(channel);
+      result.complete(connected);
+    }
+  }
+}
@@ -3,7 +3,11 @@ name VARCHAR(256) PRIMARY KEY,
 routing_group VARCHAR (256),
 backend_url VARCHAR (256),
 external_url VARCHAR (256),
-active BOOLEAN
+active BOOLEAN,
+max_connections INT,
+idle_timeout_millis BIGINT,
+max_requests_queued INT,
+prewarm_connections INT
 );
 
 CREATE TABLE IF NOT EXISTS query_history (
@@ -82,3 +86,17 @@ CREATE TABLE IF NOT EXISTS cookie_backend_lookup (
     backend VARCHAR(256),
     created_timestamp BIGINT
 );
+
+CREATE TABLE IF NOT EXISTS query_routing (
+    query_id VARCHAR(256) NOT NULL PRIMARY KEY,
+    backend_url VARCHAR(256),
+    version BIGINT NOT NULL,
+    created BIGINT NOT NULL
+);
+CREATE INDEX query_routing_version_idx ON query_routing(version);
+CREATE INDEX query_routing_created_idx ON query_routing(created);
+
+CREATE TABLE IF NOT EXISTS query_routing_version (
+    id INT NOT NULL PRIMARY KEY,
+    version BIGINT NOT NULL
+);
@@ -0,0 +1,83 @@
+package io.trino.gateway.ha.handler;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.trino.gateway.ha.config.DirectResultsConfiguration.Mode;
+import io.trino.gateway.ha.config.ProxyBackendConfiguration;
+import io.trino.gateway.ha.router.GatewayBackendManager;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class TestDirectResults {
+  @Test
+  public void testExternalUrls() {
+    ProxyBackendConfiguration etl = backend("http://trino1:8080", "etl");
+    etl.setExternalUrl("https://trino1.example.com/");
+    ProxyBackendConfiguration adhoc = backend("http://trino2:8080", "adhoc");
+    GatewayBackendManager backendManager = mock(GatewayBackendManager.class);
+    when(backendManager.getAllBackends()).thenReturn(List.of(etl, adhoc));
+
+    DirectResults directResults = new DirectResults(
+        Map.of("etl", Mode.REWRITE, "adhoc", Mode.REDIRECT), backendManager);
+    assertEquals("https://trino1.example.com", directResults.getRewriteUrl("http://trino1:8080"));
+    assertNull(directResults.getRedirectUrl("http://trino1:8080"));
+    assertEquals("http://trino2:8080", directResults.getRedirectUrl("http://trino2:8080"));
+    assertNull(directResults.getRewriteUrl("http://trino2:8080"));
+    assertNull(directResults.getRedirectUrl(null));
+
+    // moved to a routing group that fetches the results through the gateway
+    adhoc.setRoutingGroup("other");
+    directResults.update(adhoc);
+    assertNull(directResults.getRedirectUrl("http://trino2:8080"));
+  }
+
+  @Test
+  public void testRewriteNextUri() {
+    String results = "{\"id\":\"x\",\"infoUri\":\"http://gateway/ui/query.html?x\","
+        + "\"nextUri\":\"http://gateway:8080/v1/statement/queued/x/y/1\","
+        + "\"data\":[[\"\\\"nextUri\\\":\\\"http://elsewhere/\"]]}";
+    String expected = results.replace("http://gateway:8080/v1", "https://trino1/v1");
+    byte[] bytes = results.getBytes(UTF_8);
+
+    // the content can be split anywhere
+    for (int split = 0; split <= bytes.length; split++) {
+      NextUriRewriter rewriter = new NextUriRewriter("https://trino1");
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      out.writeBytes(rewriter.rewrite(bytes, 0, split));
+      out.writeBytes(rewriter.rewrite(bytes, split, bytes.length - split));
+      assertEquals(expected, out.toString(UTF_8));
+    }
+
+    String relative = "{\"nextUri\":\"queued\",\"data\":[]}";
+    assertEquals(relative, new String(new NextUriRewriter("https://trino1")
+        .rewrite(relative.getBytes(UTF_8), 0, relative.length()), UTF_8));
+  }
+
+  @Test
+  public void testRewriteSkipsQueryData() {
+    // a query that is done has no nextUri, while a map column may hold one
+    String results = "{\"id\":\"x\",\"infoUri\":\"http://gateway/ui/query.html?x\","
+        + "\"columns\":[{\"name\":\"m\"}],"
+        + "\"data\":[[{\"nextUri\":\"http://gateway:8080/v1\"}]],\"stats\":{}}";
+    NextUriRewriter rewriter = new NextUriRewriter("https://trino1");
+    byte[] bytes = results.getBytes(UTF_8);
+    assertEquals(results, new String(rewriter.rewrite(bytes, 0, bytes.length), UTF_8));
+    assertTrue(rewriter.isDone());
+  }
+
+  private static ProxyBackendConfiguration backend(String proxyTo, String routingGroup) {
+    ProxyBackendConfiguration backend = new ProxyBackendConfiguration();
+    backend.setProxyTo(proxyTo);
+    backend.setRoutingGroup(routingGroup);
+    return backend;
+  }
+}
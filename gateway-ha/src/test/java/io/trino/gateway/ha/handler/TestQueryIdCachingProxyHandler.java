@@ -6,8 +6,11 @@ import static org.junit.jupiter.api.Assertions.assertNull;
 import com.codahale.metrics.Meter;
 import com.google.common.collect.ImmutableList;
 import io.trino.gateway.ha.config.DataStoreConfiguration;
+import io.trino.gateway.ha.config.DirectResultsConfiguration.Mode;
+import io.trino.gateway.ha.config.ProxyBackendConfiguration;
 import io.trino.gateway.ha.persistence.JdbcConnectionManager;
 import io.trino.gateway.ha.router.CookieCacheManager;
+import io.trino.gateway.ha.router.GatewayBackendManager;
 import io.trino.gateway.ha.router.HaGatewayManager;
 import io.trino.gateway.ha.router.HaQueryHistoryManager;
 import io.trino.gateway.ha.router.HaRoutingManager;
@@ -19,6 +22,8 @@ import jakarta.servlet.http.HttpServletRequest;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 
 import jakarta.ws.rs.HttpMethod;
 import org.eclipse.jetty.client.HttpClient;
@@ -121,6 +126,38 @@ public class TestQueryIdCachingProxyHandler {
             backendServer, backendPort), proxyRequest.getHeaders().get("Host"));
   }
 
+  @Test
+  public void testDirectResultsRedirect() {
+    ProxyBackendConfiguration backend = new ProxyBackendConfiguration();
+    backend.setProxyTo("http://trino1:8080");
+    backend.setRoutingGroup("adhoc");
+    GatewayBackendManager backendManager = Mockito.mock(GatewayBackendManager.class);
+    Mockito.when(backendManager.getAllBackends()).thenReturn(List.of(backend));
+    queryIdCachingProxyHandler.setDirectResults(
+        new DirectResults(Map.of("adhoc", Mode.REDIRECT), backendManager));
+    try {
+      HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+      Mockito.when(request.getRequestURI())
+          .thenReturn("/v1/statement/executing/20200416_160256_03078_6b4yt/y/1");
+      for (String method : List.of(HttpMethod.GET, HttpMethod.HEAD)) {
+        Mockito.when(request.getMethod()).thenReturn(method);
+        assertEquals("http://trino1:8080",
+            queryIdCachingProxyHandler.getDirectResultsRedirectUrl(request, "http://trino1:8080"));
+      }
+      // a cancellation is proxied to the backend instead
+      Mockito.when(request.getMethod()).thenReturn(HttpMethod.DELETE);
+      assertNull(
+          queryIdCachingProxyHandler.getDirectResultsRedirectUrl(request, "http://trino1:8080"));
+
+      Mockito.when(request.getRequestURI()).thenReturn("/v1/statement");
+      Mockito.when(request.getMethod()).thenReturn(HttpMethod.POST);
+      assertNull(
+          queryIdCachingProxyHandler.getDirectResultsRedirectUrl(request, "http://trino1:8080"));
+    } finally {
+      queryIdCachingProxyHandler.setDirectResults(null);
+    }
+  }
+
   @Test
   public void testUserFromRequest() throws IOException {
 
@@ -0,0 +1,142 @@
+package io.trino.gateway.ha.handler;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class TestRoutingTokens {
+  private static final String BACKEND = "http://trino1:8080";
+
+  @Test
+  public void testSignAndVerify() {
+    RoutingTokens tokens = new RoutingTokens("secret");
+    String token = tokens.sign(BACKEND);
+    assertEquals(BACKEND, tokens.verify(token));
+    // another instance with the same secret accepts the token
+    assertEquals(BACKEND, new RoutingTokens("secret").verify(token));
+
+    assertNull(new RoutingTokens("other secret").verify(token));
+    assertNull(tokens.verify(tokens.sign("http://trino2:8080").split("\\.")[0]
+        + token.substring(token.indexOf('.'))));
+    assertNull(tokens.verify(token.substring(0, token.length() - 1)));
+    assertNull(tokens.verify("not a token"));
+    assertNull(tokens.verify(null));
+  }
+
+  @Test
+  public void testRotateSecret() {
+    String oldToken = new RoutingTokens("old secret").sign(BACKEND);
+    RoutingTokens tokens = new RoutingTokens("new secret", List.of("old secret"));
+    assertEquals(BACKEND, tokens.verify(oldToken));
+    assertFalse(tokens.isCurrent(oldToken, BACKEND));
+    assertTrue(tokens.isCurrent(tokens.sign(BACKEND), BACKEND));
+    assertEquals(BACKEND, new RoutingTokens("new secret").verify(tokens.sign(BACKEND)));
+    assertNull(new RoutingTokens("new secret").verify(oldToken));
+  }
+
+  @Test
+  public void testRoutingCookie() {
+    RoutingCookie routingCookie = new RoutingCookie(
+        new RoutingTokens("new secret", List.of("old secret")), "backend", 3600);
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.isSecure()).thenReturn(true);
+    assertNull(routingCookie.find(request));
+
+    Cookie cookie = routingCookie.create(request, BACKEND);
+    assertTrue(cookie.isHttpOnly());
+    assertTrue(cookie.getSecure());
+    assertEquals(3600, cookie.getMaxAge());
+    when(request.getCookies()).thenReturn(new Cookie[] {new Cookie("other", "x"), cookie});
+    assertEquals(BACKEND, routingCookie.getBackend(routingCookie.find(request)));
+    assertTrue(routingCookie.isCurrent(cookie, BACKEND));
+
+    Cookie oldCookie = new Cookie("backend", new RoutingTokens("old secret").sign(BACKEND));
+    assertEquals(BACKEND, routingCookie.getBackend(oldCookie));
+    assertFalse(routingCookie.isCurrent(oldCookie, BACKEND));
+    assertNull(routingCookie.getBackend(new Cookie("backend", "forged")));
+    assertEquals(0, routingCookie.expire().getMaxAge());
+
+    // TLS ends in front of the gateway
+    HttpServletRequest forwarded = mock(HttpServletRequest.class);
+    when(forwarded.getHeader("X-Forwarded-Proto")).thenReturn("https");
+    assertTrue(routingCookie.create(forwarded, BACKEND).getSecure());
+    assertFalse(routingCookie.create(mock(HttpServletRequest.class), BACKEND).getSecure());
+    assertFalse(new RoutingCookie(new RoutingTokens("secret"), "backend", -1, false)
+        .create(forwarded, BACKEND).getSecure());
+  }
+
+  @Test
+  public void testQueryString() {
+    String parameter = RoutingTokens.PARAMETER + "=abc.def";
+    assertEquals("abc.def", RoutingTokens.fromQueryString(parameter));
+    assertEquals("abc.def", RoutingTokens.fromQueryString("a=1&" + parameter));
+    assertNull(RoutingTokens.fromQueryString("a=1"));
+    assertNull(RoutingTokens.fromQueryString(null));
+
+    assertNull(RoutingTokens.removeFromQueryString(parameter));
+    assertEquals("a=1&b=2", RoutingTokens.removeFromQueryString("a=1&" + parameter + "&b=2"));
+    assertEquals("a=1", RoutingTokens.removeFromQueryString("a=1"));
+    assertNull(RoutingTokens.removeFromQueryString(null));
+  }
+
+  @Test
+  public void testRewriteQueryResults() {
+    String results = "{\"id\":\"20231019_123456_00001_abcde\","
+        + "\"infoUri\":\"http://gateway/ui/query.html?20231019_123456_00001_abcde\","
+        + "\"partialCancelUri\":\"http://gateway/v1/statement/executing/partialCancel/x/0/1\","
+        + "\"nextUri\":\"http://gateway/v1/statement/executing/x/y/1\","
+        + "\"data\":[[\"\\\"nextUri\\\":\\\"http://elsewhere\"]]}";
+    String expected = "{\"id\":\"20231019_123456_00001_abcde\","
+        + "\"infoUri\":\"http://gateway/ui/query.html?20231019_123456_00001_abcde"
+        + "&routingToken=t\","
+        + "\"partialCancelUri\":\"http://gateway/v1/statement/executing/partialCancel/x/0/1"
+        + "?routingToken=t\","
+        + "\"nextUri\":\"http://gateway/v1/statement/executing/x/y/1?routingToken=t\","
+        + "\"data\":[[\"\\\"nextUri\\\":\\\"http://elsewhere\"]]}";
+    byte[] bytes = results.getBytes(UTF_8);
+
+    // the content can be split anywhere
+    for (int split = 0; split <= bytes.length; split++) {
+      RoutingTokenRewriter rewriter = new RoutingTokenRewriter("t");
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      out.writeBytes(rewriter.rewrite(bytes, 0, split));
+      out.writeBytes(rewriter.rewrite(bytes, split, bytes.length - split));
+      assertEquals(expected, out.toString(UTF_8));
+    }
+  }
+
+  @Test
+  public void testRewriteFinalResults() {
+    String results = "{\"id\":\"x\",\"infoUri\":\"http://gateway/ui/query.html?x\","
+        + "\"nextUri\":null,\"data\":[[\"\\\"nextUri\\\":\\\"x\"]],\"stats\":{}}";
+    RoutingTokenRewriter rewriter = new RoutingTokenRewriter("t");
+    byte[] bytes = results.getBytes(UTF_8);
+    assertEquals(results.replace("?x\"", "?x&routingToken=t\""),
+        new String(rewriter.rewrite(bytes, 0, bytes.length), UTF_8));
+  }
+
+  @Test
+  public void testRewriteSkipsQueryData() {
+    // a map column holds JSON objects, whose keys are not escaped
+    String results = "{\"id\":\"x\",\"infoUri\":\"http://gateway/ui/query.html?x\","
+        + "\"columns\":[{\"name\":\"m\"}],"
+        + "\"data\":[[{\"infoUri\":\"a\",\"nextUri\":\"b\"}]],\"stats\":{}}";
+    RoutingTokenRewriter rewriter = new RoutingTokenRewriter("t");
+    byte[] bytes = results.getBytes(UTF_8);
+    assertEquals(results.replace("?x\"", "?x&routingToken=t\""),
+        new String(rewriter.rewrite(bytes, 0, bytes.length), UTF_8));
+    assertTrue(rewriter.isDone());
+  }
+}
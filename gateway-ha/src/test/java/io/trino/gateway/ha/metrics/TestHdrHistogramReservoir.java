@@ -0,0 +1,58 @@
+package io.trino.gateway.ha.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+public class TestHdrHistogramReservoir {
+
+  @Test
+  public void testSnapshotPercentiles() {
+    HdrHistogramReservoir reservoir = new HdrHistogramReservoir();
+    for (int i = 1; i <= 1000; i++) {
+      reservoir.update(i);
+    }
+    Snapshot snapshot = reservoir.getSnapshot();
+    assertEquals(1000, snapshot.size());
+    assertEquals(1, snapshot.getMin());
+    assertTrue(Math.abs(snapshot.getMedian() - 500) <= 5);
+    assertTrue(Math.abs(snapshot.get99thPercentile() - 990) <= 10);
+    assertTrue(Math.abs(snapshot.getMax() - 1000) <= 10);
+    assertEquals(1000, snapshot.getValues().length);
+  }
+
+  @Test
+  public void testSnapshotsAreNotConsumed() {
+    HdrHistogramReservoir reservoir = new HdrHistogramReservoir();
+    reservoir.update(42);
+    assertEquals(1, reservoir.getSnapshot().size());
+    // a second reader still sees the value recorded earlier
+    assertEquals(1, reservoir.getSnapshot().size());
+  }
+
+  @Test
+  public void testOldWindowsExpire() throws Exception {
+    HdrHistogramReservoir reservoir = new HdrHistogramReservoir(10);
+    reservoir.update(42);
+    assertEquals(1, reservoir.getSnapshot().size());
+    TimeUnit.MILLISECONDS.sleep(20);
+    assertEquals(1, reservoir.getSnapshot().size());
+    TimeUnit.MILLISECONDS.sleep(20);
+    assertEquals(0, reservoir.getSnapshot().size());
+  }
+
+  @Test
+  public void testRegisteredTimer() {
+    MetricRegistry registry = new MetricRegistry();
+    Timer timer = GatewayMetrics.timer(registry, "proxy.latency", "trino-1_8080", "query");
+    timer.update(5, TimeUnit.MILLISECONDS);
+    assertEquals(timer, registry.getTimers().get("proxy.latency.trino-1_8080.query"));
+    assertEquals(1, timer.getSnapshot().size());
+    assertEquals("trino-1_8080", GatewayMetrics.backendName("http://trino-1:8080"));
+  }
+}
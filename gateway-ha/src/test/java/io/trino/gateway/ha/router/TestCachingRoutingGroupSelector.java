@@ -0,0 +1,80 @@
+package io.trino.gateway.ha.router;
+
+import static io.trino.gateway.ha.router.TestRoutingGroupSelector.TRINO_CLIENT_TAGS_HEADER;
+import static io.trino.gateway.ha.router.TestRoutingGroupSelector.TRINO_SOURCE_HEADER;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.codahale.metrics.MetricRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class TestCachingRoutingGroupSelector {
+  @Test
+  public void testCachesByHeaders() {
+    CountingSelector delegate = new CountingSelector();
+    MetricRegistry metricRegistry = new MetricRegistry();
+    RoutingGroupSelector selector = new CachingRoutingGroupSelector(delegate,
+        List.of(TRINO_SOURCE_HEADER, TRINO_CLIENT_TAGS_HEADER), 100, metricRegistry);
+
+    HttpServletRequest airflow = request("airflow", null);
+    assertEquals("airflow", selector.findRoutingGroup(airflow));
+    assertEquals("airflow", selector.findRoutingGroup(request("airflow", null)));
+    assertEquals(1, delegate.calls.get());
+
+    // a different value in any of the headers is a different decision
+    assertEquals("airflow", selector.findRoutingGroup(request("airflow", "label=special")));
+    assertNull(selector.findRoutingGroup(request(null, null)));
+    assertNull(selector.findRoutingGroup(request(null, null)));
+    assertEquals(3, delegate.calls.get());
+
+    assertEquals(2, metricRegistry.meter("routing.decisionCache.hits").getCount());
+    assertEquals(3, metricRegistry.meter("routing.decisionCache.misses").getCount());
+  }
+
+  @Test
+  public void testRulesVersionChangeInvalidates() {
+    CountingSelector delegate = new CountingSelector();
+    RoutingGroupSelector selector = new CachingRoutingGroupSelector(delegate,
+        List.of(TRINO_SOURCE_HEADER), 100, new MetricRegistry());
+
+    selector.findRoutingGroup(request("airflow", null));
+    selector.findRoutingGroup(request("airflow", null));
+    assertEquals(1, delegate.calls.get());
+
+    delegate.version++;
+    selector.findRoutingGroup(request("airflow", null));
+    selector.findRoutingGroup(request("airflow", null));
+    assertEquals(2, delegate.calls.get());
+  }
+
+  private static HttpServletRequest request(String source, String clientTags) {
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getHeader(TRINO_SOURCE_HEADER)).thenReturn(source);
+    when(request.getHeader(TRINO_CLIENT_TAGS_HEADER)).thenReturn(clientTags);
+    return request;
+  }
+
+  private static class CountingSelector implements RoutingGroupSelector {
+    private final AtomicInteger calls = new AtomicInteger();
+    private volatile long version;
+
+    @Override
+    public String findRoutingGroup(HttpServletRequest request) {
+      calls.incrementAndGet();
+      return request.getHeader(TRINO_SOURCE_HEADER);
+    }
+
+    @Override
+    public long rulesVersion() {
+      return version;
+    }
+  }
+}
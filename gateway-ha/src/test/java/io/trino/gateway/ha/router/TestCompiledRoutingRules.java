@@ -0,0 +1,140 @@
+package io.trino.gateway.ha.router;
+
+import static io.trino.gateway.ha.router.TestRoutingGroupSelector.TRINO_CLIENT_TAGS_HEADER;
+import static io.trino.gateway.ha.router.TestRoutingGroupSelector.TRINO_SOURCE_HEADER;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+import org.jeasy.rules.api.Facts;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class TestCompiledRoutingRules {
+  static Stream<String> provideRoutingRuleConfigFiles() {
+    return TestRoutingGroupSelector.provideRoutingRuleConfigFiles();
+  }
+
+  @ParameterizedTest
+  @MethodSource("provideRoutingRuleConfigFiles")
+  void testCompiledRulesMatchRuleFiles(String rulesConfigPath) {
+    RoutingGroupSelector routingGroupSelector =
+        RoutingGroupSelector.byCompiledRoutingRules(rulesConfigPath, 1000);
+
+    HttpServletRequest mockRequest = mock(HttpServletRequest.class);
+    assertNull(routingGroupSelector.findRoutingGroup(mockRequest));
+
+    when(mockRequest.getHeader(TRINO_SOURCE_HEADER)).thenReturn("airflow");
+    assertEquals("etl", routingGroupSelector.findRoutingGroup(mockRequest));
+
+    when(mockRequest.getHeader(TRINO_CLIENT_TAGS_HEADER)).thenReturn(
+        "email=test@example.com,label=special");
+    assertEquals("etl-special", routingGroupSelector.findRoutingGroup(mockRequest));
+    routingGroupSelector.close();
+  }
+
+  @Test
+  public void testPriorityAcrossIndexedAndUnindexedRules() throws Exception {
+    String rules = rule("indexed", 2, "request.getHeader(\\\"X-Trino-Source\\\") == \\\"etl\\\"",
+        "etl")
+        + rule("unindexed", 1, "request.getHeader(\\\"X-Trino-Source\\\").startsWith(\\\"e\\\")",
+        "starts-with-e")
+        + rule("contains", 3, "request.getHeader(\\\"X-Trino-Client-Tags\\\") contains \\\"a=b\\\"",
+        "tagged");
+    RoutingRules compiled = CompiledRoutingRules.compile(rules);
+
+    assertEquals("etl", fire(compiled, "etl", null));
+    assertEquals("starts-with-e", fire(compiled, "elt", null));
+    // contains is a substring match, like in MVEL
+    assertEquals("tagged", fire(compiled, "etl", "xa=by"));
+    assertNull(fire(compiled, "cli", "a=c"));
+  }
+
+  @Test
+  public void testConjuncts() {
+    assertEquals(List.of("a == \"x && y\"", "b"),
+        CompiledRoutingRules.conjuncts("a == \"x && y\" && b"));
+    assertEquals(List.of("(a || b)", "c"), CompiledRoutingRules.conjuncts("(a || b) && c"));
+    assertEquals(List.of("a != b", "c >= 1"), CompiledRoutingRules.conjuncts("a != b && c >= 1"));
+    assertNull(CompiledRoutingRules.conjuncts("a && b || c"));
+    assertNull(CompiledRoutingRules.conjuncts("a && b ? false : true"));
+    assertNull(CompiledRoutingRules.conjuncts("x = a; x && b"));
+    assertNull(CompiledRoutingRules.conjuncts("a or b"));
+  }
+
+  @Test
+  public void testSameResultsAsRulesEngine() throws Exception {
+    String[] sources = {"airflow", "dbt", "superset", "trino-cli", "source1", "source7"};
+    String[] tags = {null, "", "team=team2", "label=special", "team=team5,label=special"};
+
+    StringBuilder rules = new StringBuilder();
+    for (int i = 0; i < 60; i++) {
+      String source = "\\\"" + sources[i % sources.length] + "\\\"";
+      String tag = "\\\"" + (i % 2 == 0 ? "label=special" : "team=team" + (i % 7)) + "\\\"";
+      String condition;
+      switch (i % 5) {
+        case 0:
+          condition = "request.getHeader(\\\"X-Trino-Source\\\") == " + source;
+          break;
+        case 1:
+          condition = "request.getHeader(\\\"X-Trino-Client-Tags\\\") contains " + tag;
+          break;
+        case 2:
+          condition = "request.getHeader(\\\"X-Trino-Source\\\") == " + source
+              + " && request.getHeader(\\\"X-Trino-Client-Tags\\\") contains " + tag;
+          break;
+        case 3:
+          condition = "request.getHeader(\\\"X-Trino-Source\\\") == " + source
+              + " || request.getHeader(\\\"X-Trino-Client-Tags\\\") == " + tag;
+          break;
+        default:
+          condition = "request.getHeader(\\\"X-Trino-Client-Tags\\\") == null";
+      }
+      // priorities collide on purpose, ties are broken by name
+      rules.append(rule("rule" + i, i % 4, condition, "group" + i));
+    }
+    RoutingRules compiled = CompiledRoutingRules.compile(rules.toString());
+    RoutingRules interpreted =
+        new RuleReloadingRoutingGroupSelector("unused", Long.MAX_VALUE).parse(rules.toString());
+
+    Random random = new Random(42);
+    for (int i = 0; i < 500; i++) {
+      String source = sources[random.nextInt(sources.length)];
+      String tag = tags[random.nextInt(tags.length)];
+      assertEquals(fire(interpreted, source, tag), fire(compiled, source, tag),
+          "source: " + source + ", tags: " + tag);
+    }
+  }
+
+  private static String fire(RoutingRules rules, String source, String clientTags) {
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getHeader(TRINO_SOURCE_HEADER)).thenReturn(source);
+    when(request.getHeader(TRINO_CLIENT_TAGS_HEADER)).thenReturn(clientTags);
+    Map<String, String> result = new HashMap<>();
+    Facts facts = new Facts();
+    facts.put("request", request);
+    facts.put("result", result);
+    rules.fire(facts);
+    return result.get("routingGroup");
+  }
+
+  private static String rule(String name, int priority, String condition, String routingGroup) {
+    return "---\n"
+        + "name: \"" + name + "\"\n"
+        + "priority: " + priority + "\n"
+        + "condition: \"" + condition + "\"\n"
+        + "actions:\n"
+        + "  - \"result.put(\\\"routingGroup\\\", \\\"" + routingGroup + "\\\")\"\n";
+  }
+}
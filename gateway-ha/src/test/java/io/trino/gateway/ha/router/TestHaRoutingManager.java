@@ -1,10 +1,27 @@
 package io.trino.gateway.ha.router;
 
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.anyRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.anyUrl;
+import static com.github.tomakehurst.wiremock.client.WireMock.head;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.codahale.metrics.MetricRegistry;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
 import io.trino.gateway.ha.HaGatewayTestUtils;
 import io.trino.gateway.ha.config.DataStoreConfiguration;
 import io.trino.gateway.ha.config.ProxyBackendConfiguration;
+import io.trino.gateway.ha.config.QueryIdRoutingConfiguration;
 import io.trino.gateway.ha.persistence.JdbcConnectionManager;
 import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.BeforeAll;
@@ -38,6 +55,57 @@ public class TestHaRoutingManager {
 
   }
 
+  @Test
+  public void testUnknownQueryIdIsRemembered() {
+    WireMockServer backend = new WireMockServer(WireMockConfiguration.options().dynamicPort());
+    backend.start();
+    try {
+      backend.stubFor(head(anyUrl()).willReturn(aResponse().withStatus(404)));
+      ProxyBackendConfiguration proxyBackend = new ProxyBackendConfiguration();
+      proxyBackend.setName("trino");
+      proxyBackend.setProxyTo(backend.baseUrl());
+      GatewayBackendManager backends = mock(GatewayBackendManager.class);
+      when(backends.getAllBackends()).thenReturn(List.of(proxyBackend));
+      QueryHistoryManager history = mock(QueryHistoryManager.class);
+      MetricRegistry metricRegistry = new MetricRegistry();
+      QueryIdRoutingConfiguration configuration = new QueryIdRoutingConfiguration();
+      configuration.setUnknownQueryIdTtlMillis(TimeUnit.MINUTES.toMillis(1));
+      RoutingManager routingManager = new HaRoutingManager(backends, history,
+          cookieCacheManager, metricRegistry, configuration);
+
+      String queryId = "20231019_000001_00000_abcde";
+      assertNull(routingManager.findBackendForQueryId(queryId));
+      assertNull(routingManager.findBackendForQueryId(queryId));
+      // the second lookup neither hits the database nor probes the backends
+      verify(history, times(1)).getBackendForQueryId(queryId);
+      backend.verify(1, anyRequestedFor(anyUrl()));
+      assertEquals(1, metricRegistry.meter("routing.unknownQueryIdCache.hits").getCount());
+
+      // a query routed through the gateway later is no longer unknown
+      routingManager.setBackendForQueryId(queryId, backend.baseUrl());
+      assertEquals(backend.baseUrl(), routingManager.findBackendForQueryId(queryId));
+    } finally {
+      backend.stop();
+    }
+  }
+
+  @Test
+  public void testStoreHitIsIndexed() {
+    QueryHistoryManager history = mock(QueryHistoryManager.class);
+    QueryRoutingStore store = mock(QueryRoutingStore.class);
+    String queryId = "20231019_000002_00000_abcde";
+    when(store.getBackend(queryId)).thenReturn("http://trino-2:8080");
+    RoutingManager routingManager = new HaRoutingManager(mock(GatewayBackendManager.class),
+        history, cookieCacheManager, new MetricRegistry(), new QueryIdRoutingConfiguration(),
+        store);
+
+    assertEquals("http://trino-2:8080", routingManager.findBackendForQueryId(queryId));
+    assertEquals("http://trino-2:8080", routingManager.findBackendForQueryId(queryId));
+    // the route recorded by another instance is read from the store once
+    verify(store, times(1)).getBackend(queryId);
+    verify(history, times(0)).getBackendForQueryId(queryId);
+  }
+
   @Test
   private void addMockBackends() {
     String groupName = "test_group";
@@ -0,0 +1,96 @@
+package io.trino.gateway.ha.router;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import com.codahale.metrics.MetricRegistry;
+import io.trino.gateway.ha.HaGatewayTestUtils;
+import io.trino.gateway.ha.config.DataStoreConfiguration;
+import io.trino.gateway.ha.config.QueryIdRoutingConfiguration;
+import io.trino.gateway.ha.persistence.JdbcConnectionManager;
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class TestJdbcQueryRoutingStore {
+  private JdbcQueryRoutingStore first;
+  private JdbcQueryRoutingStore second;
+
+  @BeforeAll
+  public void setUp() {
+    File baseDir = new File(System.getProperty("java.io.tmpdir"));
+    File tempH2DbDir = new File(baseDir, "h2db-" + System.currentTimeMillis());
+    tempH2DbDir.deleteOnExit();
+    HaGatewayTestUtils.seedRequiredData(
+        new HaGatewayTestUtils.TestConfig("", tempH2DbDir.getAbsolutePath()));
+    String jdbcUrl = "jdbc:h2:" + tempH2DbDir.getAbsolutePath();
+    DataStoreConfiguration db =
+        new DataStoreConfiguration(jdbcUrl, "sa", "sa", "org.h2.Driver", 4, 4);
+    JdbcConnectionManager connectionManager = new JdbcConnectionManager(db);
+    // failed writes are not retried and the routes of others are polled by the tests
+    QueryIdRoutingConfiguration configuration = new QueryIdRoutingConfiguration();
+    configuration.setStoreFlushIntervalMillis(3_600_000);
+    configuration.setStorePollIntervalMillis(3_600_000);
+    first = new JdbcQueryRoutingStore(connectionManager, configuration, new MetricRegistry());
+    second = new JdbcQueryRoutingStore(connectionManager, configuration, new MetricRegistry());
+  }
+
+  @AfterAll
+  public void tearDown() {
+    first.close();
+    second.close();
+  }
+
+  @Test
+  public void testRoutesAreShared() {
+    List<Map.Entry<String, String>> received = new CopyOnWriteArrayList<>();
+    second.addListener((queryId, backend) -> received.add(Map.entry(queryId, backend)));
+    second.poll();
+
+    first.putBackend("20231019_123456_00001_abcde", "http://trino1:8080");
+    first.putBackend("20231019_123456_00002_abcde", "http://trino2:8080");
+
+    // written before putBackend returns, one point read on a miss of the local index
+    assertEquals("http://trino1:8080", second.getBackend("20231019_123456_00001_abcde"));
+    assertNull(second.getBackend("20231019_123456_00003_abcde"));
+
+    // the version counter tells the other instance about new routes
+    second.poll();
+    assertEquals(2, received.size());
+    assertTrue(received.contains(Map.entry("20231019_123456_00002_abcde", "http://trino2:8080")));
+
+    // a route recorded again replaces the previous one
+    first.putBackend("20231019_123456_00001_abcde", "http://trino2:8080");
+    first.putBackend("20231019_123456_00001_abcde", "http://trino3:8080");
+    assertEquals("http://trino3:8080", second.getBackend("20231019_123456_00001_abcde"));
+  }
+
+  @Test
+  public void testRoutingManagerUsesStore() {
+    QueryIdRoutingConfiguration configuration = new QueryIdRoutingConfiguration();
+    configuration.setIndexCapacity(1000);
+    RoutingManager submitting = new RoutingManager(mock(GatewayBackendManager.class), null,
+        new MetricRegistry(), configuration, first) {};
+    RoutingManager polling = new RoutingManager(mock(GatewayBackendManager.class), null,
+        new MetricRegistry(), configuration, second) {};
+    second.poll();
+
+    submitting.recordBackendForQueryId("20231019_123456_00010_abcde", "http://trino1:8080");
+    submitting.recordBackendForQueryId("20231019_123456_00011_abcde", "http://trino2:8080");
+
+    assertEquals("http://trino1:8080",
+        polling.findBackendForQueryId("20231019_123456_00010_abcde"));
+    second.poll();
+    assertEquals("http://trino2:8080",
+        polling.getQueryIdIndex().get("20231019_123456_00011_abcde"));
+  }
+}
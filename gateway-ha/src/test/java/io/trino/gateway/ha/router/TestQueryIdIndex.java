@@ -0,0 +1,111 @@
+package io.trino.gateway.ha.router;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class TestQueryIdIndex {
+  @Test
+  public void testEncoding() {
+    String queryId = "20231019_123456_00042_abcde";
+    assertEquals(20231019123456L, QueryIdIndex.encodeTimestamp(queryId));
+    assertNotEquals(QueryIdIndex.encodeSequence(queryId),
+        QueryIdIndex.encodeSequence("20231019_123456_00042_abcdf"));
+    assertNotEquals(QueryIdIndex.encodeSequence(queryId),
+        QueryIdIndex.encodeSequence("20231019_123456_00043_abcde"));
+
+    assertEquals(-1, QueryIdIndex.encodeTimestamp(null));
+    assertEquals(-1, QueryIdIndex.encodeTimestamp("2023101_123456_00042_abcde"));
+    assertEquals(-1, QueryIdIndex.encodeTimestamp("20231019_123456_00042_abcdef"));
+    assertEquals(-1, QueryIdIndex.encodeTimestamp("20231019-123456_00042_abcde"));
+    assertEquals(-1, QueryIdIndex.encodeTimestamp("2023101x_123456_00042_abcde"));
+    assertEquals(-1, QueryIdIndex.encodeTimestamp("20231019_123456_0004x_abcde"));
+    assertEquals(-1, QueryIdIndex.encodeTimestamp("20231019_123456_00042_abc-e"));
+  }
+
+  @Test
+  public void testPutAndGet() {
+    QueryIdIndex index = new QueryIdIndex();
+    index.put("20231019_123456_00042_abcde", "http://trino1:8080");
+    index.put("20231019_123456_00043_abcde", "http://trino2:8080");
+    index.put("query_of_another_shape", "http://trino3:8080");
+
+    assertEquals("http://trino1:8080", index.get("20231019_123456_00042_abcde"));
+    assertEquals("http://trino2:8080", index.get("20231019_123456_00043_abcde"));
+    assertEquals("http://trino3:8080", index.get("query_of_another_shape"));
+    assertNull(index.get("20231019_123456_00044_abcde"));
+    assertEquals(3, index.size());
+    assertEquals(3, index.hitCount());
+    assertEquals(1, index.missCount());
+
+    index.put("20231019_123456_00042_abcde", "http://trino2:8080");
+    assertEquals("http://trino2:8080", index.get("20231019_123456_00042_abcde"));
+    assertEquals(3, index.size());
+  }
+
+  @Test
+  public void testOldEntriesAreDropped() {
+    for (boolean offHeap : new boolean[] {false, true}) {
+      QueryIdIndex index = new QueryIdIndex(16 * 100, offHeap);
+      index.put(queryId(0), "http://trino1:8080");
+      index.put(queryId(1), "http://trino1:8080");
+      for (int i = 2; i < 16 * 1000; i++) {
+        index.put(queryId(i), "http://trino2:8080");
+        // a query that is still polled is kept
+        assertEquals("http://trino1:8080", index.get(queryId(0)));
+      }
+      assertNull(index.get(queryId(1)));
+      assertTrue(index.size() <= 2 * 16 * 100);
+      assertEquals("http://trino2:8080", index.get(queryId(16 * 1000 - 1)));
+    }
+  }
+
+  @Test
+  public void testConcurrentAccess() throws Exception {
+    QueryIdIndex index = new QueryIdIndex(1_000_000, false);
+    int threads = 8;
+    int queriesPerThread = 20_000;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        int thread = t;
+        futures.add(executor.submit(() -> {
+          String backend = "http://trino" + thread + ":8080";
+          for (int i = 0; i < queriesPerThread; i++) {
+            String queryId = queryId(thread * queriesPerThread + i);
+            index.put(queryId, backend);
+            assertEquals(backend, index.get(queryId));
+            // entries of the other threads are either missing or correct
+            String other = queryId(((thread + 1) % threads) * queriesPerThread + i);
+            String otherBackend = index.get(other);
+            assertTrue(otherBackend == null
+                || otherBackend.equals("http://trino" + (thread + 1) % threads + ":8080"));
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    for (int i = 0; i < threads * queriesPerThread; i++) {
+      assertEquals("http://trino" + i / queriesPerThread + ":8080", index.get(queryId(i)));
+    }
+  }
+
+  private static String queryId(int i) {
+    return String.format("20231019_%06d_%05d_abcde", i / 100000, i % 100000);
+  }
+}
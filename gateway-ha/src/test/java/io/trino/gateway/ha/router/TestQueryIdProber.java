@@ -0,0 +1,134 @@
+package io.trino.gateway.ha.router;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.anyRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.head;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.codahale.metrics.MetricRegistry;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class TestQueryIdProber {
+  private static final String QUERY_ID = "20231019_000001_00000_abcde";
+  private static final String QUERY_PATH = "/v1/query/" + QUERY_ID;
+
+  private final WireMockServer missing =
+      new WireMockServer(WireMockConfiguration.options().dynamicPort());
+  private final WireMockServer owner =
+      new WireMockServer(WireMockConfiguration.options().dynamicPort());
+  private final WireMockServer slow =
+      new WireMockServer(WireMockConfiguration.options().dynamicPort());
+
+  @BeforeAll
+  public void setup() {
+    missing.start();
+    owner.start();
+    slow.start();
+  }
+
+  @AfterAll
+  public void cleanup() {
+    missing.stop();
+    owner.stop();
+    slow.stop();
+  }
+
+  @BeforeEach
+  public void resetStubs() {
+    missing.resetAll();
+    owner.resetAll();
+    slow.resetAll();
+    missing.stubFor(head(urlEqualTo(QUERY_PATH)).willReturn(aResponse().withStatus(404)));
+    owner.stubFor(head(urlEqualTo(QUERY_PATH)).willReturn(aResponse().withStatus(200)));
+    slow.stubFor(head(urlEqualTo(QUERY_PATH))
+        .willReturn(aResponse().withStatus(404).withFixedDelay(3000)));
+  }
+
+  @Test
+  public void testFirstSuccessWins() {
+    MetricRegistry registry = new MetricRegistry();
+    QueryIdProber prober = new QueryIdProber(registry, Duration.ofSeconds(10));
+
+    long start = System.nanoTime();
+    Optional<String> backend = prober.probe(QUERY_ID,
+        List.of(missing.baseUrl(), slow.baseUrl(), owner.baseUrl())).join();
+
+    assertEquals(Optional.of(owner.baseUrl()), backend);
+    // the slow backend is not waited for
+    assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 3000);
+    assertEquals(3, registry.meter("routing.queryIdProbe.attempts").getCount());
+  }
+
+  @Test
+  public void testNotFound() {
+    MetricRegistry registry = new MetricRegistry();
+    QueryIdProber prober = new QueryIdProber(registry, Duration.ofSeconds(10));
+
+    assertEquals(Optional.empty(), prober.probe(QUERY_ID, List.of(missing.baseUrl())).join());
+    assertEquals(Optional.empty(), prober.probe(QUERY_ID, List.of()).join());
+    assertEquals(0, registry.meter("routing.queryIdProbe.errors").getCount());
+  }
+
+  @Test
+  public void testFailedRequestIsInconclusive() {
+    MetricRegistry registry = new MetricRegistry();
+    QueryIdProber prober = new QueryIdProber(registry, Duration.ofSeconds(10));
+
+    // a backend that cannot be reached may still know the query
+    CompletableFuture<Optional<String>> probe =
+        prober.probe(QUERY_ID, List.of(missing.baseUrl(), "http://localhost:1"));
+    assertThrows(CompletionException.class, probe::join);
+    assertEquals(1, registry.meter("routing.queryIdProbe.errors").getCount());
+
+    assertEquals(Optional.of(owner.baseUrl()),
+        prober.probe(QUERY_ID, List.of(owner.baseUrl(), "http://localhost:1")).join());
+  }
+
+  @Test
+  public void testDeadline() {
+    MetricRegistry registry = new MetricRegistry();
+    QueryIdProber prober = new QueryIdProber(registry, Duration.ofMillis(200));
+
+    CompletableFuture<Optional<String>> probe = prober.probe(QUERY_ID, List.of(slow.baseUrl()));
+    CompletionException e = assertThrows(CompletionException.class, probe::join);
+    assertTrue(e.getCause() instanceof TimeoutException);
+    assertEquals(1, registry.meter("routing.queryIdProbe.timeouts").getCount());
+  }
+
+  @Test
+  public void testConcurrentProbesAreCoalesced() {
+    MetricRegistry registry = new MetricRegistry();
+    QueryIdProber prober = new QueryIdProber(registry, Duration.ofSeconds(10));
+    owner.stubFor(head(urlEqualTo(QUERY_PATH))
+        .willReturn(aResponse().withStatus(200).withFixedDelay(500)));
+
+    CompletableFuture<Optional<String>> first = prober.probe(QUERY_ID, List.of(owner.baseUrl()));
+    CompletableFuture<Optional<String>> second = prober.probe(QUERY_ID, List.of(owner.baseUrl()));
+
+    assertEquals(Optional.of(owner.baseUrl()), first.join());
+    assertSame(first.join(), second.join());
+    owner.verify(1, anyRequestedFor(urlEqualTo(QUERY_PATH)));
+    assertEquals(1, registry.meter("routing.queryIdProbe.coalesced").getCount());
+
+    // a completed probe is not reused
+    prober.probe(QUERY_ID, List.of(owner.baseUrl())).join();
+    owner.verify(2, anyRequestedFor(urlEqualTo(QUERY_PATH)));
+  }
+}
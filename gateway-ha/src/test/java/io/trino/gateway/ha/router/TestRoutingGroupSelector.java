@@ -56,6 +56,7 @@ public class TestRoutingGroupSelector {
     when(mockRequest.getHeader(TRINO_SOURCE_HEADER)).thenReturn("airflow");
     assertEquals("etl",
         routingGroupSelector.findRoutingGroup(mockRequest));
+    routingGroupSelector.close();
   }
 
   @ParameterizedTest
@@ -71,6 +72,7 @@ public class TestRoutingGroupSelector {
         "email=test@example.com,label=special");
     assertEquals("etl-special",
         routingGroupSelector.findRoutingGroup(mockRequest));
+    routingGroupSelector.close();
   }
 
   @ParameterizedTest
@@ -85,9 +87,9 @@ public class TestRoutingGroupSelector {
     when(mockRequest.getHeader(TRINO_CLIENT_TAGS_HEADER)).thenReturn(
         "email=test@example.com,label=special");
     assertNull(routingGroupSelector.findRoutingGroup(mockRequest));
+    routingGroupSelector.close();
   }
 
-  //Todo: The functionality of reading the file before every request needs to be smarter
   @Test
   public void testByRoutingRulesEngineFileChange() throws Exception {
     File file = File.createTempFile("routing_rules", ".yml");
@@ -103,7 +105,7 @@ public class TestRoutingGroupSelector {
     fw.close();
 
     RoutingGroupSelector routingGroupSelector =
-        RoutingGroupSelector.byRoutingRulesEngine(file.getPath());
+        RoutingGroupSelector.byRoutingRulesEngine(file.getPath(), 10);
 
     HttpServletRequest mockRequest = mock(HttpServletRequest.class);
 
@@ -111,11 +113,6 @@ public class TestRoutingGroupSelector {
     assertEquals("etl",
         routingGroupSelector.findRoutingGroup(mockRequest));
 
-    Thread.sleep(1);
-    // java.nio.file.attribute.FileTime offers a maximum precision of 1 ms. If the first
-    // half of this test runs in <1ms, the gateway may not recognize that the file
-    // has changed.
-
     fw = new FileWriter(file);
     fw.write(
         "---\n"
@@ -127,8 +124,46 @@ public class TestRoutingGroupSelector {
     fw.close();
 
     when(mockRequest.getHeader(TRINO_SOURCE_HEADER)).thenReturn("airflow");
+    // the rules are reloaded in the background
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (!"etl2".equals(routingGroupSelector.findRoutingGroup(mockRequest))
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
     assertEquals("etl2",
         routingGroupSelector.findRoutingGroup(mockRequest));
+    routingGroupSelector.close();
+    file.deleteOnExit();
+  }
+
+  @Test
+  public void testByRoutingRulesEngineKeepsRulesOnInvalidFile() throws Exception {
+    File file = File.createTempFile("routing_rules", ".yml");
+
+    FileWriter fw = new FileWriter(file);
+    fw.write(
+        "---\n"
+            + "name: \"airflow1\"\n"
+            + "description: \"original rule\"\n"
+            + "condition: \"request.getHeader(\\\"X-Trino-Source\\\") == \\\"airflow\\\"\"\n"
+            + "actions:\n"
+            + "  - \"result.put(\\\"routingGroup\\\", \\\"etl\\\")\"");
+    fw.close();
+
+    RuleReloadingRoutingGroupSelector routingGroupSelector =
+        new RuleReloadingRoutingGroupSelector(file.getPath(), Long.MAX_VALUE).start();
+
+    HttpServletRequest mockRequest = mock(HttpServletRequest.class);
+    when(mockRequest.getHeader(TRINO_SOURCE_HEADER)).thenReturn("airflow");
+    assertEquals("etl", routingGroupSelector.findRoutingGroup(mockRequest));
+
+    fw = new FileWriter(file);
+    fw.write("---\nname: [unterminated");
+    fw.close();
+    routingGroupSelector.reload();
+
+    assertEquals("etl", routingGroupSelector.findRoutingGroup(mockRequest));
+    routingGroupSelector.close();
     file.deleteOnExit();
   }
 }
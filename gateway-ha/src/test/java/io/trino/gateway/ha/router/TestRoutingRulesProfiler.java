@@ -0,0 +1,73 @@
+package io.trino.gateway.ha.router;
+
+import static io.trino.gateway.ha.router.TestRoutingGroupSelector.TRINO_CLIENT_TAGS_HEADER;
+import static io.trino.gateway.ha.router.TestRoutingGroupSelector.TRINO_SOURCE_HEADER;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class TestRoutingRulesProfiler {
+  private static final String RULES_FILE = "src/test/resources/rules/routing_rules_priorities.yml";
+
+  @ParameterizedTest
+  @ValueSource(booleans = {false, true})
+  void testProfilesRuleEvaluations(boolean compiled) {
+    RoutingRulesProfiler profiler = new RoutingRulesProfiler(1);
+    RoutingGroupSelector selector = (compiled
+        ? new CompiledRoutingGroupSelector(RULES_FILE, Long.MAX_VALUE, profiler)
+        : new RuleReloadingRoutingGroupSelector(RULES_FILE, Long.MAX_VALUE, profiler)).start();
+
+    HttpServletRequest airflow = mock(HttpServletRequest.class);
+    when(airflow.getHeader(TRINO_SOURCE_HEADER)).thenReturn("airflow");
+    HttpServletRequest special = mock(HttpServletRequest.class);
+    when(special.getHeader(TRINO_SOURCE_HEADER)).thenReturn("airflow");
+    when(special.getHeader(TRINO_CLIENT_TAGS_HEADER)).thenReturn("label=special");
+    for (int i = 0; i < 3; i++) {
+      selector.findRoutingGroup(airflow);
+    }
+    selector.findRoutingGroup(special);
+
+    Map<String, RoutingRulesProfiler.RuleProfile> profile = profiler.getProfile().stream()
+        .collect(Collectors.toMap(RoutingRulesProfiler.RuleProfile::getName, Function.identity()));
+    assertEquals(4, profile.get("airflow").getEvaluations());
+    assertEquals(4, profile.get("airflow").getMatches());
+    assertEquals(4, profile.get("airflow special").getEvaluations());
+    assertEquals(1, profile.get("airflow special").getMatches());
+    // "airflow special" has an indexed term, so the compiled rules time it like the engine
+    assertEquals(4, profile.get("airflow special").getTimedEvaluations());
+    assertTrue(profile.get("airflow special").getMaxMicros() > 0);
+    selector.close();
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {1, 100})
+  void testSamplingTimesSubset(int sampleRate) {
+    RoutingRulesProfiler profiler = new RoutingRulesProfiler(sampleRate);
+    for (int i = 0; i < 10000; i++) {
+      profiler.record("rule", i % 2 == 0, profiler.sample() ? 1000 : -1);
+    }
+    List<RoutingRulesProfiler.RuleProfile> profile = profiler.getProfile();
+    assertEquals(1, profile.size());
+    assertEquals(10000, profile.get(0).getEvaluations());
+    assertEquals(5000, profile.get(0).getMatches());
+    long timed = profile.get(0).getTimedEvaluations();
+    assertTrue(timed > 10000 / sampleRate / 2 && timed <= 10000 * 2 / sampleRate,
+        "timed: " + timed);
+    assertEquals(10.0, profile.get(0).getEstimatedTotalMillis(), 0.1);
+
+    profiler.reset();
+    assertTrue(profiler.getProfile().isEmpty());
+  }
+}
@@ -0,0 +1,100 @@
+package io.trino.gateway.ha.router;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.codahale.metrics.MetricRegistry;
+import io.trino.gateway.ha.config.QueryIdRoutingConfiguration;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class TestRoutingWarmStart {
+  private static final String QUERY_1 = "20231019_123456_00001_abcde";
+  private static final String QUERY_2 = "20231019_123456_00002_abcde";
+  private static final String QUERY_3 = "20231019_123456_00003_abcde";
+
+  @Test
+  public void testRestoreFromSnapshot() throws Exception {
+    QueryIdRoutingConfiguration configuration = configuration();
+    RoutingManager before = routingManager();
+    before.setBackendForQueryId(QUERY_1, "http://trino1:8080");
+    before.setBackendForQueryId(QUERY_2, "http://trino2:8080");
+    before.restoreBackendForUiCookie("cookie", "http://trino2:8080");
+    RoutingWarmStart warmStart =
+        new RoutingWarmStart(before, noHistory(), configuration, new MetricRegistry());
+    warmStart.snapshot();
+    assertTrue(Files.exists(Path.of(configuration.getSnapshotPath())));
+
+    RoutingManager after = routingManager();
+    warmStart = new RoutingWarmStart(after, noHistory(), configuration, new MetricRegistry());
+    warmStart.start();
+    warmStart.awaitWarmUp();
+    assertEquals("http://trino1:8080", after.getQueryIdIndex().get(QUERY_1));
+    assertEquals("http://trino2:8080", after.getQueryIdIndex().get(QUERY_2));
+    assertEquals("http://trino2:8080", after.findBackendForUiCookie("cookie"));
+    warmStart.stop();
+  }
+
+  @Test
+  public void testRestoreFromQueryHistory() throws Exception {
+    QueryIdRoutingConfiguration configuration = configuration();
+    // a broken snapshot does not prevent reading the query history
+    Files.writeString(Path.of(configuration.getSnapshotPath()), "not a snapshot");
+    QueryHistoryManager history = mock(QueryHistoryManager.class);
+    when(history.fetchQueriesSince(anyLong(), anyInt()))
+        .thenReturn(List.of(query(QUERY_3, "http://trino3:8080"), query(null, null)));
+
+    RoutingManager routingManager = routingManager();
+    RoutingWarmStart warmStart =
+        new RoutingWarmStart(routingManager, history, configuration, new MetricRegistry());
+    warmStart.start();
+    warmStart.awaitWarmUp();
+    assertEquals("http://trino3:8080", routingManager.getQueryIdIndex().get(QUERY_3));
+
+    // stopping writes a snapshot that the next start reads
+    warmStart.stop();
+    RoutingManager restarted = routingManager();
+    warmStart = new RoutingWarmStart(restarted, noHistory(), configuration,
+        new MetricRegistry());
+    warmStart.warmUp();
+    assertEquals("http://trino3:8080", restarted.getQueryIdIndex().get(QUERY_3));
+  }
+
+  private static QueryIdRoutingConfiguration configuration() throws Exception {
+    File snapshot = File.createTempFile("routing", ".snapshot");
+    snapshot.deleteOnExit();
+    new File(snapshot.getPath() + ".tmp").deleteOnExit();
+    QueryIdRoutingConfiguration configuration = new QueryIdRoutingConfiguration();
+    configuration.setSnapshotPath(snapshot.getPath());
+    return configuration;
+  }
+
+  private static RoutingManager routingManager() {
+    QueryIdRoutingConfiguration configuration = new QueryIdRoutingConfiguration();
+    configuration.setIndexCapacity(1000);
+    return new RoutingManager(mock(GatewayBackendManager.class), null, new MetricRegistry(),
+        configuration) {};
+  }
+
+  private static QueryHistoryManager noHistory() {
+    QueryHistoryManager history = mock(QueryHistoryManager.class);
+    when(history.fetchQueriesSince(anyLong(), anyInt())).thenReturn(List.of());
+    return history;
+  }
+
+  private static QueryHistoryManager.QueryDetail query(String queryId, String backend) {
+    QueryHistoryManager.QueryDetail query = new QueryHistoryManager.QueryDetail();
+    query.setQueryId(queryId);
+    query.setBackendUrl(backend);
+    return query;
+  }
+}
@@ -5,16 +5,13 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
-import static org.mockito.Mockito.doAnswer;
-import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.when;
 
 import jakarta.servlet.http.HttpServletRequest;
 import java.io.IOException;
-import java.net.Socket;
-import java.net.UnknownHostException;
+import java.net.ServerSocket;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
@@ -41,6 +38,7 @@ public class TestTcpChecks {
         RoutingGroupSelector.byRoutingRulesEngine(rulesFile);
 
     assertEquals("cli", routingGroupSelector.findRoutingGroup(mockRequest));
+    routingGroupSelector.close();
   }
 
   @Test
@@ -49,10 +47,13 @@ public class TestTcpChecks {
       InterruptedException {
     // Test successful connection check  
     int checkInterval = 1000; //in ms
-    ConnectionChecker checker = new ConnectionChecker();
-    ConnectionCheck check = spy(checker.getChecker("abc", 1111, checkInterval, 1, 0));
-    doReturn(mock(Socket.class)).when(check).makeSocket("abc", 1111);
-    assertEquals(ConnectionCheck.TCP_CHECK_SUCCESS, check.tcpCheck());
+    TcpProber prober = mock(TcpProber.class);
+    when(prober.connect("abc", 1111, checkInterval))
+        .thenReturn(CompletableFuture.completedFuture(true));
+    ConnectionCheck check = new ConnectionCheck("abc", 1111, checkInterval, 1, 0,
+        checkInterval, prober);
+    check.runCheck();
+    assertEquals(ConnectionCheck.TCP_CHECK_SUCCESS, check.getCheckCode());
 
     // If our inteval to check the request is 1000ms then connection check is needed
     TimeUnit.SECONDS.sleep(2);
@@ -69,33 +70,37 @@ public class TestTcpChecks {
       java.lang.InterruptedException {
 
     int checkInterval = 1000; //in ms
-    ConnectionChecker checker = new ConnectionChecker();
 
     // Test failed connection check
     String host = "xyz";
     int port = 1111;
     int failcount = 3;
     int disableDuration = 10; //in sec
-    ConnectionCheck check = spy(checker.getChecker(host, port, checkInterval,
-        failcount, disableDuration));
-    doAnswer(invocation -> {
-      throw new UnknownHostException(host);
-    }).when(check).makeSocket(host, port);
+    TcpProber prober = mock(TcpProber.class);
+    when(prober.connect(host, port, checkInterval))
+        .thenReturn(CompletableFuture.completedFuture(false));
+    ConnectionCheck check = new ConnectionCheck(host, port, checkInterval,
+        failcount, disableDuration, checkInterval, prober);
 
     // test the disable check
     for (int i = 0; i < failcount; ++i) {
       // wait for checkinterval, fail till failcount is reached to disable the check
       TimeUnit.MILLISECONDS.sleep(1100);
-      assertNotEquals(ConnectionCheck.TCP_CHECK_SUCCESS, check.tcpCheck());
+      check.runCheck();
+      assertNotEquals(ConnectionCheck.TCP_CHECK_SUCCESS, check.getCheckCode());
     }
     // Make the server available and check if the failure contines for disableDuration
-    doReturn(mock(Socket.class)).when(check).makeSocket(host, port);
+    when(prober.connect(host, port, checkInterval))
+        .thenReturn(CompletableFuture.completedFuture(true));
     TimeUnit.SECONDS.sleep(6);
-    assertNotEquals(ConnectionCheck.TCP_CHECK_SUCCESS, check.tcpCheck());
+    check.runCheck();
+    assertNotEquals(ConnectionCheck.TCP_CHECK_SUCCESS, check.getCheckCode());
     TimeUnit.SECONDS.sleep(6);
-    assertEquals(ConnectionCheck.TCP_CHECK_SUCCESS, check.tcpCheck());
+    check.runCheck();
+    assertEquals(ConnectionCheck.TCP_CHECK_SUCCESS, check.getCheckCode());
 
     // We maintain a map of the checkers, so verify that we got the same check back, as before
+    ConnectionChecker checker = new ConnectionChecker();
     Object checkObj = checker.getChecker(host, port, checkInterval,
         failcount, disableDuration);
     assertEquals(checkObj, checker.getChecker(host, port, checkInterval,
@@ -108,4 +113,30 @@ public class TestTcpChecks {
     assertNotEquals(checkObj, checker.getChecker(host, port, checkInterval,
         failcount, disableDuration + 10));
   }
+
+  @Test
+  public void testTcpProber() throws Exception {
+    TcpProber prober = new TcpProber();
+    try (ServerSocket serverSocket = new ServerSocket(0)) {
+      int port = serverSocket.getLocalPort();
+      assertTrue(prober.connect("localhost", port, 1000).get(5, TimeUnit.SECONDS));
+
+      serverSocket.close();
+      assertFalse(prober.connect("localhost", port, 1000).get(5, TimeUnit.SECONDS));
+      assertFalse(prober.connect("unknown.host.invalid", port, 1000).get(5, TimeUnit.SECONDS));
+    } finally {
+      prober.close();
+    }
+  }
+
+  @Test
+  public void testConnectionCheckerProbesInBackground() throws Exception {
+    ConnectionChecker checker = new ConnectionChecker();
+    try (ServerSocket serverSocket = new ServerSocket(0)) {
+      int port = serverSocket.getLocalPort();
+      // the first call registers the check and waits for its first probe
+      assertTrue(checker.tcpCheck("localhost", port, 1000, 1, 0));
+      assertTrue(checker.tcpCheck("localhost", port, 1000, 1, 0));
+    }
+  }
 }
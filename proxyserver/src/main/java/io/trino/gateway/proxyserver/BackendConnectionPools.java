@@ -0,0 +1,211 @@
+package io.trino.gateway.proxyserver;
+
+import java.net.SocketAddress;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ObjLongConsumer;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jetty.client.AbstractConnectionPool;
+import org.eclipse.jetty.client.ConnectionPool;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.HttpClientTransport;
+import org.eclipse.jetty.client.HttpDestination;
+import org.eclipse.jetty.client.MultiplexConnectionPool;
+import org.eclipse.jetty.client.Origin;
+import org.eclipse.jetty.client.api.Connection;
+import org.eclipse.jetty.client.api.Destination;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.io.ClientConnector;
+import org.eclipse.jetty.util.Promise;
+
+/**
+ * Connection pools of the backends. Each backend gets a pool sized with its own settings, can be
+ * prewarmed so that the first burst of requests does not open all the connections at once, and
+ * limits the requests waiting for one of its connections.
+ */
+@Slf4j
+class BackendConnectionPools {
+  private final Map<String, BackendConnectionSettings> settings = new ConcurrentHashMap<>();
+  private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+  // the URLs the backends were configured with, by origin
+  private final Map<String, String> backendUrls = new ConcurrentHashMap<>();
+  private final ProxyServerConfiguration serverConfig;
+  private volatile HttpClient httpClient;
+  private volatile ObjLongConsumer<String> connectListener = (origin, nanos) -> { };
+
+  BackendConnectionPools(ProxyServerConfiguration serverConfig) {
+    this.serverConfig = serverConfig;
+  }
+
+  /**
+   * Returns the origin of the url, such as {@code http://trino-1:8080}, with the default port of
+   * the scheme if the url has none.
+   */
+  static String origin(String url) {
+    URI uri = URI.create(url);
+    return origin(uri.getScheme(), uri.getHost(), uri.getPort());
+  }
+
+  static String origin(String scheme, String host, int port) {
+    return scheme + "://" + host + ":" + HttpClient.normalizePort(scheme, port);
+  }
+
+  void configure(String backendUrl, BackendConnectionSettings backendSettings) {
+    String origin = origin(backendUrl);
+    settings.put(origin, backendSettings);
+    backendUrls.put(origin, backendUrl);
+    prewarm(origin);
+  }
+
+  void setConnectListener(ObjLongConsumer<String> connectListener) {
+    this.connectListener = connectListener;
+  }
+
+  /**
+   * Called once the client is started, to prewarm the backends configured before.
+   */
+  void start(HttpClient httpClient) {
+    this.httpClient = httpClient;
+    settings.keySet().forEach(this::prewarm);
+  }
+
+  /**
+   * Client connector that reports how long it takes to connect to each backend, by the URL the
+   * backend was configured with, or by its origin if it was not configured.
+   */
+  ClientConnector newClientConnector() {
+    return new ClientConnector() {
+      @Override
+      public void connect(SocketAddress address, Map<String, Object> context) {
+        HttpDestination destination =
+            (HttpDestination) context.get(HttpClientTransport.HTTP_DESTINATION_CONTEXT_KEY);
+        @SuppressWarnings("unchecked")
+        Promise<Connection> promise = (Promise<Connection>)
+            context.get(HttpClientTransport.HTTP_CONNECTION_PROMISE_CONTEXT_KEY);
+        if (destination != null && promise != null) {
+          long startNanos = System.nanoTime();
+          String origin = origin(destination.getOrigin());
+          String backendUrl = backendUrls.getOrDefault(origin, origin);
+          context.put(HttpClientTransport.HTTP_CONNECTION_PROMISE_CONTEXT_KEY,
+              new Promise.Wrapper<Connection>(promise) {
+                @Override
+                public void succeeded(Connection connection) {
+                  connectListener.accept(backendUrl, System.nanoTime() - startNanos);
+                  super.succeeded(connection);
+                }
+              });
+        }
+        super.connect(address, context);
+      }
+    };
+  }
+
+  ConnectionPool newConnectionPool(HttpDestination destination) {
+    int maxConnections = getMaxConnections(origin(destination.getOrigin()));
+    return new MultiplexConnectionPool(destination, maxConnections, destination, 1);
+  }
+
+  /**
+   * Counts a request to the backend, or returns false if the backend has too many requests in
+   * flight already. Each accepted request must be released. The limit counts requests, not
+   * connections, so with backendHttp2 it does not grow with the streams of a connection.
+   */
+  boolean acquire(Request proxyRequest) {
+    String origin = origin(proxyRequest.getScheme(), proxyRequest.getHost(),
+        proxyRequest.getPort());
+    BackendConnectionSettings backendSettings = settings.get(origin);
+    int maxRequestsQueued = serverConfig.getBackendMaxRequestsQueued();
+    if (backendSettings != null && backendSettings.getMaxRequestsQueued() != null) {
+      maxRequestsQueued = backendSettings.getMaxRequestsQueued();
+    }
+    int limit = getMaxConnections(origin) + maxRequestsQueued;
+    AtomicInteger count = inFlight.computeIfAbsent(origin, o -> new AtomicInteger());
+    if (count.incrementAndGet() > limit) {
+      count.decrementAndGet();
+      return false;
+    }
+    if (backendSettings != null && backendSettings.getIdleTimeoutMillis() != null) {
+      proxyRequest.idleTimeout(backendSettings.getIdleTimeoutMillis(), TimeUnit.MILLISECONDS);
+    }
+    return true;
+  }
+
+  void release(Request proxyRequest) {
+    AtomicInteger count = inFlight.get(origin(proxyRequest.getScheme(), proxyRequest.getHost(),
+        proxyRequest.getPort()));
+    if (count != null) {
+      count.decrementAndGet();
+    }
+  }
+
+  BackendConnectionStats getStats(String backendUrl) {
+    String origin = origin(backendUrl);
+    int active = 0;
+    int idle = 0;
+    int queued = 0;
+    HttpClient client = httpClient;
+    if (client != null) {
+      // a backend has a destination per protocol its clients use
+      for (Destination destination : client.getDestinations()) {
+        if (!(destination instanceof HttpDestination)
+            || !origin.equals(origin(((HttpDestination) destination).getOrigin()))) {
+          continue;
+        }
+        queued += ((HttpDestination) destination).getQueuedRequestCount();
+        ConnectionPool pool = ((HttpDestination) destination).getConnectionPool();
+        if (pool instanceof AbstractConnectionPool) {
+          active += ((AbstractConnectionPool) pool).getActiveConnectionCount();
+          idle += ((AbstractConnectionPool) pool).getIdleConnectionCount();
+        }
+      }
+    }
+    return new BackendConnectionStats(active, idle, queued);
+  }
+
+  private void prewarm(String origin) {
+    HttpClient client = httpClient;
+    BackendConnectionSettings backendSettings = settings.get(origin);
+    if (client == null || backendSettings == null
+        || backendSettings.getPrewarmConnections() == null
+        || backendSettings.getPrewarmConnections() <= 0) {
+      return;
+    }
+    try {
+      // no explicit version, so the destination is the one of the proxied requests, h2c or
+      // h2 with backendHttp2
+      HttpDestination destination =
+          (HttpDestination) client.resolveDestination(client.newRequest(origin));
+      ConnectionPool pool = destination.getConnectionPool();
+      int missing = backendSettings.getPrewarmConnections();
+      if (pool instanceof AbstractConnectionPool) {
+        missing -= ((AbstractConnectionPool) pool).getConnectionCount();
+      }
+      if (missing > 0) {
+        log.info("Opening {} connections to {}", missing, origin);
+        pool.preCreateConnections(missing).whenComplete((ignored, e) -> {
+          if (e != null) {
+            log.warn("Could not open connections to {}", origin, e);
+          }
+        });
+      }
+    } catch (RuntimeException e) {
+      log.warn("Could not open connections to {}", origin, e);
+    }
+  }
+
+  private int getMaxConnections(String origin) {
+    BackendConnectionSettings backendSettings = settings.get(origin);
+    if (backendSettings == null || backendSettings.getMaxConnections() == null) {
+      return serverConfig.getBackendMaxConnections();
+    }
+    return backendSettings.getMaxConnections();
+  }
+
+  private static String origin(Origin origin) {
+    return origin(origin.getScheme(), origin.getAddress().getHost(),
+        origin.getAddress().getPort());
+  }
+}
@@ -0,0 +1,21 @@
+package io.trino.gateway.proxyserver;
+
+import lombok.Data;
+
+/**
+ * Connection settings of one backend. Unset values fall back to the settings of the proxy server.
+ */
+@Data
+public class BackendConnectionSettings {
+  // Connections opened to the backend at most
+  private Integer maxConnections;
+
+  // Time a request to the backend may go without any data
+  private Long idleTimeoutMillis;
+
+  // Requests in flight beyond maxConnections, further requests are answered with 503
+  private Integer maxRequestsQueued;
+
+  // Connections opened when the backend is added or activated, before any request needs them
+  private Integer prewarmConnections;
+}
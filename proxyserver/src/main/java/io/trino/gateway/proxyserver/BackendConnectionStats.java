@@ -0,0 +1,13 @@
+package io.trino.gateway.proxyserver;
+
+import lombok.Data;
+
+/**
+ * Connection pool statistics of one backend.
+ */
+@Data
+public class BackendConnectionStats {
+  private final int activeConnections;
+  private final int idleConnections;
+  private final int queuedRequests;
+}
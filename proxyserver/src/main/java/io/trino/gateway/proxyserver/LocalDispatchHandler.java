@@ -0,0 +1,46 @@
+package io.trino.gateway.proxyserver;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+
+/**
+ * Hands the local requests of the proxy handler to a handler running in the same JVM, such as the
+ * application of the gateway, instead of proxying them to it over the loopback interface. The
+ * local handler belongs to another server, which starts and stops it. Requests it does not handle,
+ * because it is not started yet or they are outside of its context, are proxied as before.
+ */
+class LocalDispatchHandler extends HandlerWrapper {
+  private final ProxyHandler proxyHandler;
+  private volatile Handler localHandler;
+
+  LocalDispatchHandler(ProxyHandler proxyHandler) {
+    this.proxyHandler = proxyHandler;
+  }
+
+  void setLocalHandler(Handler localHandler) {
+    this.localHandler = localHandler;
+  }
+
+  @Override
+  public void handle(String target, Request baseRequest, HttpServletRequest request,
+                     HttpServletResponse response) throws IOException, ServletException {
+    Handler localHandler = this.localHandler;
+    if (localHandler != null
+        && localHandler.isStarted()
+        && proxyHandler != null
+        && !HttpMethod.CONNECT.is(request.getMethod())
+        && proxyHandler.isLocalRequest(request)) {
+      localHandler.handle(target, baseRequest, request, response);
+      if (baseRequest.isHandled()) {
+        return;
+      }
+    }
+    super.handle(target, baseRequest, request, response);
+  }
+}
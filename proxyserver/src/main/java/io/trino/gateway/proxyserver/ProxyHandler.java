@@ -7,6 +7,8 @@ import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.Collection;
 import java.util.Enumeration;
@@ -17,11 +19,15 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.http.HttpHeaders;
 import org.eclipse.jetty.client.api.Request;
 import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
 
-/* Order of control => rewriteTarget, preConnectionHook, postConnectionHook. */
+/* Order of control => rewriteTarget, preConnectionHook, postConnectionHook, postResponseHook. */
 @Slf4j
 public class ProxyHandler {
+  static final String REJECT_STATUS_ATTRIBUTE = "gateway.proxy.rejectStatus";
+  static final String REDIRECT_LOCATION_ATTRIBUTE = "gateway.proxy.redirectLocation";
 
   protected String rewriteTarget(HttpServletRequest request) {
     // Dont override this unless absolutely needed.
@@ -33,6 +39,51 @@ public class ProxyHandler {
     return rewriteTarget(request);
   }
 
+  /**
+   * Answers the request with the given status instead of proxying it. To be called from
+   * {@code rewriteTarget}, which then returns null.
+   *
+   * @param request
+   * @param status
+   */
+  protected void reject(HttpServletRequest request, int status) {
+    request.setAttribute(REJECT_STATUS_ATTRIBUTE, status);
+  }
+
+  /**
+   * Answers the request with a temporary redirect to the location instead of proxying it. To be
+   * called from {@code rewriteTarget}, which then returns null.
+   *
+   * @param request
+   * @param location
+   */
+  protected void redirect(HttpServletRequest request, String location) {
+    request.setAttribute(REDIRECT_LOCATION_ATTRIBUTE, location);
+    reject(request, HttpStatus.TEMPORARY_REDIRECT_307);
+  }
+
+  /**
+   * Whether {@code postConnectionHook} changes the length of the response content, in which case
+   * the Content-Length header of the backend is not relayed.
+   *
+   * @param request
+   * @return
+   */
+  protected boolean rewritesResponseContent(HttpServletRequest request) {
+    return false;
+  }
+
+  /**
+   * Whether the request is served by the local handler of the proxy server, if it has one,
+   * instead of being proxied.
+   *
+   * @param request
+   * @return
+   */
+  protected boolean isLocalRequest(HttpServletRequest request) {
+    return false;
+  }
+
   /**
    * Request interceptor.
    *
@@ -76,7 +127,73 @@ public class ProxyHandler {
           int length,
           Callback callback,
           int requestId) {
-    postConnectionHook(request, response, buffer, offset, length, callback);
+    ByteBuffer content = postConnectionHook(
+        request, response, ByteBuffer.wrap(buffer, offset, length), requestId);
+    if (!content.hasArray()) {
+      content = ByteBuffer.wrap(BufferUtil.toArray(content));
+    }
+    postConnectionHook(request, response, content.array(),
+        content.arrayOffset() + content.position(), content.remaining(), callback);
+  }
+
+  /**
+   * Whether a subclass overrides one of the byte array {@code postConnectionHook}s, which write
+   * the content to the client themselves. The responses of such a handler are relayed with
+   * blocking writes, also in the asynchronous mode.
+   */
+  final boolean hasBlockingResponseHook() {
+    for (Class<?> type = getClass(); type != ProxyHandler.class; type = type.getSuperclass()) {
+      for (Method method : type.getDeclaredMethods()) {
+        Class<?>[] parameters = method.getParameterTypes();
+        if (method.getName().equals("postConnectionHook")
+            && parameters.length >= 6 && parameters[2] == byte[].class) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Response interceptor of both modes of the proxy. Returns the content to relay to the client,
+   * which may be the given buffer. The proxy writes it, without blocking in the asynchronous
+   * mode, so this must not block either.
+   *
+   * @param request
+   * @param response
+   * @param content the content received from the backend, between its position and limit
+   * @param requestId
+   * @return
+   */
+  protected ByteBuffer postConnectionHook(
+      HttpServletRequest request,
+      HttpServletResponse response,
+      ByteBuffer content,
+      int requestId) {
+    return content;
+  }
+
+  /**
+   * Invoked once the proxied response has been fully relayed to the client, or has failed.
+   *
+   * @param request
+   * @param response
+   * @param requestId
+   * @param failure the failure, or null if the response completed successfully
+   */
+  protected void postResponseHook(
+      HttpServletRequest request,
+      HttpServletResponse response,
+      int requestId,
+      Throwable failure) {
+    // you may override it.
+  }
+
+  /**
+   * Invoked once the proxy server is stopped, to release the resources of the handler.
+   */
+  public void close() {
+    // you may override it.
   }
 
   protected void debugLogHeaders(HttpServletRequest request) {
@@ -142,6 +259,10 @@ public class ProxyHandler {
     return false;
   }
 
+  public Optional<Cookie> addCookie(HttpServletRequest clientRequest) {
+    return Optional.empty();
+  }
+
   public Optional<Cookie> deleteCookie(HttpServletRequest clientRequest) {
     return Optional.empty();
   }
@@ -0,0 +1,31 @@
+package io.trino.gateway.proxyserver;
+
+import lombok.Data;
+
+/**
+ * An additional listener of the proxy server, on a TCP port or on a Unix domain socket. Unset
+ * sizes are the ones of the proxy server.
+ */
+@Data
+public class ProxyListener {
+  private String name;
+  private String host = "0.0.0.0";
+  private int port;
+
+  // Listen on this Unix domain socket instead of a TCP port
+  private String unixSocketPath;
+
+  // Use the keystore of the proxy server
+  private boolean ssl;
+
+  // Trust the X-Forwarded and Forwarded headers, such as those of a TLS terminating sidecar
+  private boolean forwardedHeaders;
+
+  // Threads accepting connections and selecting the ready ones, -1 lets Jetty pick by cores
+  private int acceptors = -1;
+  private int selectors = -1;
+
+  private Integer outputBufferSize;
+  private Integer requestHeaderSize;
+  private Integer responseHeaderSize;
+}
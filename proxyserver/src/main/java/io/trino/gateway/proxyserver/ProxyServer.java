@@ -2,30 +2,54 @@ package io.trino.gateway.proxyserver;
 
 import jakarta.servlet.DispatcherType;
 import jakarta.servlet.Filter;
+import jakarta.servlet.http.HttpServletRequest;
 import java.io.Closeable;
 import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.function.ObjLongConsumer;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.http.util.TextUtils;
+import org.eclipse.jetty.alpn.server.ALPNServerConnectionFactory;
 import org.eclipse.jetty.http.HttpScheme;
+import org.eclipse.jetty.http2.HTTP2Cipher;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
 import org.eclipse.jetty.proxy.ConnectHandler;
+import org.eclipse.jetty.server.AbstractConnector;
+import org.eclipse.jetty.server.ConnectionFactory;
+import org.eclipse.jetty.server.ForwardedRequestCustomizer;
+import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.HttpConfiguration;
 import org.eclipse.jetty.server.HttpConnectionFactory;
 import org.eclipse.jetty.server.SecureRequestCustomizer;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.servlet.FilterHolder;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.unixdomain.server.UnixDomainServerConnector;
+import org.eclipse.jetty.util.VirtualThreads;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 
 @Slf4j
 public class ProxyServer implements Closeable {
   private final Server server;
   private final ProxyServletImpl proxy;
   private final ProxyHandler proxyHandler;
+  private final TlsHandshakeMonitor clientTlsHandshakes = new TlsHandshakeMonitor("client");
   private ServletContextHandler context;
+  private RequestLaneFilter requestLaneFilter;
+  private LocalDispatchHandler localDispatchHandler;
+  private SslContextFactory.Server sslContextFactory;
 
   public ProxyServer(ProxyServerConfiguration config, ProxyHandler proxyHandler) {
     this(config, proxyHandler, new ProxyServletImpl());
@@ -33,7 +57,7 @@ public class ProxyServer implements Closeable {
 
   public ProxyServer(ProxyServerConfiguration config, ProxyHandler proxyHandler,
                      ProxyServletImpl proxy) {
-    this.server = new Server();
+    this.server = new Server(newThreadPool(config));
     this.server.setStopAtShutdown(true);
     this.proxy = proxy; 
     this.proxyHandler = proxyHandler;
@@ -42,53 +66,36 @@ public class ProxyServer implements Closeable {
     this.setupContext(config);
   }
 
-  private void setupContext(ProxyServerConfiguration config) {
-    ServerConnector connector = null;
-
-    if (config.isSsl()) {
-      String keystorePath = config.getKeystorePath();
-      String keystorePass = config.getKeystorePass();
-      File keystoreFile = new File(keystorePath);
-
-      SslContextFactory.Server sslContextFactory = new SslContextFactory.Server();
-      sslContextFactory.setTrustAll(true);
-      sslContextFactory.setSslSessionTimeout((int) TimeUnit.SECONDS.toMillis(15));
-
-      if (!TextUtils.isBlank(keystorePath)) {
-        sslContextFactory.setKeyStorePath(keystoreFile.getAbsolutePath());
-        sslContextFactory.setKeyStorePassword(keystorePass);
-        sslContextFactory.setKeyManagerPassword(keystorePass);
+  private static QueuedThreadPool newThreadPool(ProxyServerConfiguration config) {
+    QueuedThreadPool threadPool = new QueuedThreadPool();
+    if (config.isVirtualThreads()) {
+      if (VirtualThreads.areSupported()) {
+        // requests are handled on virtual threads, the selectors stay on the pool
+        threadPool.setVirtualThreadsExecutor(VirtualThreads.getDefaultVirtualThreadsExecutor());
+      } else {
+        log.warn("Virtual threads are not supported by this JDK, using platform threads");
       }
+    }
+    return threadPool;
+  }
 
-      HttpConfiguration httpsConfig = new HttpConfiguration();
-      httpsConfig.setSecureScheme(HttpScheme.HTTPS.asString());
-      httpsConfig.setSecurePort(config.getLocalPort());
-      httpsConfig.setOutputBufferSize(config.getOutputBufferSize());
-      httpsConfig.setRequestHeaderSize(config.getRequestHeaderSize());
-      httpsConfig.setResponseHeaderSize(config.getResponseHeaderSize());
-
-      SecureRequestCustomizer src = new SecureRequestCustomizer();
-      src.setStsMaxAge(TimeUnit.SECONDS.toSeconds(2000));
-      src.setStsIncludeSubDomains(true);
-      httpsConfig.addCustomizer(src);
-
-      HttpConnectionFactory connectionFactory = new HttpConnectionFactory(httpsConfig);
-      connector = new ServerConnector(
-                  server,
-                  new SslConnectionFactory(sslContextFactory, connectionFactory.getProtocol()),
-                  connectionFactory);
-    } else {
-      connector = new ServerConnector(server);
+  private void setupContext(ProxyServerConfiguration config) {
+    ProxyListener mainListener = new ProxyListener();
+    mainListener.setName(config.getName());
+    mainListener.setPort(config.getLocalPort());
+    mainListener.setSsl(config.isSsl());
+    mainListener.setAcceptors(config.getAcceptors());
+    mainListener.setSelectors(config.getSelectors());
+    this.server.addConnector(newConnector(config, mainListener));
+    for (ProxyListener listener : config.getListeners()) {
+      this.server.addConnector(newConnector(config, listener));
     }
-    connector.setHost("0.0.0.0");
-    connector.setPort(config.getLocalPort());
-    connector.setName(config.getName());
-    connector.setAccepting(true);
-    this.server.addConnector(connector);
 
     // Setup proxy handler to handle CONNECT methods
     ConnectHandler proxyConnectHandler = new ConnectHandler();
-    this.server.setHandler(proxyConnectHandler);
+    this.localDispatchHandler = new LocalDispatchHandler(proxyHandler);
+    this.localDispatchHandler.setHandler(proxyConnectHandler);
+    this.server.setHandler(localDispatchHandler);
 
     if (proxyHandler != null) {
       proxy.setProxyHandler(proxyHandler);
@@ -100,11 +107,22 @@ public class ProxyServer implements Closeable {
     proxyServlet.setInitParameter("prefix", config.getPrefix());
     proxyServlet.setInitParameter("trustAll", config.getTrustAll());
     proxyServlet.setInitParameter("preserveHost", config.getPreserveHost());
+    proxyServlet.setInitParameter("maxConnections",
+        String.valueOf(config.getBackendMaxConnections()));
+    proxyServlet.setInitParameter("idleTimeout",
+        String.valueOf(config.getBackendIdleTimeoutMillis()));
 
     // Setup proxy servlet
     this.context =
         new ServletContextHandler(proxyConnectHandler, "/", ServletContextHandler.SESSIONS);
     this.context.addServlet(proxyServlet, "/*");
+    if (!config.getRequestLanes().isEmpty()) {
+      // first, so that the other filters run once the request is admitted
+      this.requestLaneFilter = new RequestLaneFilter(new RequestLanes(
+          config.getRequestLanes(), config.getRequestLanesMaxConcurrentRequests()));
+      this.context.addFilter(new FilterHolder(requestLaneFilter), "/*",
+          EnumSet.of(DispatcherType.REQUEST, DispatcherType.ASYNC));
+    }
     this.context.addFilter(RequestFilter.class, "/*", EnumSet.allOf(DispatcherType.class));
   }
 
@@ -112,6 +130,167 @@ public class ProxyServer implements Closeable {
     this.context.addFilter(filterClass, pathSpec, EnumSet.allOf(DispatcherType.class));
   }
 
+  private AbstractConnector newConnector(ProxyServerConfiguration config,
+                                         ProxyListener listener) {
+    HttpConfiguration httpConfig = new HttpConfiguration();
+    httpConfig.setOutputBufferSize(Optional.ofNullable(listener.getOutputBufferSize())
+        .orElse(config.getOutputBufferSize()));
+    httpConfig.setRequestHeaderSize(Optional.ofNullable(listener.getRequestHeaderSize())
+        .orElse(config.getRequestHeaderSize()));
+    httpConfig.setResponseHeaderSize(Optional.ofNullable(listener.getResponseHeaderSize())
+        .orElse(config.getResponseHeaderSize()));
+    if (listener.isForwardedHeaders()) {
+      httpConfig.addCustomizer(new ForwardedRequestCustomizer());
+    }
+
+    List<ConnectionFactory> connectionFactories = new ArrayList<>();
+    HttpConnectionFactory connectionFactory;
+    if (listener.isSsl()) {
+      httpConfig.setSecureScheme(HttpScheme.HTTPS.asString());
+      httpConfig.setSecurePort(listener.getPort());
+
+      SecureRequestCustomizer src = new SecureRequestCustomizer();
+      src.setStsMaxAge(TimeUnit.SECONDS.toSeconds(2000));
+      src.setStsIncludeSubDomains(true);
+      httpConfig.addCustomizer(src);
+
+      SslContextFactory.Server sslContextFactory = getSslContextFactory(config);
+      connectionFactory = new HttpConnectionFactory(httpConfig);
+      if (config.isHttp2()) {
+        // negotiate h2 with ALPN, clients without ALPN support get HTTP/1.1
+        HTTP2ServerConnectionFactory http2 = new HTTP2ServerConnectionFactory(httpConfig);
+        http2.setMaxConcurrentStreams(config.getHttp2MaxConcurrentStreams());
+        ALPNServerConnectionFactory alpn =
+            new ALPNServerConnectionFactory(http2.getProtocol(), connectionFactory.getProtocol());
+        alpn.setDefaultProtocol(connectionFactory.getProtocol());
+        connectionFactories.add(new SslConnectionFactory(sslContextFactory, alpn.getProtocol()));
+        connectionFactories.add(alpn);
+        connectionFactories.add(http2);
+      } else {
+        connectionFactories.add(
+            new SslConnectionFactory(sslContextFactory, connectionFactory.getProtocol()));
+      }
+      connectionFactories.add(connectionFactory);
+    } else {
+      connectionFactory = new HttpConnectionFactory(httpConfig);
+      connectionFactories.add(connectionFactory);
+      if (config.isHttp2()) {
+        // h2c, with prior knowledge or an upgrade from HTTP/1.1
+        HTTP2CServerConnectionFactory http2c = new HTTP2CServerConnectionFactory(httpConfig);
+        http2c.setMaxConcurrentStreams(config.getHttp2MaxConcurrentStreams());
+        connectionFactories.add(http2c);
+      }
+    }
+
+    ConnectionFactory[] factories = connectionFactories.toArray(new ConnectionFactory[0]);
+    AbstractConnector connector;
+    if (listener.getUnixSocketPath() != null) {
+      // local clients such as a sidecar skip the TCP stack
+      UnixDomainServerConnector unixConnector = new UnixDomainServerConnector(
+          server, listener.getAcceptors(), listener.getSelectors(), factories);
+      unixConnector.setUnixDomainPath(Path.of(listener.getUnixSocketPath()));
+      connector = unixConnector;
+    } else {
+      ServerConnector tcpConnector = new ServerConnector(
+          server, listener.getAcceptors(), listener.getSelectors(), factories);
+      tcpConnector.setHost(listener.getHost());
+      tcpConnector.setPort(listener.getPort());
+      connector = tcpConnector;
+    }
+    connector.setName(listener.getName());
+    connector.addBean(clientTlsHandshakes);
+    return connector;
+  }
+
+  private SslContextFactory.Server getSslContextFactory(ProxyServerConfiguration config) {
+    if (sslContextFactory == null) {
+      String keystorePath = config.getKeystorePath();
+      String keystorePass = config.getKeystorePass();
+
+      sslContextFactory = new SslContextFactory.Server();
+      sslContextFactory.setTrustAll(true);
+      config.configureSsl(sslContextFactory);
+
+      if (!TextUtils.isBlank(keystorePath)) {
+        sslContextFactory.setKeyStorePath(new File(keystorePath).getAbsolutePath());
+        sslContextFactory.setKeyStorePassword(keystorePass);
+        sslContextFactory.setKeyManagerPassword(keystorePass);
+      }
+      if (config.isHttp2()) {
+        sslContextFactory.setCipherComparator(HTTP2Cipher.COMPARATOR);
+      }
+    }
+    return sslContextFactory;
+  }
+
+  /**
+   * Applies the connection settings of a backend, and opens its prewarm connections once the
+   * server is started. The size of the pool of a backend is fixed once the first connection to
+   * it is opened.
+   */
+  public void configureBackend(String backendUrl, BackendConnectionSettings settings) {
+    proxy.getBackendConnectionPools().configure(backendUrl, settings);
+  }
+
+  public BackendConnectionStats getBackendConnectionStats(String backendUrl) {
+    return proxy.getBackendConnectionPools().getStats(backendUrl);
+  }
+
+  /**
+   * Receives the URL of the backend and the time it took to connect to it, in nanoseconds. The
+   * URL is the one given to {@link #configureBackend}, or the origin of an unconfigured backend.
+   */
+  public void setBackendConnectListener(ObjLongConsumer<String> listener) {
+    proxy.getBackendConnectionPools().setConnectListener(listener);
+  }
+
+  public RelayStats getRelayStats() {
+    return proxy.getRelayBudget().getStats();
+  }
+
+  /**
+   * Receives the time a chunk of response content waited for the relay budget, in nanoseconds.
+   */
+  public void setRelayStallListener(LongConsumer listener) {
+    proxy.getRelayBudget().setStallListener(listener);
+  }
+
+  public void setTlsHandshakeListener(TlsHandshakeListener listener) {
+    clientTlsHandshakes.setListener(listener);
+    proxy.getBackendTlsHandshakes().setListener(listener);
+  }
+
+  /**
+   * Sets the handler serving the requests that the proxy handler considers local, in the same JVM
+   * instead of through the proxy. The handler is started and stopped by its own server.
+   */
+  public void setLocalHandler(Handler localHandler) {
+    localDispatchHandler.setLocalHandler(localHandler);
+  }
+
+  /**
+   * Sets the function returning the class of a request, which selects the lane of the request.
+   * Requests of a class without a lane are not limited.
+   */
+  public void setRequestClassifier(Function<HttpServletRequest, String> classifier) {
+    if (requestLaneFilter != null) {
+      requestLaneFilter.setClassifier(classifier);
+    }
+  }
+
+  public void setRequestLaneListener(RequestLaneListener listener) {
+    if (requestLaneFilter != null) {
+      requestLaneFilter.setListener(listener);
+    }
+  }
+
+  public RequestLaneStats getRequestLaneStats(String lane) {
+    if (requestLaneFilter == null) {
+      return new RequestLaneStats(0, 0);
+    }
+    return requestLaneFilter.getLanes().getStats(lane);
+  }
+
   public void start() {
     try {
       this.server.start();
@@ -128,5 +307,8 @@ public class ProxyServer implements Closeable {
     } catch (Exception e) {
       log.error("Could not close the proxy server", e);
     }
+    if (proxyHandler != null) {
+      proxyHandler.close();
+    }
   }
 }
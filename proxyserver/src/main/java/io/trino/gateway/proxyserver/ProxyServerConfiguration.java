@@ -1,6 +1,9 @@
 package io.trino.gateway.proxyserver;
 
+import java.util.ArrayList;
+import java.util.List;
 import lombok.Data;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
 
 @Data
 public class ProxyServerConfiguration {
@@ -19,6 +22,24 @@ public class ProxyServerConfiguration {
   private int responseHeaderSize = 8 * 1024;
   private int requestBufferSize = 4 * 1024;
   private int responseBufferSize = 16 * 1024;
+  private long relayMaxBufferedBytes;
+  private int relayMaxBufferedBytesPerRequest;
+  private boolean http2;
+  private int http2MaxConcurrentStreams = 128;
+  private boolean backendHttp2;
+  private boolean asyncProxy;
+  private boolean virtualThreads;
+  private int backendMaxConnections = 256;
+  private long backendIdleTimeoutMillis = 30_000;
+  private int backendMaxRequestsQueued = 1024;
+  private int sslSessionCacheSize = 20_480;
+  private int sslSessionTimeoutSeconds = 3600;
+  private String sslProvider;
+  private List<RequestLane> requestLanes = new ArrayList<>();
+  private int requestLanesMaxConcurrentRequests;
+  private int acceptors = -1;
+  private int selectors = -1;
+  private List<ProxyListener> listeners = new ArrayList<>();
 
   protected String getPrefix() {
     return prefix;
@@ -71,4 +92,88 @@ public class ProxyServerConfiguration {
   protected int getResponseBufferSize() {
     return responseBufferSize;
   }
+
+  protected long getRelayMaxBufferedBytes() {
+    return relayMaxBufferedBytes;
+  }
+
+  protected int getRelayMaxBufferedBytesPerRequest() {
+    return relayMaxBufferedBytesPerRequest;
+  }
+
+  protected boolean isHttp2() {
+    return http2;
+  }
+
+  protected int getHttp2MaxConcurrentStreams() {
+    return http2MaxConcurrentStreams;
+  }
+
+  protected boolean isBackendHttp2() {
+    return backendHttp2;
+  }
+
+  protected boolean isAsyncProxy() {
+    return asyncProxy;
+  }
+
+  protected boolean isVirtualThreads() {
+    return virtualThreads;
+  }
+
+  protected int getBackendMaxConnections() {
+    return backendMaxConnections;
+  }
+
+  protected long getBackendIdleTimeoutMillis() {
+    return backendIdleTimeoutMillis;
+  }
+
+  protected int getBackendMaxRequestsQueued() {
+    return backendMaxRequestsQueued;
+  }
+
+  protected int getSslSessionCacheSize() {
+    return sslSessionCacheSize;
+  }
+
+  protected int getSslSessionTimeoutSeconds() {
+    return sslSessionTimeoutSeconds;
+  }
+
+  protected String getSslProvider() {
+    return sslProvider;
+  }
+
+  protected List<RequestLane> getRequestLanes() {
+    return requestLanes;
+  }
+
+  protected int getRequestLanesMaxConcurrentRequests() {
+    return requestLanesMaxConcurrentRequests;
+  }
+
+  protected int getAcceptors() {
+    return acceptors;
+  }
+
+  protected int getSelectors() {
+    return selectors;
+  }
+
+  protected List<ProxyListener> getListeners() {
+    return listeners;
+  }
+
+  /**
+   * Applies the TLS session cache and provider settings, shared by the listener and the
+   * connections to the backends.
+   */
+  void configureSsl(SslContextFactory sslContextFactory) {
+    sslContextFactory.setSslSessionCacheSize(sslSessionCacheSize);
+    sslContextFactory.setSslSessionTimeout(sslSessionTimeoutSeconds);
+    if (sslProvider != null && !sslProvider.isEmpty()) {
+      sslContextFactory.setProvider(sslProvider);
+    }
+  }
 }
@@ -1,35 +1,87 @@
 package io.trino.gateway.proxyserver;
 
+import static java.util.Objects.requireNonNull;
+
+import io.trino.gateway.proxyserver.wrapper.MultiReadHttpServletRequest;
+import jakarta.servlet.ServletException;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import lombok.extern.slf4j.Slf4j;
 
 import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.HttpClientTransport;
 import org.eclipse.jetty.client.api.Request;
 import org.eclipse.jetty.client.api.Response;
 import org.eclipse.jetty.client.dynamic.HttpClientTransportDynamic;
+import org.eclipse.jetty.client.http.HttpClientConnectionFactory;
+import org.eclipse.jetty.client.util.BytesRequestContent;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http2.client.HTTP2Client;
+import org.eclipse.jetty.http2.client.http.ClientConnectionFactoryOverHTTP2;
 import org.eclipse.jetty.io.ClientConnector;
-import org.eclipse.jetty.proxy.ProxyServlet;
+import org.eclipse.jetty.proxy.AsyncProxyServlet;
+import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
 
+/**
+ * Proxy servlet of the gateway. By default the request and response content is copied with
+ * blocking reads and writes. In the asynchronous mode, it is read and written without blocking,
+ * so a slow client does not hold a thread while its content is relayed.
+ */
 @Slf4j
-public class ProxyServletImpl extends ProxyServlet.Transparent {
+public class ProxyServletImpl extends AsyncProxyServlet.Transparent {
+  private static final String BACKEND_REQUEST_ATTRIBUTE = "gateway.proxy.backendRequest";
+
   private ProxyHandler proxyHandler;
+  private boolean blockingResponseHook;
   private ProxyServerConfiguration serverConfig;
+  private BackendConnectionPools backendConnectionPools;
+  private RelayBudget relayBudget;
+  private final TlsHandshakeMonitor backendTlsHandshakes = new TlsHandshakeMonitor("backend");
 
   public void setProxyHandler(ProxyHandler proxyHandler) {
     this.proxyHandler = proxyHandler;
+    this.blockingResponseHook = proxyHandler.hasBlockingResponseHook();
+    if (blockingResponseHook && isAsyncProxy()) {
+      log.warn("{} overrides a byte array postConnectionHook, its responses are relayed with "
+          + "blocking writes", proxyHandler.getClass().getName());
+    }
     // This needs to be high as external clients may take longer to connect.
     this.setTimeout(TimeUnit.MINUTES.toMillis(1));
   }
 
+  /**
+   * Required, {@link ProxyServer} sets it before the servlet is started.
+   */
   public void setServerConfig(ProxyServerConfiguration config) {
-    this.serverConfig = config;
+    this.serverConfig = requireNonNull(config, "config is null");
+    this.backendConnectionPools = new BackendConnectionPools(config);
+    this.relayBudget = new RelayBudget(config.getRelayMaxBufferedBytes());
+  }
+
+  BackendConnectionPools getBackendConnectionPools() {
+    return backendConnectionPools;
+  }
+
+  RelayBudget getRelayBudget() {
+    return relayBudget;
+  }
+
+  TlsHandshakeMonitor getBackendTlsHandshakes() {
+    return backendTlsHandshakes;
+  }
+
+  private boolean isAsyncProxy() {
+    return serverConfig.isAsyncProxy();
   }
 
   // Overriding this method to support ssl
@@ -37,25 +89,106 @@ public class ProxyServletImpl extends ProxyServlet.Transparent {
   protected HttpClient newHttpClient() {
     SslContextFactory.Client sslFactory = new SslContextFactory.Client();
 
-    if (serverConfig != null && serverConfig.isForwardKeystore()) {
+    if (serverConfig.isForwardKeystore()) {
       sslFactory.setKeyStorePath(serverConfig.getKeystorePath());
       sslFactory.setKeyStorePassword(serverConfig.getKeystorePass());
     } else {
       sslFactory.setTrustAll(true);
     }
-    sslFactory.setSslSessionTimeout((int) TimeUnit.SECONDS.toMillis(15));
+    // backend sessions are cached by host and port and resumed on new connections
+    serverConfig.configureSsl(sslFactory);
 
-    ClientConnector clientConnector = new ClientConnector();
+    ClientConnector clientConnector = backendConnectionPools.newClientConnector();
     clientConnector.setSslContextFactory(sslFactory);
 
-    HttpClient httpClient = new HttpClient(new HttpClientTransportDynamic(clientConnector));
-    httpClient.setMaxConnectionsPerDestination(10000);
+    // a response holds one read buffer, or the receive window of its stream with HTTP/2
+    int responseBufferSize = serverConfig.getResponseBufferSize();
+    int maxBufferedBytesPerRequest = serverConfig.getRelayMaxBufferedBytesPerRequest();
+    if (maxBufferedBytesPerRequest > 0) {
+      responseBufferSize = Math.min(responseBufferSize, maxBufferedBytesPerRequest);
+    }
+
+    HttpClientTransport transport;
+    if (serverConfig.isBackendHttp2()) {
+      // h2 is negotiated with ALPN on TLS, plain connections use h2c with prior knowledge.
+      // Requests to a backend are multiplexed on a few connections instead of one each.
+      HTTP2Client http2Client = new HTTP2Client(clientConnector);
+      if (maxBufferedBytesPerRequest > 0) {
+        http2Client.setInitialStreamRecvWindow(maxBufferedBytesPerRequest);
+      }
+      ClientConnectionFactoryOverHTTP2.HTTP2 http2 =
+          new ClientConnectionFactoryOverHTTP2.HTTP2(http2Client);
+      transport = new HttpClientTransportDynamic(
+          clientConnector, http2, HttpClientConnectionFactory.HTTP11);
+    } else {
+      transport = new HttpClientTransportDynamic(clientConnector);
+    }
+
+    // sized per backend, the default size is the maxConnections init parameter
+    transport.setConnectionPoolFactory(backendConnectionPools::newConnectionPool);
+
+    HttpClient httpClient = new HttpClient(transport);
+    httpClient.addBean(backendTlsHandshakes);
+    httpClient.setMaxRequestsQueuedPerDestination(serverConfig.getBackendMaxRequestsQueued());
     httpClient.setConnectTimeout(TimeUnit.SECONDS.toMillis(60));
     httpClient.setRequestBufferSize(serverConfig.getRequestBufferSize());
-    httpClient.setResponseBufferSize(serverConfig.getResponseBufferSize());
+    httpClient.setResponseBufferSize(responseBufferSize);
+    return httpClient;
+  }
+
+  @Override
+  protected Request.Content proxyRequestContent(
+      HttpServletRequest request,
+      HttpServletResponse response,
+      Request proxyRequest) throws IOException {
+    if (isAsyncProxy()) {
+      if (request instanceof MultiReadHttpServletRequest) {
+        // read by RequestFilter already, the input stream of the wrapper takes no read listener
+        return new BytesRequestContent(((MultiReadHttpServletRequest) request).getContent());
+      }
+      return super.proxyRequestContent(request, response, proxyRequest);
+    }
+    // the blocking content of ProxyServlet
+    return new ProxyInputStreamRequestContent(
+        request, response, proxyRequest, request.getInputStream()) {};
+  }
+
+  @Override
+  protected HttpClient createHttpClient() throws ServletException {
+    HttpClient httpClient = super.createHttpClient();
+    backendConnectionPools.start(httpClient);
+    relayBudget.setExecutor(httpClient.getExecutor());
     return httpClient;
   }
 
+  @Override
+  protected void sendProxyRequest(
+      HttpServletRequest clientRequest,
+      HttpServletResponse proxyResponse,
+      Request proxyRequest) {
+    if (!backendConnectionPools.acquire(proxyRequest)) {
+      log.warn("Too many requests in flight to {}://{}:{}", proxyRequest.getScheme(),
+          proxyRequest.getHost(), proxyRequest.getPort());
+      if (proxyHandler != null) {
+        proxyHandler.postResponseHook(clientRequest, proxyResponse,
+            this.getRequestId(clientRequest),
+            new RejectedExecutionException("Too many requests in flight to the backend"));
+      }
+      sendProxyResponseError(clientRequest, proxyResponse, HttpStatus.SERVICE_UNAVAILABLE_503);
+      return;
+    }
+    clientRequest.setAttribute(BACKEND_REQUEST_ATTRIBUTE, proxyRequest);
+    super.sendProxyRequest(clientRequest, proxyResponse, proxyRequest);
+  }
+
+  private void releaseBackendRequest(HttpServletRequest clientRequest) {
+    Object proxyRequest = clientRequest.getAttribute(BACKEND_REQUEST_ATTRIBUTE);
+    if (proxyRequest != null) {
+      clientRequest.removeAttribute(BACKEND_REQUEST_ATTRIBUTE);
+      backendConnectionPools.release((Request) proxyRequest);
+    }
+  }
+
   /**
    * Customize the headers of forwarding proxy requests.
    */
@@ -73,18 +206,38 @@ public class ProxyServletImpl extends ProxyServlet.Transparent {
     if (proxyHandler != null) {
       target = proxyHandler.rewriteTarget(request, this.getRequestId(request));
     }
-    if (target == null) {
+    if (target == null && request.getAttribute(ProxyHandler.REJECT_STATUS_ATTRIBUTE) == null) {
       target = super.rewriteTarget(request);
     }
     log.debug("Target : " + target);
     return target;
   }
 
+  @Override
+  protected void onProxyRewriteFailed(HttpServletRequest clientRequest,
+                                      HttpServletResponse proxyResponse) {
+    Object status = clientRequest.getAttribute(ProxyHandler.REJECT_STATUS_ATTRIBUTE);
+    Object location = clientRequest.getAttribute(ProxyHandler.REDIRECT_LOCATION_ATTRIBUTE);
+    if (location instanceof String) {
+      // keeps the connection open, unlike an error
+      proxyResponse.setStatus((Integer) status);
+      proxyResponse.setHeader(HttpHeader.LOCATION.asString(), (String) location);
+    } else if (status instanceof Integer) {
+      sendProxyResponseError(clientRequest, proxyResponse, (Integer) status);
+    } else {
+      super.onProxyRewriteFailed(clientRequest, proxyResponse);
+    }
+  }
+
   @Override
   protected void onServerResponseHeaders(
           HttpServletRequest clientRequest,
           HttpServletResponse proxyResponse,
           Response serverResponse) {
+    if (proxyHandler != null) {
+      proxyHandler.addCookie(clientRequest).ifPresent(proxyResponse::addCookie);
+    }
+
     // Clean up session cookie. The session cookie is used to pin the client to a backend during
     // the oauth handshake. If an old cookie is reused for a new handshake it causes a failure.
     if (clientRequest.getCookies() == null) {
@@ -100,6 +253,48 @@ public class ProxyServletImpl extends ProxyServlet.Transparent {
     super.onServerResponseHeaders(clientRequest, proxyResponse, serverResponse);
   }
 
+  @Override
+  protected String filterServerResponseHeader(
+      HttpServletRequest clientRequest,
+      Response serverResponse,
+      String headerName,
+      String headerValue) {
+    if (proxyHandler != null
+        && HttpHeader.CONTENT_LENGTH.is(headerName)
+        && proxyHandler.rewritesResponseContent(clientRequest)) {
+      return null;
+    }
+    return super.filterServerResponseHeader(clientRequest, serverResponse, headerName,
+        headerValue);
+  }
+
+  @Override
+  protected void onProxyResponseSuccess(
+      HttpServletRequest clientRequest,
+      HttpServletResponse proxyResponse,
+      Response serverResponse) {
+    releaseBackendRequest(clientRequest);
+    if (proxyHandler != null) {
+      proxyHandler.postResponseHook(
+          clientRequest, proxyResponse, this.getRequestId(clientRequest), null);
+    }
+    super.onProxyResponseSuccess(clientRequest, proxyResponse, serverResponse);
+  }
+
+  @Override
+  protected void onProxyResponseFailure(
+      HttpServletRequest clientRequest,
+      HttpServletResponse proxyResponse,
+      Response serverResponse,
+      Throwable failure) {
+    releaseBackendRequest(clientRequest);
+    if (proxyHandler != null) {
+      proxyHandler.postResponseHook(
+          clientRequest, proxyResponse, this.getRequestId(clientRequest), failure);
+    }
+    super.onProxyResponseFailure(clientRequest, proxyResponse, serverResponse, failure);
+  }
+
   /**
    * Customize the response returned from remote server.
    *
@@ -111,6 +306,7 @@ public class ProxyServletImpl extends ProxyServlet.Transparent {
    * @param length
    * @param callback
    */
+  @Override
   protected void onResponseContent(
       HttpServletRequest request,
       HttpServletResponse response,
@@ -119,16 +315,42 @@ public class ProxyServletImpl extends ProxyServlet.Transparent {
       int offset,
       int length,
       Callback callback) {
+    // the next chunk is read from the backend once this one is released
+    relayBudget.relay(length, callback, release -> relayContent(
+        request, response, proxyResponse, buffer, offset, length, release));
+  }
+
+  private void relayContent(
+      HttpServletRequest request,
+      HttpServletResponse response,
+      Response proxyResponse,
+      byte[] buffer,
+      int offset,
+      int length,
+      Callback callback) {
     try {
       if (this._log.isDebugEnabled()) {
         this._log.debug(
             "[{}] proxying content to downstream: [{}] bytes", this.getRequestId(request), length);
       }
-      if (this.proxyHandler != null) {
+      if (isAsyncProxy() && !blockingResponseHook) {
+        ByteBuffer content = ByteBuffer.wrap(buffer, offset, length);
+        if (this.proxyHandler != null) {
+          content = proxyHandler.postConnectionHook(
+              request, response, content, this.getRequestId(request));
+        }
+        if (!content.hasArray()) {
+          content = ByteBuffer.wrap(BufferUtil.toArray(content));
+        }
+        // written by a write listener, the callback completes once the client took the content
+        super.onResponseContent(request, response, proxyResponse, content.array(),
+            content.arrayOffset() + content.position(), content.remaining(), callback);
+      } else if (this.proxyHandler != null) {
         proxyHandler.postConnectionHook(
                 request, response, buffer, offset, length, callback, this.getRequestId(request));
       } else {
-        super.onResponseContent(request, response, proxyResponse, buffer, offset, length, callback);
+        response.getOutputStream().write(buffer, offset, length);
+        callback.succeeded();
       }
     } catch (Throwable var9) {
       callback.failed(var9);
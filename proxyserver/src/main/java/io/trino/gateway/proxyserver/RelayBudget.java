@@ -0,0 +1,105 @@
+package io.trino.gateway.proxyserver;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import org.eclipse.jetty.util.Callback;
+
+/**
+ * Budget of the response content held by the proxy while it is relayed to the clients. A chunk of
+ * content holds its bytes from the time it is received from the backend until the client took
+ * it. The proxy reads the next chunk of a response only once the previous one is released, so
+ * when the budget is exhausted and chunks wait for bytes to be released, the backends stop
+ * sending until the slow clients catch up.
+ */
+class RelayBudget {
+  private final long maxBufferedBytes;
+  private final Queue<StalledChunk> stalled = new ArrayDeque<>();
+  private long bufferedBytes;
+  private volatile Executor executor = Runnable::run;
+  private volatile LongConsumer stallListener = nanos -> { };
+
+  /**
+   * Creates a budget of the given number of bytes, or without a limit if it is not positive.
+   */
+  RelayBudget(long maxBufferedBytes) {
+    this.maxBufferedBytes = maxBufferedBytes;
+  }
+
+  /**
+   * Sets the executor relaying the chunks that waited for the budget, so that a blocking write is
+   * not done by the thread releasing the bytes.
+   */
+  void setExecutor(Executor executor) {
+    this.executor = executor;
+  }
+
+  void setStallListener(LongConsumer stallListener) {
+    this.stallListener = stallListener;
+  }
+
+  /**
+   * Relays a chunk of content once its bytes fit in the budget. The callback given to the relay
+   * releases the bytes and then completes the callback of the chunk.
+   */
+  void relay(int bytes, Callback callback, Consumer<Callback> relay) {
+    AtomicBoolean released = new AtomicBoolean();
+    Callback releasing = Callback.from(callback, () -> {
+      if (released.compareAndSet(false, true)) {
+        release(bytes);
+      }
+    });
+    synchronized (this) {
+      // chunks are relayed in the order they arrive once the budget is exhausted
+      if (!stalled.isEmpty() || !fits(bytes)) {
+        stalled.add(new StalledChunk(bytes, () -> relay.accept(releasing), System.nanoTime()));
+        return;
+      }
+      bufferedBytes += bytes;
+    }
+    relay.accept(releasing);
+  }
+
+  synchronized RelayStats getStats() {
+    return new RelayStats(bufferedBytes, stalled.size());
+  }
+
+  private void release(int bytes) {
+    List<StalledChunk> resumed = new ArrayList<>();
+    synchronized (this) {
+      bufferedBytes -= bytes;
+      while (!stalled.isEmpty() && fits(stalled.peek().bytes)) {
+        StalledChunk chunk = stalled.poll();
+        bufferedBytes += chunk.bytes;
+        resumed.add(chunk);
+      }
+    }
+    long now = System.nanoTime();
+    for (StalledChunk chunk : resumed) {
+      stallListener.accept(now - chunk.startNanos);
+      executor.execute(chunk.relay);
+    }
+  }
+
+  private boolean fits(int bytes) {
+    // a chunk larger than the whole budget is relayed alone
+    return maxBufferedBytes <= 0 || bufferedBytes == 0 || bufferedBytes + bytes <= maxBufferedBytes;
+  }
+
+  private static class StalledChunk {
+    private final int bytes;
+    private final Runnable relay;
+    private final long startNanos;
+
+    private StalledChunk(int bytes, Runnable relay, long startNanos) {
+      this.bytes = bytes;
+      this.relay = relay;
+      this.startNanos = startNanos;
+    }
+  }
+}
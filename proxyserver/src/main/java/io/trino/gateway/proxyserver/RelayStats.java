@@ -0,0 +1,12 @@
+package io.trino.gateway.proxyserver;
+
+import lombok.Data;
+
+/**
+ * Response content being relayed to the clients, and the chunks waiting for the relay budget.
+ */
+@Data
+public class RelayStats {
+  private final long bufferedBytes;
+  private final int stalledChunks;
+}
@@ -0,0 +1,27 @@
+package io.trino.gateway.proxyserver;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Data;
+
+/**
+ * A lane of requests, with its own limit of requests in flight and its own queue, so that a burst
+ * of one class of requests does not delay the others.
+ */
+@Data
+public class RequestLane {
+  private String name;
+
+  // Classes of the requests handled by the lane
+  private List<String> requestClasses = new ArrayList<>();
+
+  // Requests of the lane in flight at once, further requests wait in the queue of the lane
+  private int maxConcurrentRequests = 100;
+  private int maxQueuedRequests = 1000;
+
+  // Requests waiting longer than this are answered with 503
+  private long maxQueueWaitMillis = 30_000;
+
+  // When requests wait in several lanes, the lane with the highest priority is resumed first
+  private int priority;
+}
@@ -0,0 +1,176 @@
+package io.trino.gateway.proxyserver;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jetty.http.HttpStatus;
+
+/**
+ * Holds each request until its lane admits it. Waiting requests are suspended, so they do not hold
+ * a thread, and are dispatched again once admitted. A request leaves its lane when its response is
+ * complete.
+ */
+@Slf4j
+class RequestLaneFilter implements Filter {
+  private static final String PERMIT_ATTRIBUTE = "gateway.proxy.lanePermit";
+
+  private final RequestLanes lanes;
+  private volatile Function<HttpServletRequest, String> classifier;
+  private volatile RequestLaneListener listener;
+
+  RequestLaneFilter(RequestLanes lanes) {
+    this.lanes = lanes;
+  }
+
+  void setClassifier(Function<HttpServletRequest, String> classifier) {
+    this.classifier = classifier;
+  }
+
+  void setListener(RequestLaneListener listener) {
+    this.listener = listener;
+  }
+
+  RequestLanes getLanes() {
+    return lanes;
+  }
+
+  @Override
+  public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse,
+                       FilterChain chain) throws IOException, ServletException {
+    HttpServletRequest request = (HttpServletRequest) servletRequest;
+    Permit permit = (Permit) request.getAttribute(PERMIT_ATTRIBUTE);
+    if (permit == null) {
+      Function<HttpServletRequest, String> classifier = this.classifier;
+      RequestLanes.Lane lane = classifier == null ? null : lanes.getLane(classifier.apply(request));
+      if (lane == null) {
+        chain.doFilter(servletRequest, servletResponse);
+        return;
+      }
+      permit = new Permit(lane);
+      if (!lanes.tryAcquire(lane)) {
+        enqueue(request, permit);
+        return;
+      }
+      notifyWaited(lane, 0);
+      request.setAttribute(PERMIT_ATTRIBUTE, permit);
+    }
+    try {
+      chain.doFilter(servletRequest, servletResponse);
+    } finally {
+      releaseWhenComplete(request, permit);
+    }
+  }
+
+  private void enqueue(HttpServletRequest request, Permit permit) {
+    RequestLanes.Lane lane = permit.lane;
+    long startNanos = System.nanoTime();
+    AsyncContext asyncContext = request.startAsync();
+    asyncContext.setTimeout(lane.getMaxQueueWaitMillis());
+    Runnable resume = () -> {
+      notifyWaited(lane, System.nanoTime() - startNanos);
+      request.setAttribute(PERMIT_ATTRIBUTE, permit);
+      try {
+        asyncContext.dispatch();
+      } catch (IllegalStateException e) {
+        // the request timed out while it was resumed
+        permit.release();
+      }
+    };
+    asyncContext.addListener(new AsyncListener() {
+      @Override
+      public void onTimeout(AsyncEvent event) {
+        if (lanes.cancel(lane, resume)) {
+          reject(lane, asyncContext);
+        }
+      }
+
+      @Override
+      public void onComplete(AsyncEvent event) {
+      }
+
+      @Override
+      public void onError(AsyncEvent event) {
+        lanes.cancel(lane, resume);
+      }
+
+      @Override
+      public void onStartAsync(AsyncEvent event) {
+      }
+    });
+    if (!lanes.enqueue(lane, resume)) {
+      reject(lane, asyncContext);
+      return;
+    }
+    // the lane may have been released between the failed acquire and the enqueue
+    lanes.resumeWaiting();
+  }
+
+  private void reject(RequestLanes.Lane lane, AsyncContext asyncContext) {
+    log.debug("Rejecting a request of the {} lane", lane.getName());
+    RequestLaneListener listener = this.listener;
+    if (listener != null) {
+      listener.requestRejected(lane.getName());
+    }
+    ((HttpServletResponse) asyncContext.getResponse())
+        .setStatus(HttpStatus.SERVICE_UNAVAILABLE_503);
+    asyncContext.complete();
+  }
+
+  private void releaseWhenComplete(HttpServletRequest request, Permit permit) {
+    if (!request.isAsyncStarted()) {
+      permit.release();
+      return;
+    }
+    request.getAsyncContext().addListener(new AsyncListener() {
+      @Override
+      public void onComplete(AsyncEvent event) {
+        permit.release();
+      }
+
+      @Override
+      public void onTimeout(AsyncEvent event) {
+      }
+
+      @Override
+      public void onError(AsyncEvent event) {
+      }
+
+      @Override
+      public void onStartAsync(AsyncEvent event) {
+      }
+    });
+  }
+
+  private void notifyWaited(RequestLanes.Lane lane, long nanos) {
+    RequestLaneListener listener = this.listener;
+    if (listener != null) {
+      listener.requestWaited(lane.getName(), nanos);
+    }
+  }
+
+  private class Permit {
+    private final RequestLanes.Lane lane;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private Permit(RequestLanes.Lane lane) {
+      this.lane = lane;
+    }
+
+    private void release() {
+      if (released.compareAndSet(false, true)) {
+        lanes.release(lane);
+      }
+    }
+  }
+}
@@ -0,0 +1,11 @@
+package io.trino.gateway.proxyserver;
+
+/**
+ * Receives the time the requests waited in their lane, and the requests rejected because the
+ * queue of their lane was full or they waited too long.
+ */
+public interface RequestLaneListener {
+  void requestWaited(String lane, long nanos);
+
+  void requestRejected(String lane);
+}
@@ -0,0 +1,12 @@
+package io.trino.gateway.proxyserver;
+
+import lombok.Data;
+
+/**
+ * Requests in flight and waiting in one lane.
+ */
+@Data
+public class RequestLaneStats {
+  private final int activeRequests;
+  private final int queuedRequests;
+}
@@ -0,0 +1,135 @@
+package io.trino.gateway.proxyserver;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Admits the requests of each lane up to the limit of the lane, and of all lanes up to the shared
+ * limit. Waiting requests are resumed in the order they arrived in their lane, from the lane with
+ * the highest priority first.
+ */
+class RequestLanes {
+  private final Map<String, Lane> lanesByClass = new HashMap<>();
+  private final Map<String, Lane> lanesByName = new HashMap<>();
+  private final List<Lane> lanesByPriority = new ArrayList<>();
+  private final int maxConcurrentRequests;
+  private int activeRequests;
+
+  /**
+   * Creates the lanes, with a limit shared by all lanes unless maxConcurrentRequests is zero.
+   */
+  RequestLanes(List<RequestLane> lanes, int maxConcurrentRequests) {
+    this.maxConcurrentRequests = maxConcurrentRequests;
+    for (RequestLane config : lanes) {
+      Lane lane = new Lane(config);
+      lanesByName.put(config.getName(), lane);
+      lanesByPriority.add(lane);
+      for (String requestClass : config.getRequestClasses()) {
+        lanesByClass.put(requestClass, lane);
+      }
+    }
+    lanesByPriority.sort(Comparator.comparingInt((Lane lane) -> lane.config.getPriority())
+        .reversed());
+  }
+
+  /**
+   * Returns the lane of the class of requests, or null if these requests are not limited.
+   */
+  Lane getLane(String requestClass) {
+    return requestClass == null ? null : lanesByClass.get(requestClass);
+  }
+
+  synchronized boolean tryAcquire(Lane lane) {
+    if (!lane.waiting.isEmpty() || !hasCapacity(lane)) {
+      return false;
+    }
+    lane.activeRequests++;
+    activeRequests++;
+    return true;
+  }
+
+  /**
+   * Queues a request, returning false if the queue of the lane is full. The request is resumed
+   * once it acquired its lane.
+   */
+  synchronized boolean enqueue(Lane lane, Runnable resume) {
+    if (lane.waiting.size() >= lane.config.getMaxQueuedRequests()) {
+      return false;
+    }
+    lane.waiting.add(resume);
+    return true;
+  }
+
+  /**
+   * Removes a request from the queue, returning false if it was resumed already.
+   */
+  synchronized boolean cancel(Lane lane, Runnable resume) {
+    return lane.waiting.remove(resume);
+  }
+
+  void release(Lane lane) {
+    synchronized (this) {
+      lane.activeRequests--;
+      activeRequests--;
+    }
+    resumeWaiting();
+  }
+
+  /**
+   * Resumes the waiting requests that can acquire their lane.
+   */
+  void resumeWaiting() {
+    List<Runnable> resumed = new ArrayList<>();
+    synchronized (this) {
+      boolean found = true;
+      while (found) {
+        found = false;
+        for (Lane lane : lanesByPriority) {
+          if (!lane.waiting.isEmpty() && hasCapacity(lane)) {
+            resumed.add(lane.waiting.poll());
+            lane.activeRequests++;
+            activeRequests++;
+            found = true;
+            break;
+          }
+        }
+      }
+    }
+    resumed.forEach(Runnable::run);
+  }
+
+  synchronized RequestLaneStats getStats(String name) {
+    Lane lane = lanesByName.get(name);
+    if (lane == null) {
+      return new RequestLaneStats(0, 0);
+    }
+    return new RequestLaneStats(lane.activeRequests, lane.waiting.size());
+  }
+
+  private boolean hasCapacity(Lane lane) {
+    return lane.activeRequests < lane.config.getMaxConcurrentRequests()
+        && (maxConcurrentRequests <= 0 || activeRequests < maxConcurrentRequests);
+  }
+
+  static class Lane {
+    private final RequestLane config;
+    private final ArrayDeque<Runnable> waiting = new ArrayDeque<>();
+    private int activeRequests;
+
+    private Lane(RequestLane config) {
+      this.config = config;
+    }
+
+    String getName() {
+      return config.getName();
+    }
+
+    long getMaxQueueWaitMillis() {
+      return config.getMaxQueueWaitMillis();
+    }
+  }
+}
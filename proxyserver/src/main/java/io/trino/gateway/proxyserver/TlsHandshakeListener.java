@@ -0,0 +1,12 @@
+package io.trino.gateway.proxyserver;
+
+/**
+ * Receives the TLS handshakes of the proxy server. The side is {@code client} for the connections
+ * of the clients to the gateway and {@code backend} for the connections of the gateway to the
+ * backends.
+ */
+public interface TlsHandshakeListener {
+  void handshakeSucceeded(String side, long nanos, boolean resumed);
+
+  void handshakeFailed(String side);
+}
@@ -0,0 +1,64 @@
+package io.trino.gateway.proxyserver;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.SSLEngine;
+import org.eclipse.jetty.io.Connection;
+import org.eclipse.jetty.io.ssl.SslConnection;
+import org.eclipse.jetty.io.ssl.SslHandshakeListener;
+
+/**
+ * Times the TLS handshakes of the connections it is added to, as a bean of a connector or of an
+ * http client. A handshake is timed from the opening of its connection.
+ */
+class TlsHandshakeMonitor implements Connection.Listener, SslHandshakeListener {
+  private final String side;
+  private final Map<SSLEngine, Long> handshakes = new ConcurrentHashMap<>();
+  private volatile TlsHandshakeListener listener;
+
+  TlsHandshakeMonitor(String side) {
+    this.side = side;
+  }
+
+  void setListener(TlsHandshakeListener listener) {
+    this.listener = listener;
+  }
+
+  @Override
+  public void onOpened(Connection connection) {
+    if (connection instanceof SslConnection) {
+      handshakes.put(((SslConnection) connection).getSSLEngine(), System.nanoTime());
+    }
+  }
+
+  @Override
+  public void onClosed(Connection connection) {
+    if (connection instanceof SslConnection) {
+      handshakes.remove(((SslConnection) connection).getSSLEngine());
+    }
+  }
+
+  @Override
+  public void handshakeSucceeded(Event event) {
+    Long startNanos = handshakes.remove(event.getSSLEngine());
+    TlsHandshakeListener listener = this.listener;
+    if (startNanos == null || listener == null) {
+      return;
+    }
+    long nanos = System.nanoTime() - startNanos;
+    // a resumed session keeps the creation time of the handshake that created it
+    long startMillis = System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(nanos);
+    boolean resumed = event.getSSLEngine().getSession().getCreationTime() < startMillis;
+    listener.handshakeSucceeded(side, nanos, resumed);
+  }
+
+  @Override
+  public void handshakeFailed(Event event, Throwable failure) {
+    handshakes.remove(event.getSSLEngine());
+    TlsHandshakeListener listener = this.listener;
+    if (listener != null) {
+      listener.handshakeFailed(side);
+    }
+  }
+}
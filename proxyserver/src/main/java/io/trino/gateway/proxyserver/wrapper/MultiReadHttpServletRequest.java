@@ -41,6 +41,13 @@ public class MultiReadHttpServletRequest extends HttpServletRequestWrapper {
     content = bodyInOutputStream.toByteArray();
   }
 
+  /**
+   * the body of the request, read when the request was wrapped.
+   */
+  public byte[] getContent() {
+    return content;
+  }
+
   /**
    * add a header with given name and value.
    *
@@ -1,21 +1,44 @@
 package io.trino.gateway.proxyserver;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import com.squareup.okhttp.mockwebserver.MockResponse;
 import com.squareup.okhttp.mockwebserver.MockWebServer;
 import com.squareup.okhttp.mockwebserver.RecordedRequest;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.util.EntityUtils;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.http.HttpClientTransportOverHTTP;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http2.client.HTTP2Client;
+import org.eclipse.jetty.http2.client.http.HttpClientTransportOverHTTP2;
+import org.eclipse.jetty.io.ClientConnector;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.util.Callback;
 import org.junit.jupiter.api.Test;
 
 public class TestProxyServer {
@@ -86,6 +109,196 @@ public class TestProxyServer {
     }
   }
 
+  @Test
+  public void testHttp2() throws Exception {
+    String mockResponseText = "HTTP2 TEST";
+    setProxyServer(mockResponseText, config -> config.setHttp2(true));
+    HttpClient httpClient = new HttpClient(new HttpClientTransportOverHTTP2(new HTTP2Client()));
+    try {
+      proxyServer.start();
+      httpClient.start();
+      // h2c with prior knowledge, the backend is still reached with HTTP/1.1
+      ContentResponse response = httpClient.GET("http://localhost:" + serverPort);
+      assertEquals(HttpVersion.HTTP_2, response.getVersion());
+      assertEquals(mockResponseText, response.getContentAsString());
+    } finally {
+      httpClient.stop();
+      proxyServer.close();
+      backend.shutdown();
+    }
+  }
+
+  @Test
+  public void testUnixSocketListener() throws Exception {
+    String mockResponseText = "UNIX SOCKET TEST";
+    Path socket = Files.createTempDirectory("proxy").resolve("proxy.sock");
+    ProxyListener listener = new ProxyListener();
+    listener.setName("sidecar");
+    listener.setUnixSocketPath(socket.toString());
+    setProxyServer(mockResponseText, config -> config.setListeners(List.of(listener)));
+    HttpClient httpClient =
+        new HttpClient(new HttpClientTransportOverHTTP(ClientConnector.forUnixDomain(socket)));
+    try {
+      proxyServer.start();
+      httpClient.start();
+      ContentResponse response = httpClient.GET("http://localhost/");
+      assertEquals(mockResponseText, response.getContentAsString());
+    } finally {
+      httpClient.stop();
+      proxyServer.close();
+      backend.shutdown();
+      Files.deleteIfExists(socket);
+    }
+  }
+
+  @Test
+  public void testAsyncProxy() throws Exception {
+    String mockResponseText = RandomStringUtils.random(256 * 1024, true, true);
+    setProxyServer(mockResponseText, config -> config.setAsyncProxy(true));
+    try {
+      proxyServer.start();
+      CloseableHttpClient httpclient = HttpClientBuilder.create().build();
+      HttpPost httpPost = new HttpPost("http://localhost:" + serverPort + "/v1/statement");
+      httpPost.setEntity(new StringEntity("SELECT 1"));
+
+      HttpResponse response = httpclient.execute(httpPost);
+      assertEquals(mockResponseText, EntityUtils.toString(response.getEntity()));
+      assertEquals("SELECT 1", backend.takeRequest().getUtf8Body());
+    } finally {
+      proxyServer.close();
+      backend.shutdown();
+    }
+  }
+
+  @Test
+  public void testPrewarmBackendConnections() throws Exception {
+    setProxyServer("PREWARM TEST");
+    String backendUrl = backend.getUrl("/").toString();
+    BackendConnectionSettings settings = new BackendConnectionSettings();
+    settings.setPrewarmConnections(2);
+    AtomicInteger connects = new AtomicInteger();
+    Set<String> connectedUrls = ConcurrentHashMap.newKeySet();
+    proxyServer.setBackendConnectListener((url, nanos) -> {
+      connectedUrls.add(url);
+      connects.incrementAndGet();
+    });
+    proxyServer.configureBackend(backendUrl, settings);
+    try {
+      proxyServer.start();
+      long deadline = System.currentTimeMillis() + 10_000;
+      while (proxyServer.getBackendConnectionStats(backendUrl).getIdleConnections() < 2
+          && System.currentTimeMillis() < deadline) {
+        Thread.sleep(50);
+      }
+      assertEquals(2, proxyServer.getBackendConnectionStats(backendUrl).getIdleConnections());
+      assertEquals(2, connects.get());
+      // reported by the configured URL, so it names the same backend as the pool stats
+      assertEquals(Set.of(backendUrl), connectedUrls);
+
+      CloseableHttpClient httpclient = HttpClientBuilder.create().build();
+      HttpResponse response = httpclient.execute(new HttpGet("http://localhost:" + serverPort));
+      assertEquals("PREWARM TEST", EntityUtils.toString(response.getEntity()));
+      // the request used one of the prewarmed connections
+      assertEquals(2, connects.get());
+    } finally {
+      proxyServer.close();
+      backend.shutdown();
+    }
+  }
+
+  @Test
+  public void testAsyncProxyByteArrayResponseHook() throws Exception {
+    setProxyServer("legacy hook", config -> config.setAsyncProxy(true), new ProxyHandler() {
+      @Override
+      protected void postConnectionHook(HttpServletRequest request, HttpServletResponse response,
+                                        byte[] buffer, int offset, int length,
+                                        Callback callback) {
+        super.postConnectionHook(request, response,
+            new String(buffer, offset, length, UTF_8).toUpperCase(Locale.ROOT).getBytes(UTF_8),
+            0, length, callback);
+      }
+    });
+    try {
+      proxyServer.start();
+      CloseableHttpClient httpclient = HttpClientBuilder.create().build();
+      HttpResponse response = httpclient.execute(
+          new HttpGet("http://localhost:" + serverPort + "/v1/info"));
+      // the hook is not skipped in the asynchronous mode
+      assertEquals("LEGACY HOOK", EntityUtils.toString(response.getEntity()));
+    } finally {
+      proxyServer.close();
+      backend.shutdown();
+    }
+  }
+
+  @Test
+  public void testPrewarmBackendHttp2Connections() throws Exception {
+    // the backend of the gateway is a proxy server that accepts h2c
+    setProxyServer("PREWARM HTTP2 TEST", config -> config.setHttp2(true));
+    String backendUrl = "http://localhost:" + serverPort;
+    int gatewayPort = serverPort + 1;
+    ProxyServerConfiguration config = buildConfig(backendUrl, gatewayPort);
+    config.setBackendHttp2(true);
+    ProxyServer gateway = new ProxyServer(config, new ProxyHandler());
+    BackendConnectionSettings settings = new BackendConnectionSettings();
+    settings.setPrewarmConnections(2);
+    AtomicInteger connects = new AtomicInteger();
+    gateway.setBackendConnectListener((url, nanos) -> connects.incrementAndGet());
+    gateway.configureBackend(backendUrl, settings);
+    try {
+      proxyServer.start();
+      gateway.start();
+      long deadline = System.currentTimeMillis() + 10_000;
+      while (connects.get() < 2 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(50);
+      }
+      assertEquals(2, connects.get());
+
+      CloseableHttpClient httpclient = HttpClientBuilder.create().build();
+      HttpResponse response = httpclient.execute(new HttpGet("http://localhost:" + gatewayPort));
+      assertEquals("PREWARM HTTP2 TEST", EntityUtils.toString(response.getEntity()));
+      // the prewarmed connections use the protocol of the proxied requests
+      assertEquals(2, connects.get());
+    } finally {
+      gateway.close();
+      proxyServer.close();
+      backend.shutdown();
+    }
+  }
+
+  @Test
+  public void testLocalDispatch() throws Exception {
+    setProxyServer("PROXIED", config -> { }, new ProxyHandler() {
+      @Override
+      protected boolean isLocalRequest(HttpServletRequest request) {
+        return request.getRequestURI().startsWith("/local");
+      }
+    });
+    AbstractHandler localHandler = new AbstractHandler() {
+      @Override
+      public void handle(String target, Request baseRequest, HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
+        response.getWriter().write("LOCAL");
+        baseRequest.setHandled(true);
+      }
+    };
+    proxyServer.setLocalHandler(localHandler);
+    try {
+      localHandler.start();
+      proxyServer.start();
+      CloseableHttpClient httpclient = HttpClientBuilder.create().build();
+      HttpResponse response = httpclient.execute(
+          new HttpGet("http://localhost:" + serverPort + "/local/api"));
+      assertEquals("LOCAL", EntityUtils.toString(response.getEntity()));
+      response = httpclient.execute(new HttpGet("http://localhost:" + serverPort + "/v1/info"));
+      assertEquals("PROXIED", EntityUtils.toString(response.getEntity()));
+    } finally {
+      localHandler.stop();
+      proxyServer.close();
+      backend.shutdown();
+    }
+  }
+
   private ProxyServerConfiguration buildConfig(String backendUrl, int localPort) {
     ProxyServerConfiguration config = new ProxyServerConfiguration();
     config.setName("MockBackend");
@@ -102,6 +315,17 @@ public class TestProxyServer {
   }
 
   private void setProxyServer(String mockResponseText) throws IOException {
+    setProxyServer(mockResponseText, config -> { });
+  }
+
+  private void setProxyServer(String mockResponseText,
+                              Consumer<ProxyServerConfiguration> customizer) throws IOException {
+    setProxyServer(mockResponseText, customizer, new ProxyHandler());
+  }
+
+  private void setProxyServer(String mockResponseText,
+                              Consumer<ProxyServerConfiguration> customizer,
+                              ProxyHandler proxyHandler) throws IOException {
     int backendPort = 30000 + new Random().nextInt(1000);
 
     backend = new MockWebServer();
@@ -110,6 +334,7 @@ public class TestProxyServer {
 
     serverPort = backendPort + 1;
     ProxyServerConfiguration config = buildConfig(backend.getUrl("/").toString(), serverPort);
-    proxyServer = new ProxyServer(config, new ProxyHandler());
+    customizer.accept(config);
+    proxyServer = new ProxyServer(config, proxyHandler);
   }
 }
@@ -0,0 +1,64 @@
+package io.trino.gateway.proxyserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.jetty.util.Callback;
+import org.junit.jupiter.api.Test;
+
+public class TestRelayBudget {
+
+  @Test
+  public void testStallUntilReleased() {
+    RelayBudget budget = new RelayBudget(100);
+    List<Long> stalls = new ArrayList<>();
+    budget.setStallListener(stalls::add);
+    List<Callback> relayed = new ArrayList<>();
+
+    budget.relay(60, Callback.NOOP, relayed::add);
+    budget.relay(40, Callback.NOOP, relayed::add);
+    // the budget is exhausted, the next chunks wait in order
+    budget.relay(10, Callback.NOOP, relayed::add);
+    budget.relay(1, Callback.NOOP, relayed::add);
+    assertEquals(2, relayed.size());
+    assertEquals(new RelayStats(100, 2), budget.getStats());
+
+    relayed.get(0).succeeded();
+    assertEquals(4, relayed.size());
+    assertEquals(2, stalls.size());
+    assertEquals(new RelayStats(51, 0), budget.getStats());
+
+    // a failed chunk releases its bytes too, and only once
+    relayed.get(1).failed(new Exception());
+    relayed.get(1).failed(new Exception());
+    assertEquals(new RelayStats(11, 0), budget.getStats());
+  }
+
+  @Test
+  public void testLargeChunk() {
+    RelayBudget budget = new RelayBudget(100);
+    List<Callback> relayed = new ArrayList<>();
+    budget.relay(10, Callback.NOOP, relayed::add);
+    budget.relay(500, Callback.NOOP, relayed::add);
+    assertEquals(1, relayed.size());
+
+    // relayed alone once the other chunks are released
+    relayed.get(0).succeeded();
+    assertEquals(2, relayed.size());
+    assertEquals(new RelayStats(500, 0), budget.getStats());
+    relayed.get(1).succeeded();
+    assertEquals(new RelayStats(0, 0), budget.getStats());
+  }
+
+  @Test
+  public void testUnlimited() {
+    RelayBudget budget = new RelayBudget(0);
+    List<Callback> relayed = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      budget.relay(1 << 20, Callback.NOOP, relayed::add);
+    }
+    assertEquals(10, relayed.size());
+    assertEquals(new RelayStats(10 << 20, 0), budget.getStats());
+  }
+}
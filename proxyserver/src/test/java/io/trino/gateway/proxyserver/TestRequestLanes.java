@@ -0,0 +1,77 @@
+package io.trino.gateway.proxyserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class TestRequestLanes {
+
+  @Test
+  public void testLaneLimits() {
+    RequestLanes lanes = new RequestLanes(List.of(lane("ui", 1, 1, 0, "ui", "oauth")), 0);
+    RequestLanes.Lane ui = lanes.getLane("ui");
+    assertSame(ui, lanes.getLane("oauth"));
+    assertNull(lanes.getLane("statement_poll"));
+    assertNull(lanes.getLane(null));
+
+    assertTrue(lanes.tryAcquire(ui));
+    assertFalse(lanes.tryAcquire(ui));
+    List<String> resumed = new ArrayList<>();
+    Runnable first = () -> resumed.add("first");
+    assertTrue(lanes.enqueue(ui, first));
+    // the queue of the lane is full
+    assertFalse(lanes.enqueue(ui, () -> resumed.add("second")));
+    assertEquals(new RequestLaneStats(1, 1), lanes.getStats("ui"));
+
+    lanes.release(ui);
+    assertEquals(List.of("first"), resumed);
+    assertFalse(lanes.cancel(ui, first));
+    assertEquals(new RequestLaneStats(1, 0), lanes.getStats("ui"));
+    lanes.release(ui);
+    assertEquals(new RequestLaneStats(0, 0), lanes.getStats("ui"));
+  }
+
+  @Test
+  public void testPriority() {
+    RequestLanes lanes = new RequestLanes(List.of(
+        lane("poll", 2, 10, 10, "statement_poll"),
+        lane("ui", 1, 10, 0, "ui")), 2);
+    RequestLanes.Lane poll = lanes.getLane("statement_poll");
+    RequestLanes.Lane ui = lanes.getLane("ui");
+    assertTrue(lanes.tryAcquire(ui));
+    assertTrue(lanes.tryAcquire(poll));
+    // the lanes are below their own limits, but not below the shared one
+    assertFalse(lanes.tryAcquire(poll));
+
+    List<String> resumed = new ArrayList<>();
+    Runnable uiRequest = () -> resumed.add("ui");
+    assertTrue(lanes.enqueue(ui, uiRequest));
+    assertTrue(lanes.enqueue(poll, () -> resumed.add("poll")));
+    lanes.release(ui);
+    assertEquals(List.of("poll"), resumed);
+    lanes.release(poll);
+    assertEquals(List.of("poll", "ui"), resumed);
+
+    assertTrue(lanes.enqueue(ui, uiRequest));
+    assertTrue(lanes.cancel(ui, uiRequest));
+    assertEquals(new RequestLaneStats(1, 0), lanes.getStats("ui"));
+    assertEquals(new RequestLaneStats(0, 0), lanes.getStats("unknown"));
+  }
+
+  private static RequestLane lane(String name, int maxConcurrentRequests, int maxQueuedRequests,
+                                  int priority, String... requestClasses) {
+    RequestLane lane = new RequestLane();
+    lane.setName(name);
+    lane.setMaxConcurrentRequests(maxConcurrentRequests);
+    lane.setMaxQueuedRequests(maxQueuedRequests);
+    lane.setPriority(priority);
+    lane.setRequestClasses(List.of(requestClasses));
+    return lane;
+  }
+}